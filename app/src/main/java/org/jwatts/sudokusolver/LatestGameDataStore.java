@@ -2,35 +2,131 @@ package org.jwatts.sudokusolver;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import org.jwatts.sudoku.Grid;
+import org.jwatts.sudoku.store.GameJournal;
+import org.jwatts.sudoku.store.GameJournalStore;
 
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps the game in progress in a {@link GameJournal}, so every edit is saved as it is made with one small append
+ * rather than rewriting the whole grid. Games saved by earlier versions in SharedPreferences are moved into the
+ * journal the first time it is opened.
+ */
 public class LatestGameDataStore {
+    private static final String TAG = "SUDOKU";
     private static final String LATEST_GAME_STORE_SHARED_PREFS = "latest_game_data";
     private static final String GRID_VALUES_KEY = "grid_values";
+    private static final String GAMES_DIRECTORY = "games";
+    private static final String LATEST_GAME_ID = "latest";
 
     private final SharedPreferences sharedPrefs;
+    private final File gamesDirectory;
+    private GameJournalStore journalStore;
+    private GameJournal journal;
 
     public LatestGameDataStore(Context context) {
         sharedPrefs = context.getSharedPreferences(LATEST_GAME_STORE_SHARED_PREFS, Context.MODE_PRIVATE);
+        gamesDirectory = new File(context.getFilesDir(), GAMES_DIRECTORY);
     }
 
     public Grid getLatestSerializedGrid() {
-        String serializedGridValues = sharedPrefs.getString(GRID_VALUES_KEY, null);
-        if (serializedGridValues == null) {
+        GameJournal journal = getJournal();
+        if (journal == null || journal.isEmpty()) {
             return null;
         }
 
-        return Grid.fromSerializedString(serializedGridValues);
+        Grid grid = new Grid();
+        int rowColLength = grid.getRowColLength();
+        for (int cell = 0; cell < GameJournal.CELL_COUNT; cell++) {
+            grid.setSquareValueAt(cell / rowColLength, cell % rowColLength, journal.getValue(cell));
+        }
+        return grid;
+    }
+
+    /**
+     * Saves a single edit, e.g. as it is typed.
+     */
+    public void recordEdit(int rowIndex, int colIndex, int value) {
+        GameJournal journal = getJournal();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.setValue(rowIndex * 9 + colIndex, value);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not save edit", e);
+        }
     }
 
+    /**
+     * Saves every square that differs from the journal, such as values filled in by the solver, and syncs the journal
+     * to disk.
+     */
     public void saveLatestGridValues(Grid grid) {
-        SharedPreferences.Editor editor = sharedPrefs.edit();
-        editor.putString(GRID_VALUES_KEY, grid.toSerializedString());
-        editor.apply();
+        GameJournal journal = getJournal();
+        if (journal == null) {
+            return;
+        }
+        int rowColLength = grid.getRowColLength();
+        try {
+            for (int cell = 0; cell < GameJournal.CELL_COUNT; cell++) {
+                journal.setValue(cell, grid.getSquareValueAt(cell / rowColLength, cell % rowColLength));
+            }
+            journal.sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not save game", e);
+        }
     }
 
     public void clear() {
+        close();
+        if (journalStore != null) {
+            journalStore.delete(LATEST_GAME_ID);
+        }
         sharedPrefs.edit().clear().apply();
     }
+
+    public void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not close game journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    private GameJournal getJournal() {
+        if (journal != null) {
+            return journal;
+        }
+        try {
+            journalStore = GameJournalStore.open(gamesDirectory);
+            journal = journalStore.open(LATEST_GAME_ID);
+            migrateSharedPreferences();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open game journal", e);
+        }
+        return journal;
+    }
+
+    private void migrateSharedPreferences() throws IOException {
+        String serializedGridValues = sharedPrefs.getString(GRID_VALUES_KEY, null);
+        if (serializedGridValues == null) {
+            return;
+        }
+        if (journal.isEmpty() && serializedGridValues.length() == GameJournal.CELL_COUNT) {
+            for (int cell = 0; cell < GameJournal.CELL_COUNT; cell++) {
+                int value = Character.getNumericValue(serializedGridValues.charAt(cell));
+                journal.setValue(cell, value > 0 && value <= 9 ? value : 0);
+            }
+            journal.sync();
+        }
+        sharedPrefs.edit().remove(GRID_VALUES_KEY).apply();
+    }
 }
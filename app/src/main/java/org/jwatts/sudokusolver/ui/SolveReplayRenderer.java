@@ -0,0 +1,86 @@
+package org.jwatts.sudokusolver.ui;
+
+import android.view.Choreographer;
+
+import org.jwatts.sudoku.events.SolveEventLog;
+
+/**
+ * Plays a {@link SolveEventLog} back on the main thread, driven by {@link Choreographer} frames. At most
+ * framesPerSecond frames are rendered, each applying the events due by then at valuesPerSecond; a square changed
+ * several times within a frame is only drawn once. The solver never posts to the main thread, so the animation is
+ * equally smooth whether the solve takes a millisecond or a minute.
+ */
+class SolveReplayRenderer implements Choreographer.FrameCallback {
+    interface SquareRenderer {
+        void renderSquare(int squareIndex, int value);
+    }
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final SolveEventLog eventLog;
+    private final SquareRenderer squareRenderer;
+    private final Runnable onFinished;
+    private final long frameIntervalNanos;
+    private final int valuesPerSecond;
+
+    private final int[] values;
+    private final int[] dirtySquares;
+
+    private long startTimeNanos = -1;
+    private long lastFrameTimeNanos;
+    private int renderedCount;
+    private boolean isStopped;
+
+    SolveReplayRenderer(SolveEventLog eventLog, int squareCount, SquareRenderer squareRenderer, int framesPerSecond,
+            int valuesPerSecond, Runnable onFinished) {
+        this.eventLog = eventLog;
+        this.squareRenderer = squareRenderer;
+        this.onFinished = onFinished;
+        this.valuesPerSecond = valuesPerSecond;
+        frameIntervalNanos = NANOS_PER_SECOND / framesPerSecond;
+        values = new int[squareCount];
+        dirtySquares = new int[squareCount];
+    }
+
+    void start() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop() {
+        isStopped = true;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (isStopped) {
+            return;
+        }
+        if (startTimeNanos < 0) {
+            startTimeNanos = frameTimeNanos;
+        } else if (frameTimeNanos - lastFrameTimeNanos < frameIntervalNanos) {
+            // Faster display than the chosen frame rate; skip this vsync
+            Choreographer.getInstance().postFrameCallback(this);
+            return;
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+
+        // Check for the end of the solve before reading the size, so no event added before finishing is missed
+        boolean isSolveFinished = eventLog.isFinished();
+        long dueCount = (frameTimeNanos - startTimeNanos) * valuesPerSecond / NANOS_PER_SECOND + 1;
+        int targetCount = (int) Math.min(eventLog.size(), dueCount);
+        if (targetCount > renderedCount) {
+            int dirtyCount = eventLog.coalesce(renderedCount, targetCount, values, dirtySquares);
+            for (int i = 0; i < dirtyCount; i++) {
+                squareRenderer.renderSquare(dirtySquares[i], values[dirtySquares[i]]);
+            }
+            renderedCount = targetCount;
+        }
+
+        if (isSolveFinished && renderedCount == eventLog.size()) {
+            onFinished.run();
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -2,43 +2,40 @@ package org.jwatts.sudokusolver.ui;
 
 import android.app.Activity;
 import android.os.Bundle;
-import android.text.Editable;
-import android.text.InputFilter;
-import android.text.TextUtils;
-import android.text.TextWatcher;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
-import android.widget.EditText;
-import android.widget.GridLayout;
 import android.widget.Toast;
 
+import org.jwatts.sudoku.Deduction;
 import org.jwatts.sudoku.Grid;
-import org.jwatts.sudoku.Square;
-import org.jwatts.sudoku.events.ValueSetObserver;
+import org.jwatts.sudoku.GridHistory;
+import org.jwatts.sudoku.events.SolveEventLog;
 import org.jwatts.sudokusolver.LatestGameDataStore;
 import org.jwatts.sudokusolver.R;
 import org.jwatts.sudokusolver.SudokuSolverObservableFactory;
 
-import java.util.WeakHashMap;
-
 import rx.Observable;
-import rx.Scheduler;
-import rx.Subscriber;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.schedulers.Schedulers;
 
 
 public class SolverSetupActivity extends Activity {
     private static final String TAG = "SUDOKU";
-    private static final String SQUARE_TAG_BASE = "square_";
+    private static final int ROW_COL_LENGTH = 9;
+    private static final int SQUARE_COUNT = ROW_COL_LENGTH * ROW_COL_LENGTH;
+    private static final int REPLAY_FRAMES_PER_SECOND = 30;
+    private static final int REPLAY_VALUES_PER_SECOND = 20;
 
     private Button solveButton;
-    private GridLayout gridLayout;
-    private WeakHashMap<String, TextWatcher> textWatcherMap = new WeakHashMap<>();
+    private SudokuGridView gridView;
+
+    private SolveReplayRenderer replayRenderer;
     private Grid sudokuGrid;
+    private GridHistory gridHistory;
+    private boolean isSolving;
     private LatestGameDataStore gameDataStore;
 
     @Override
@@ -46,7 +43,8 @@ public class SolverSetupActivity extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_solver_setup);
         solveButton = (Button) findViewById(R.id.solve_button);
-        gridLayout = (GridLayout) findViewById(R.id.sudoku_grid);
+        gridView = (SudokuGridView) findViewById(R.id.sudoku_grid);
+        gridView.setOnSquareEditListener(this::onSquareEdited);
         gameDataStore = new LatestGameDataStore(this);
         initGame();
     }
@@ -57,53 +55,22 @@ public class SolverSetupActivity extends Activity {
             sudokuGrid = new Grid();
             solveButton.setEnabled(false);
         }
+        gridHistory = new GridHistory(sudokuGrid);
 
-        initGridSquareEditors();
+        refreshGridView();
     }
 
-    // TODO set values if the underlying Grid has them
-    private void initGridSquareEditors() {
-        // track this separately just in case the child view count differs from the edit text count
-        int editTextIndex = 0;
-        int childViewCount = gridLayout.getChildCount();
-        for (int i = 0; i < childViewCount; i++) {
-            View v = gridLayout.getChildAt(i);
-            if (v instanceof EditText) {
-                EditText editText = (EditText) v;
-                final int squareIndex = editTextIndex;
-                final int rowIndex = getRowIndexFromSquareIndex(squareIndex);
-                final int colIndex = getColIndexFromSquareIndex(squareIndex);
-                int currentSquareValue = sudokuGrid.getSquareValueAt(rowIndex, colIndex);
-                if (currentSquareValue > 0) {
-                    editText.setText(String.format("%d", currentSquareValue));
-                } else {
-                    editText.setText("");
-                }
-                editText.setFilters(new InputFilter[]{new InputFilter.LengthFilter(1)});
-                String tag = getTagForSquareIndex(squareIndex);
-                editText.setTag(tag);
-                TextWatcher textWatcher = new TextWatcher() {
-                    @Override
-                    public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-
-                    @Override
-                    public void onTextChanged(CharSequence s, int start, int before, int count) {
-                        int squareValue = 0;
-                        if (!TextUtils.isEmpty(s)) {
-                            squareValue = Integer.parseInt(s.toString());
-                        }
-                        sudokuGrid.setSquareValueAt(rowIndex, colIndex, squareValue);
-                        solveButton.setEnabled(true);
-                    }
-
-                    @Override
-                    public void afterTextChanged(Editable s) {}
-                };
-                editText.addTextChangedListener(textWatcher);
-                textWatcherMap.put(tag, textWatcher);
-                editTextIndex++;
-            }
+    private void onSquareEdited(int squareIndex, int value) {
+        int rowIndex = squareIndex / ROW_COL_LENGTH;
+        int colIndex = squareIndex % ROW_COL_LENGTH;
+        // 0 clears the square
+        sudokuGrid.setSquareValueAt(rowIndex, colIndex, value);
+        gameDataStore.recordEdit(rowIndex, colIndex, value);
+        refreshConflicts();
+        if (sudokuGrid.getSquares()[rowIndex][colIndex].isConflicting()) {
+            Toast.makeText(this, R.string.error_conflicting_value, Toast.LENGTH_SHORT).show();
         }
+        solveButton.setEnabled(!sudokuGrid.hasConflicts());
     }
 
     @Override
@@ -112,6 +79,15 @@ public class SolverSetupActivity extends Activity {
         saveGridState();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (replayRenderer != null) {
+            replayRenderer.stop();
+        }
+        gameDataStore.close();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -130,6 +106,15 @@ public class SolverSetupActivity extends Activity {
             case R.id.action_clear:
                 clearGameState();
                 return true;
+            case R.id.action_hint:
+                showHint();
+                return true;
+            case R.id.action_undo:
+                stepHistory(true);
+                return true;
+            case R.id.action_redo:
+                stepHistory(false);
+                return true;
             case R.id.action_settings:
                 return true;
             default:
@@ -138,98 +123,109 @@ public class SolverSetupActivity extends Activity {
     }
 
     private void clearGameState() {
-        gameDataStore.clear();
-        for (String tag : textWatcherMap.keySet()) {
-            removeTextWatcherForTag(tag);
+        // The solver is still filling in this grid, and the replay still drawing it
+        if (isSolving) {
+            return;
         }
+        gameDataStore.clear();
         initGame();
     }
 
+    private void showHint() {
+        // The grid is being changed from the solver's thread
+        if (isSolving) {
+            return;
+        }
+        // Cheap enough to run on the main thread; it works on a snapshot of the grid
+        Deduction deduction = sudokuGrid.nextDeduction();
+        if (deduction == null) {
+            Toast.makeText(this, R.string.toast_no_hint, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        if (deduction.isElimination()) {
+            // Possible values are not shown, so apply the elimination for the player; otherwise the next hint would
+            // find the same one again
+            sudokuGrid.getSquares()[deduction.getRowIndex()][deduction.getColIndex()]
+                    .removeFromPossibleValues(deduction.getValue());
+        }
+        int messageId = deduction.isElimination() ? R.string.toast_hint_eliminate : R.string.toast_hint_place;
+        String message = getString(messageId, deduction.getValue(), deduction.getRowIndex() + 1,
+                deduction.getColIndex() + 1);
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    }
+
+    private void stepHistory(boolean isUndo) {
+        // The solver adds versions from its own thread, so leave the history alone until it is done
+        if (isSolving) {
+            return;
+        }
+        boolean moved = isUndo ? gridHistory.undo() : gridHistory.redo();
+        if (moved) {
+            refreshGridView();
+            solveButton.setEnabled(!sudokuGrid.hasConflicts());
+            saveGridState();
+        }
+    }
+
+    private void refreshGridView() {
+        for (int squareIndex = 0; squareIndex < SQUARE_COUNT; squareIndex++) {
+            gridView.setValue(squareIndex,
+                    sudokuGrid.getSquareValueAt(squareIndex / ROW_COL_LENGTH, squareIndex % ROW_COL_LENGTH));
+        }
+        refreshConflicts();
+    }
+
+    private void refreshConflicts() {
+        // An edit can start or end a conflict anywhere in the square's row, column, and block; checking a square is
+        // O(1), so just check them all
+        for (int squareIndex = 0; squareIndex < SQUARE_COUNT; squareIndex++) {
+            boolean isConflicting =
+                    sudokuGrid.getSquares()[squareIndex / ROW_COL_LENGTH][squareIndex % ROW_COL_LENGTH].isConflicting();
+            gridView.setConflicting(squareIndex, isConflicting);
+        }
+    }
+
     public void solvePuzzle(View solveButtonView) {
         // Save the current grid state, just in case
         saveGridState();
-        Scheduler subscriptionScheduler = Schedulers.newThread();
-
-        // Using a lambda inside create() confuses Android Studiohere  -- it loses the generic type
-        // of Square -- so I'm using the anonymous inner class.
-        Observable.create(new Observable.OnSubscribe<Square>() {
-            @Override
-            public void call(Subscriber<? super Square> subscriber) {
-                ValueSetObserver valueSetObserver = subscriber::onNext;
-                sudokuGrid.addValueSetObserver(valueSetObserver);
-            }
-        }).subscribeOn(subscriptionScheduler)
-                .onBackpressureBuffer()
+
+        // The solver only appends to the log; the renderer plays it back frame by frame on the main thread
+        SolveEventLog eventLog = new SolveEventLog(sudokuGrid.getRowColLength());
+        sudokuGrid.addValueSetObserver(eventLog);
+        replayRenderer = new SolveReplayRenderer(eventLog, SQUARE_COUNT, gridView::setValue,
+                REPLAY_FRAMES_PER_SECOND, REPLAY_VALUES_PER_SECOND, this::onReplayFinished);
+
+        Observable<Boolean> solvingObservable = SudokuSolverObservableFactory.createSolverObservable(sudokuGrid);
+        solvingObservable.subscribeOn(Schedulers.newThread())
+                .doOnTerminate(() -> {
+                    sudokuGrid.removeValueSetObserver(eventLog);
+                    eventLog.finish();
+                })
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(
-                        this::onSquareValueSet,
+                        solved -> {
+                            if (!solved) {
+                                Toast.makeText(this, R.string.toast_could_not_solve, Toast.LENGTH_LONG).show();
+                            }
+                        },
                         (e) -> {
                             Toast.makeText(this, R.string.toast_solve_error, Toast.LENGTH_SHORT).show();
-                            Log.e(TAG, "Error in observing square value changes", e);
+                            Log.e(TAG, "Error while solving", e);
                         });
 
-        Observable<Boolean> solvingObservable = SudokuSolverObservableFactory.createSolverObservable(sudokuGrid);
-        solvingObservable.subscribeOn(subscriptionScheduler)
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(solved -> {
-                    if (!solved) {
-                        Toast.makeText(this, R.string.toast_could_not_solve, Toast.LENGTH_LONG).show();
-                    }
-                });
-
         solveButton.setEnabled(false);
+        gridView.setEnabled(false);
+        isSolving = true;
+        replayRenderer.start();
     }
 
     private void saveGridState() {
         gameDataStore.saveLatestGridValues(sudokuGrid);
     }
 
-    private static int getRowIndexFromSquareIndex(int squareIndex) {
-        // squares 0-8 => row 0
-        //        9-17 => row 1
-        //       18-26 => row 2
-        // ... etc
-        int rowIndex = squareIndex / 9;
-        Log.d(TAG, String.format(
-                "Mapping squareIndex %d to row %d", squareIndex, rowIndex));
-        return rowIndex;
-    }
-
-    private static int getColIndexFromSquareIndex(int squareIndex) {
-        // squares 0, 9, 18, 27, 36, 45, 54, 63, 72 map to col 0
-        // squares 1, 10, 19, 28, 37, 46, 55, 64, 73 map to col 1
-        // ... etc
-        int colIndex = squareIndex % 9;
-        Log.d(TAG, String.format(
-                "Mapping squareIndex %d to col %d", squareIndex, colIndex));
-        return colIndex;
-    }
-
-    private static int getGridSquareIndexFromRolCol(int rowIndex, int colIndex) {
-        int fromRow = rowIndex * 9;
-        int gridSquareIndex = fromRow + colIndex;
-        Log.d(TAG, String.format(
-                "Mapping row %d col %d to squareIndex %d", rowIndex, colIndex, gridSquareIndex));
-        return gridSquareIndex;
-    }
-
-    private static String getTagForSquareIndex(int squareIndex) {
-        return SQUARE_TAG_BASE + squareIndex;
-    }
-
-    public void onSquareValueSet(Square square) {
-        int gridSquareIndex = getGridSquareIndexFromRolCol(square.getRowIndex(), square.getColIndex());
-        String tag = getTagForSquareIndex(gridSquareIndex);
-        EditText squareEditText = removeTextWatcherForTag(tag);
-        squareEditText.setText(String.format("%d", square.getValue()));
-    }
-
-    private EditText removeTextWatcherForTag(String tag) {
-        EditText squareEditText = (EditText) gridLayout.findViewWithTag(tag);
-        TextWatcher watcher = textWatcherMap.get(tag);
-        if (watcher != null) {
-            squareEditText.removeTextChangedListener(watcher);
-        }
-        return squareEditText;
+    private void onReplayFinished() {
+        isSolving = false;
+        gridView.setEnabled(true);
     }
 }
@@ -0,0 +1,186 @@
+package org.jwatts.sudokusolver.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.InputType;
+import android.util.AttributeSet;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
+import android.view.inputmethod.InputMethodManager;
+
+import org.jwatts.sudokusolver.R;
+
+/**
+ * Draws the whole 9x9 grid itself, bound to an int[81] model of values indexed by square, row-major. Replaces 81
+ * EditTexts with one view: updating a square is an array store and an invalidate, and all input goes through one
+ * handler, which selects a square on touch and takes digits from the keyboard.
+ */
+public class SudokuGridView extends View {
+    interface OnSquareEditListener {
+        void onSquareEdited(int squareIndex, int value);
+    }
+
+    private static final int ROW_COL_LENGTH = 9;
+    private static final int BLOCK_SIZE = 3;
+    private static final int SQUARE_COUNT = ROW_COL_LENGTH * ROW_COL_LENGTH;
+    private static final int NO_SELECTION = -1;
+
+    private final int[] values = new int[SQUARE_COUNT];
+    private final boolean[] conflicts = new boolean[SQUARE_COUNT];
+    private int selectedSquare = NO_SELECTION;
+    private OnSquareEditListener onSquareEditListener;
+
+    private final Paint thinLinePaint = new Paint();
+    private final Paint thickLinePaint = new Paint();
+    private final Paint selectionPaint = new Paint();
+    private final Paint digitPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint conflictDigitPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final char[] digits = "0123456789".toCharArray();
+
+    private float squareSize;
+
+    public SudokuGridView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        thinLinePaint.setColor(getResources().getColor(R.color.black));
+        thinLinePaint.setStrokeWidth(density);
+        thickLinePaint.setColor(getResources().getColor(R.color.black));
+        thickLinePaint.setStrokeWidth(3 * density);
+        selectionPaint.setColor(getResources().getColor(R.color.grid_selection));
+        digitPaint.setColor(getResources().getColor(R.color.black));
+        digitPaint.setTextAlign(Paint.Align.CENTER);
+        conflictDigitPaint.setColor(getResources().getColor(R.color.grid_conflict));
+        conflictDigitPaint.setTextAlign(Paint.Align.CENTER);
+        setFocusable(true);
+        setFocusableInTouchMode(true);
+    }
+
+    void setOnSquareEditListener(OnSquareEditListener onSquareEditListener) {
+        this.onSquareEditListener = onSquareEditListener;
+    }
+
+    /**
+     * Shows a value without notifying the listener, e.g. one set by the solver. 0 empties the square.
+     */
+    void setValue(int squareIndex, int value) {
+        if (values[squareIndex] != value) {
+            values[squareIndex] = value;
+            invalidate();
+        }
+    }
+
+    void setConflicting(int squareIndex, boolean isConflicting) {
+        if (conflicts[squareIndex] != isConflicting) {
+            conflicts[squareIndex] = isConflicting;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+        int size;
+        if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            size = width;
+        } else {
+            size = Math.min(width, height);
+        }
+        setMeasuredDimension(size, size);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        squareSize = Math.min(w, h) / (float) ROW_COL_LENGTH;
+        digitPaint.setTextSize(0.6f * squareSize);
+        conflictDigitPaint.setTextSize(0.6f * squareSize);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float gridSize = squareSize * ROW_COL_LENGTH;
+        if (selectedSquare != NO_SELECTION) {
+            float left = (selectedSquare % ROW_COL_LENGTH) * squareSize;
+            float top = (selectedSquare / ROW_COL_LENGTH) * squareSize;
+            canvas.drawRect(left, top, left + squareSize, top + squareSize, selectionPaint);
+        }
+
+        float baselineOffset = (squareSize - digitPaint.ascent() - digitPaint.descent()) / 2;
+        for (int squareIndex = 0; squareIndex < SQUARE_COUNT; squareIndex++) {
+            int value = values[squareIndex];
+            if (value > 0) {
+                float x = (squareIndex % ROW_COL_LENGTH + 0.5f) * squareSize;
+                float y = (squareIndex / ROW_COL_LENGTH) * squareSize + baselineOffset;
+                canvas.drawText(digits, value, 1, x, y, conflicts[squareIndex] ? conflictDigitPaint : digitPaint);
+            }
+        }
+
+        for (int i = 0; i <= ROW_COL_LENGTH; i++) {
+            Paint linePaint = i % BLOCK_SIZE == 0 ? thickLinePaint : thinLinePaint;
+            float offset = i * squareSize;
+            canvas.drawLine(offset, 0, offset, gridSize, linePaint);
+            canvas.drawLine(0, offset, gridSize, offset, linePaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isEnabled()) {
+            return false;
+        }
+        if (event.getAction() == MotionEvent.ACTION_UP) {
+            int col = (int) (event.getX() / squareSize);
+            int row = (int) (event.getY() / squareSize);
+            if (row >= 0 && row < ROW_COL_LENGTH && col >= 0 && col < ROW_COL_LENGTH) {
+                selectedSquare = row * ROW_COL_LENGTH + col;
+                invalidate();
+                requestFocus();
+                InputMethodManager inputMethodManager =
+                        (InputMethodManager) getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+                inputMethodManager.showSoftInput(this, InputMethodManager.SHOW_IMPLICIT);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onCheckIsTextEditor() {
+        return true;
+    }
+
+    @Override
+    public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+        outAttrs.inputType = InputType.TYPE_CLASS_NUMBER;
+        outAttrs.imeOptions = EditorInfo.IME_FLAG_NO_EXTRACT_UI;
+        // Not a full editor, so committed text arrives as key events
+        return new BaseInputConnection(this, false);
+    }
+
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (!isEnabled() || selectedSquare == NO_SELECTION) {
+            return super.onKeyDown(keyCode, event);
+        }
+
+        int value;
+        if (keyCode >= KeyEvent.KEYCODE_1 && keyCode <= KeyEvent.KEYCODE_9) {
+            value = keyCode - KeyEvent.KEYCODE_0;
+        } else if (keyCode == KeyEvent.KEYCODE_0 || keyCode == KeyEvent.KEYCODE_DEL
+                || keyCode == KeyEvent.KEYCODE_CLEAR) {
+            value = 0;
+        } else {
+            return super.onKeyDown(keyCode, event);
+        }
+
+        setValue(selectedSquare, value);
+        if (onSquareEditListener != null) {
+            onSquareEditListener.onSquareEdited(selectedSquare, value);
+        }
+        return true;
+    }
+}
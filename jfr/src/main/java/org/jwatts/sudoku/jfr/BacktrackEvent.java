@@ -0,0 +1,23 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.jwatts.sudoku.Backtrack")
+@Label("Search Backtrack")
+@Category("Sudoku")
+@Description("The search ran out of candidates at a depth and went back up")
+@Enabled(false)
+@StackTrace(false)
+final class BacktrackEvent extends Event {
+    @Label("Fingerprint")
+    long fingerprint;
+
+    @Label("Depth")
+    int depth;
+}
@@ -0,0 +1,19 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jwatts.sudoku.BatchChunk")
+@Label("Batch Chunk")
+@Category("Sudoku")
+@Description("A chunk of a bulk, scheduled, or sharded batch, solved by one thread")
+final class BatchChunkEvent extends Event {
+    @Label("Puzzle Count")
+    int puzzleCount;
+
+    @Label("Solved Count")
+    int solvedCount;
+}
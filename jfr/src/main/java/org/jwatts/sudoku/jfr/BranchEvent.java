@@ -0,0 +1,30 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.jwatts.sudoku.Branch")
+@Label("Search Branch")
+@Category("Sudoku")
+@Description("The search tried a candidate for the square with the fewest candidates")
+@Enabled(false)
+@StackTrace(false)
+final class BranchEvent extends Event {
+    @Label("Fingerprint")
+    long fingerprint;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Square")
+    int cell;
+
+    @Label("Candidate Count")
+    @Description("Candidates of the square not tried yet, including this one")
+    int candidateCount;
+}
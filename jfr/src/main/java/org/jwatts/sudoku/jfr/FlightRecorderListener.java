@@ -0,0 +1,144 @@
+package org.jwatts.sudoku.jfr;
+
+import org.jwatts.sudoku.Deduction;
+import org.jwatts.sudoku.events.SolverEventListener;
+
+/**
+ * Turns solver events into Flight Recorder events. Solves and chunks span their started and finished calls; everything
+ * in between is tagged with the fingerprint of the thread's current solve, and counted into its solve event.
+ *
+ * Events that Flight Recorder has turned off cost a thread local lookup and an allocation the JIT usually removes.
+ */
+final class FlightRecorderListener implements SolverEventListener {
+    private static final class ThreadState {
+        long fingerprint;
+        SolveEvent solve;
+        PropagationPassEvent pass;
+        BatchChunkEvent chunk;
+    }
+
+    private final ThreadLocal<ThreadState> threadStates = ThreadLocal.withInitial(ThreadState::new);
+
+    @Override
+    public void solveStarted(long fingerprint, int clueCount) {
+        ThreadState state = threadStates.get();
+        state.fingerprint = fingerprint;
+        SolveEvent event = new SolveEvent();
+        if (event.isEnabled()) {
+            event.fingerprint = fingerprint;
+            event.clueCount = clueCount;
+            event.begin();
+            state.solve = event;
+        }
+    }
+
+    @Override
+    public void solveFinished(boolean isSolved, int filledCount) {
+        ThreadState state = threadStates.get();
+        SolveEvent event = state.solve;
+        state.solve = null;
+        state.fingerprint = 0;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.solved = isSolved;
+                event.filledCount = filledCount;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void passStarted() {
+        ThreadState state = threadStates.get();
+        if (state.solve != null) {
+            state.solve.passCount++;
+        }
+        PropagationPassEvent event = new PropagationPassEvent();
+        if (event.isEnabled()) {
+            event.fingerprint = state.fingerprint;
+            event.begin();
+            state.pass = event;
+        }
+    }
+
+    @Override
+    public void passFinished(int filledCount, boolean isProgress) {
+        ThreadState state = threadStates.get();
+        PropagationPassEvent event = state.pass;
+        state.pass = null;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.filledCount = filledCount;
+                event.progress = isProgress;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public void techniqueApplied(Deduction.Technique technique, int count) {
+        TechniqueEvent event = new TechniqueEvent();
+        if (event.shouldCommit()) {
+            event.fingerprint = threadStates.get().fingerprint;
+            event.technique = technique.name();
+            event.count = count;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void branched(int depth, int cell, int candidateCount) {
+        ThreadState state = threadStates.get();
+        if (state.solve != null) {
+            state.solve.branchCount++;
+        }
+        BranchEvent event = new BranchEvent();
+        if (event.shouldCommit()) {
+            event.fingerprint = state.fingerprint;
+            event.depth = depth;
+            event.cell = cell;
+            event.candidateCount = candidateCount;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void backtracked(int depth) {
+        ThreadState state = threadStates.get();
+        if (state.solve != null) {
+            state.solve.backtrackCount++;
+        }
+        BacktrackEvent event = new BacktrackEvent();
+        if (event.shouldCommit()) {
+            event.fingerprint = state.fingerprint;
+            event.depth = depth;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void chunkStarted() {
+        BatchChunkEvent event = new BatchChunkEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            threadStates.get().chunk = event;
+        }
+    }
+
+    @Override
+    public void chunkFinished(int puzzleCount, int solvedCount) {
+        ThreadState state = threadStates.get();
+        BatchChunkEvent event = state.chunk;
+        state.chunk = null;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.puzzleCount = puzzleCount;
+                event.solvedCount = solvedCount;
+                event.commit();
+            }
+        }
+    }
+}
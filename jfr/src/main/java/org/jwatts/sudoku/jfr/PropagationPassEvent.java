@@ -0,0 +1,25 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jwatts.sudoku.PropagationPass")
+@Label("Propagation Pass")
+@Category("Sudoku")
+@Description("One pass of pointing pairs, hidden singles and naked singles over the grid")
+@Enabled(false)
+final class PropagationPassEvent extends Event {
+    @Label("Fingerprint")
+    long fingerprint;
+
+    @Label("Filled Count")
+    int filledCount;
+
+    @Label("Progress")
+    @Description("False if the pass placed no value and removed no candidate")
+    boolean progress;
+}
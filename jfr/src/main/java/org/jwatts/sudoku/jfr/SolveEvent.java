@@ -0,0 +1,34 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.jwatts.sudoku.Solve")
+@Label("Solve")
+@Category("Sudoku")
+@Description("A puzzle solve, from Grid.solve() or the budgeted Grid.solve(SolveBudget)")
+final class SolveEvent extends Event {
+    @Label("Fingerprint")
+    long fingerprint;
+
+    @Label("Clue Count")
+    int clueCount;
+
+    @Label("Filled Count")
+    int filledCount;
+
+    @Label("Solved")
+    boolean solved;
+
+    @Label("Pass Count")
+    int passCount;
+
+    @Label("Branch Count")
+    int branchCount;
+
+    @Label("Backtrack Count")
+    int backtrackCount;
+}
@@ -0,0 +1,49 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import org.jwatts.sudoku.events.SolverEvents;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reports the solver's work as Flight Recorder events in the "Sudoku" category, so that solves, propagation passes,
+ * techniques, search branches and batch chunks line up with GC and CPU samples in a recording.
+ *
+ * The solver only reports anything when the JVM was started with -Dorg.jwatts.sudoku.events=true; without it,
+ * {@link #install()} fails and the solver runs uninstrumented. Solve and batch chunk events are on by default in a
+ * recording. The per-pass, per-technique, branch, and backtrack events can fire millions of times a second, so they
+ * are off by default and have to be turned on in the recording's settings: a custom .jfc file, or
+ * {@link jdk.jfr.Recording#enable(String)} with names like "org.jwatts.sudoku.Branch".
+ */
+public final class SolverFlightRecorder {
+    static final List<Class<? extends Event>> EVENT_TYPES = Arrays.asList(SolveEvent.class,
+            PropagationPassEvent.class, TechniqueEvent.class, BranchEvent.class, BacktrackEvent.class,
+            BatchChunkEvent.class);
+
+    private SolverFlightRecorder() {}
+
+    /**
+     * Registers the event types with Flight Recorder and starts reporting solver events.
+     *
+     * @throws IllegalStateException if solver events are off in this JVM
+     */
+    public static void install() {
+        if (!SolverEvents.ENABLED) {
+            throw new IllegalStateException("Solver events are off; start the JVM with -D"
+                    + SolverEvents.EVENTS_PROPERTY + "=true");
+        }
+        for (Class<? extends Event> eventType : EVENT_TYPES) {
+            FlightRecorder.register(eventType);
+        }
+        SolverEvents.setListener(new FlightRecorderListener());
+    }
+
+    /**
+     * Stops reporting solver events. Their types stay registered, so recordings can still be configured for them.
+     */
+    public static void uninstall() {
+        SolverEvents.setListener(null);
+    }
+}
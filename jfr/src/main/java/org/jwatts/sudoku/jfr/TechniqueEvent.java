@@ -0,0 +1,27 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.jwatts.sudoku.Technique")
+@Label("Technique Applied")
+@Category("Sudoku")
+@Description("What one technique did during a propagation pass")
+@Enabled(false)
+@StackTrace(false)
+final class TechniqueEvent extends Event {
+    @Label("Fingerprint")
+    long fingerprint;
+
+    @Label("Technique")
+    String technique;
+
+    @Label("Count")
+    @Description("Values placed, or candidates removed for pointing pairs")
+    int count;
+}
@@ -0,0 +1,150 @@
+package org.jwatts.sudoku.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jwatts.sudoku.Grid;
+import org.jwatts.sudoku.PartialSolution;
+import org.jwatts.sudoku.SolveBudget;
+import org.jwatts.sudoku.batch.DifficultyScheduler;
+import org.jwatts.sudoku.events.SolverEvents;
+import org.jwatts.sudoku.store.PackedGrid;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolverFlightRecorderTest {
+    static {
+        // Normally set on the command line; it has to be set before the solver classes are loaded
+        System.setProperty(SolverEvents.EVENTS_PROPERTY, "true");
+    }
+
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+    // Few givens, so the budgeted solve has to branch
+    private static final String SPARSE =
+            "000000000080009000405168000500000000290000006007002009008010005700050020006090007";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        SolverFlightRecorder.install();
+    }
+
+    @After
+    public void tearDown() {
+        SolverFlightRecorder.uninstall();
+    }
+
+    @Test
+    public void testRecording_tagsSolverEventsWithPuzzleFingerprints() throws Exception {
+        List<RecordedEvent> events = record(true, () -> {
+            assertTrue(Grid.fromSerializedString(PUZZLE).solve());
+            PartialSolution result = Grid.fromSerializedString(SPARSE).solve(SolveBudget.UNLIMITED);
+            assertEquals(PartialSolution.Status.SOLVED, result.getStatus());
+        });
+
+        Map<String, Integer> counts = countByType(events);
+        assertEquals(Integer.valueOf(2), counts.get("org.jwatts.sudoku.Solve"));
+        assertTrue(counts.get("org.jwatts.sudoku.PropagationPass") > 2);
+        assertTrue(counts.get("org.jwatts.sudoku.Technique") > 0);
+        assertTrue(counts.get("org.jwatts.sudoku.Branch") > 0);
+
+        long puzzleFingerprint = fingerprint(PUZZLE);
+        long sparseFingerprint = fingerprint(SPARSE);
+        for (RecordedEvent event : events) {
+            long fingerprint = event.getLong("fingerprint");
+            assertTrue(fingerprint == puzzleFingerprint || fingerprint == sparseFingerprint);
+            if (event.getEventType().getName().equals("org.jwatts.sudoku.Solve")) {
+                assertTrue(event.getBoolean("solved"));
+                assertEquals(81, event.getInt("filledCount"));
+                assertTrue(event.getInt("passCount") > 0);
+                if (fingerprint == sparseFingerprint) {
+                    assertTrue(event.getInt("branchCount") > 0);
+                } else {
+                    assertEquals(0, event.getInt("branchCount"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRecording_defaultSettingsOnlyRecordSolvesAndChunks() throws Exception {
+        List<RecordedEvent> events = record(false, () -> {
+            try (DifficultyScheduler scheduler = new DifficultyScheduler(2)) {
+                List<String> puzzles = Arrays.asList(PUZZLE, SPARSE, PUZZLE);
+                assertEquals(3, scheduler.solve(puzzles, new String[3]).getSolvedCount());
+            }
+        });
+
+        Map<String, Integer> counts = countByType(events);
+        assertEquals(Integer.valueOf(3), counts.get("org.jwatts.sudoku.Solve"));
+        assertTrue(counts.get("org.jwatts.sudoku.BatchChunk") > 0);
+        assertFalse(counts.containsKey("org.jwatts.sudoku.Branch"));
+        assertFalse(counts.containsKey("org.jwatts.sudoku.PropagationPass"));
+
+        int puzzleCount = 0;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals("org.jwatts.sudoku.BatchChunk")) {
+                puzzleCount += event.getInt("puzzleCount");
+            }
+        }
+        assertEquals(3, puzzleCount);
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    private List<RecordedEvent> record(boolean isEnablingAll, Work work) throws Exception {
+        File file = temporaryFolder.newFile("solver.jfr");
+        try (Recording recording = new Recording()) {
+            if (isEnablingAll) {
+                for (Class<? extends Event> eventType : SolverFlightRecorder.EVENT_TYPES) {
+                    recording.enable(eventType).withoutStackTrace();
+                }
+            }
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().startsWith("org.jwatts.sudoku.")) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private static Map<String, Integer> countByType(List<RecordedEvent> events) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (RecordedEvent event : events) {
+            counts.merge(event.getEventType().getName(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static long fingerprint(String puzzle) {
+        byte[] packed = new byte[PackedGrid.PACKED_SIZE];
+        PackedGrid.pack(puzzle.getBytes(), 0, packed, 0);
+        return PackedGrid.fingerprint(packed, 0);
+    }
+}
@@ -0,0 +1,146 @@
+package org.jwatts.sudoku;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Times {@link SolverBackend}s against each other over a class of puzzles, e.g. easy newspaper puzzles or
+ * pathological inputs built to defeat backtracking, to pick the backend to use for that class.
+ *
+ * Run with one file per puzzle class, each holding one 81-character puzzle per line:
+ * <pre>java org.jwatts.sudoku.BackendBenchmark easy.txt hard.txt</pre>
+ */
+public final class BackendBenchmark {
+    private static final int WARM_UP_ROUNDS = 2;
+    private static final int TIMED_ROUNDS = 5;
+
+    public static final class Result {
+        private final SolverBackend backend;
+        private final int solvedCount;
+        private final int puzzleCount;
+        private final long nanosPerPuzzle;
+
+        Result(SolverBackend backend, int solvedCount, int puzzleCount, long nanosPerPuzzle) {
+            this.backend = backend;
+            this.solvedCount = solvedCount;
+            this.puzzleCount = puzzleCount;
+            this.nanosPerPuzzle = nanosPerPuzzle;
+        }
+
+        public SolverBackend getBackend() {
+            return backend;
+        }
+
+        public int getSolvedCount() {
+            return solvedCount;
+        }
+
+        public int getPuzzleCount() {
+            return puzzleCount;
+        }
+
+        public long getNanosPerPuzzle() {
+            return nanosPerPuzzle;
+        }
+
+        /**
+         * @return true if this backend solved more of the puzzles than other, or as many in less time
+         */
+        boolean isBetterThan(Result other) {
+            if (solvedCount != other.solvedCount) {
+                return solvedCount > other.solvedCount;
+            }
+            return nanosPerPuzzle < other.nanosPerPuzzle;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %d/%d solved, %d us per puzzle", backend.getName(), solvedCount, puzzleCount,
+                    nanosPerPuzzle / 1000);
+        }
+    }
+
+    private BackendBenchmark() {}
+
+    public static List<Result> run(Collection<SolverBackend> backends, List<String> puzzles) {
+        List<Result> results = new ArrayList<>();
+        for (SolverBackend backend : backends) {
+            for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+                solveAll(backend, puzzles);
+            }
+            long start = System.nanoTime();
+            int solvedCount = 0;
+            for (int round = 0; round < TIMED_ROUNDS; round++) {
+                solvedCount = solveAll(backend, puzzles);
+            }
+            long elapsed = System.nanoTime() - start;
+            results.add(new Result(backend, solvedCount, puzzles.size(),
+                    elapsed / ((long) TIMED_ROUNDS * Math.max(1, puzzles.size()))));
+        }
+        return results;
+    }
+
+    /**
+     * @return the registered backend that solves the most of the puzzles, fastest
+     */
+    public static SolverBackend fastest(List<String> puzzles) {
+        return best(run(SolverBackends.all(), puzzles)).getBackend();
+    }
+
+    private static Result best(List<Result> results) {
+        Result best = null;
+        for (Result result : results) {
+            if (best == null || result.isBetterThan(best)) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private static int solveAll(SolverBackend backend, List<String> puzzles) {
+        int solvedCount = 0;
+        for (String puzzle : puzzles) {
+            Grid grid = Grid.fromSerializedString(puzzle);
+            grid.setSolverBackend(backend);
+            if (grid.solve()) {
+                solvedCount++;
+            }
+        }
+        return solvedCount;
+    }
+
+    static List<String> readPuzzles(File file) throws IOException {
+        List<String> puzzles = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim().replace('.', '0');
+                if (!line.isEmpty()) {
+                    puzzles.add(line);
+                }
+            }
+        }
+        return puzzles;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BackendBenchmark <puzzle file>...");
+            System.exit(1);
+        }
+        for (String path : args) {
+            List<String> puzzles = readPuzzles(new File(path));
+            System.out.printf("%s (%d puzzles)%n", path, puzzles.size());
+            List<Result> results = run(SolverBackends.all(), puzzles);
+            for (Result result : results) {
+                System.out.println("  " + result);
+            }
+            System.out.println("  fastest: " + best(results).getBackend().getName());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.jwatts.sudoku;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a grid as a boolean satisfiability problem in conjunctive normal form, so it can be handed to any SAT
+ * solver through the DIMACS format, or to the built-in {@link DpllSolver}.
+ *
+ * Variable {@link #variable(int, int, int)} is true when the square at (row, col) has the value. The clauses say that
+ * every square has at least one and at most one value, that every row, column, and block has every value at least
+ * once and at most once, and that the givens hold.
+ */
+public final class CnfEncoding {
+    private final int blockSize;
+    private final int rowColLength;
+    private final List<int[]> clauses = new ArrayList<>();
+
+    public CnfEncoding(Grid grid) {
+        blockSize = grid.getBlockSize();
+        rowColLength = grid.getRowColLength();
+
+        for (int row = 0; row < rowColLength; row++) {
+            for (int col = 0; col < rowColLength; col++) {
+                int[] cellVariables = new int[rowColLength];
+                for (int value = 1; value <= rowColLength; value++) {
+                    cellVariables[value - 1] = variable(row, col, value);
+                }
+                addExactlyOne(cellVariables);
+
+                int given = grid.getSquareValueAt(row, col);
+                if (given > 0) {
+                    clauses.add(new int[] { variable(row, col, given) });
+                }
+            }
+        }
+
+        for (int value = 1; value <= rowColLength; value++) {
+            for (int unit = 0; unit < rowColLength; unit++) {
+                int[] rowVariables = new int[rowColLength];
+                int[] colVariables = new int[rowColLength];
+                int[] blockVariables = new int[rowColLength];
+                for (int i = 0; i < rowColLength; i++) {
+                    rowVariables[i] = variable(unit, i, value);
+                    colVariables[i] = variable(i, unit, value);
+                    int blockRow = (unit / blockSize) * blockSize + i / blockSize;
+                    int blockCol = (unit % blockSize) * blockSize + i % blockSize;
+                    blockVariables[i] = variable(blockRow, blockCol, value);
+                }
+                addExactlyOne(rowVariables);
+                addExactlyOne(colVariables);
+                addExactlyOne(blockVariables);
+            }
+        }
+    }
+
+    private void addExactlyOne(int[] variables) {
+        clauses.add(variables);
+        for (int i = 0; i < variables.length; i++) {
+            for (int j = i + 1; j < variables.length; j++) {
+                clauses.add(new int[] { -variables[i], -variables[j] });
+            }
+        }
+    }
+
+    /**
+     * @return the 1-based variable for value at (row, col)
+     */
+    public int variable(int row, int col, int value) {
+        return (row * rowColLength + col) * rowColLength + value;
+    }
+
+    public int getVariableCount() {
+        return rowColLength * rowColLength * rowColLength;
+    }
+
+    public List<int[]> getClauses() {
+        return clauses;
+    }
+
+    /**
+     * Reads the grid values back out of a satisfying assignment, indexed by variable, as returned by
+     * {@link DpllSolver#solve()}.
+     *
+     * @return row-major values
+     */
+    public int[] decode(boolean[] assignment) {
+        int[] values = new int[rowColLength * rowColLength];
+        for (int cell = 0; cell < values.length; cell++) {
+            for (int value = 1; value <= rowColLength; value++) {
+                if (assignment[variable(cell / rowColLength, cell % rowColLength, value)]) {
+                    values[cell] = value;
+                }
+            }
+        }
+        return values;
+    }
+
+    public void writeDimacs(Writer writer) throws IOException {
+        writer.write("p cnf " + getVariableCount() + " " + clauses.size() + "\n");
+        StringBuilder line = new StringBuilder();
+        for (int[] clause : clauses) {
+            line.setLength(0);
+            for (int literal : clause) {
+                line.append(literal).append(' ');
+            }
+            line.append("0\n");
+            writer.write(line.toString());
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,84 @@
+package org.jwatts.sudoku;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Measures time to first solution in a fresh JVM, which {@link BackendBenchmark} deliberately warms up away. Each run
+ * starts a new JVM on the current class path that parses and solves one puzzle, and reports how long that first solve
+ * took, class loading and table setup included, next to a second solve of the same puzzle in the same process.
+ *
+ * <pre>java org.jwatts.sudoku.ColdStartBenchmark [runs] [puzzle]</pre>
+ */
+public final class ColdStartBenchmark {
+    private static final int DEFAULT_RUNS = 10;
+    private static final String DEFAULT_PUZZLE =
+            "000000100000240950063007000000000507080050040620004000040710060000000000908000002";
+    private static final String CHILD_FLAG = "--child";
+
+    private ColdStartBenchmark() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals(CHILD_FLAG)) {
+            runChild(args[1]);
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        String puzzle = args.length > 1 ? args[1] : DEFAULT_PUZZLE;
+
+        long[] processMillis = new long[runs];
+        long[] firstSolveMicros = new long[runs];
+        long[] secondSolveMicros = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            long[] childNanos = startChild(puzzle);
+            processMillis[run] = (System.nanoTime() - start) / 1000000;
+            firstSolveMicros[run] = childNanos[0] / 1000;
+            secondSolveMicros[run] = childNanos[1] / 1000;
+        }
+
+        System.out.printf("%d cold starts%n", runs);
+        System.out.println("  process:      " + summarize(processMillis, "ms"));
+        System.out.println("  first solve:  " + summarize(firstSolveMicros, "us"));
+        System.out.println("  second solve: " + summarize(secondSolveMicros, "us"));
+    }
+
+    private static void runChild(String puzzle) {
+        long start = System.nanoTime();
+        Grid.fromSerializedString(puzzle).solve();
+        long first = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Grid.fromSerializedString(puzzle).solve();
+        long second = System.nanoTime() - start;
+
+        System.out.println(first + " " + second);
+    }
+
+    private static long[] startChild(String puzzle) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ColdStartBenchmark.class.getName(), CHILD_FLAG, puzzle)
+                .redirectErrorStream(true)
+                .start();
+        String line;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = reader.readLine();
+        }
+        if (process.waitFor() != 0 || line == null) {
+            throw new IOException("Cold start run failed: " + line);
+        }
+        String[] fields = line.trim().split(" ");
+        return new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]) };
+    }
+
+    private static String summarize(long[] samples, String unit) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return String.format("median %d %s, min %d %s, max %d %s", sorted[sorted.length / 2], unit, sorted[0], unit,
+                sorted[sorted.length - 1], unit);
+    }
+}
@@ -0,0 +1,127 @@
+package org.jwatts.sudoku;
+
+/**
+ * Counts that a {@link Grid} updates on every value set or cleared, so that its validity can be checked at any time
+ * without scanning it: how many squares of each row, column, and block hold each value, and how many empty squares
+ * have no possible values left, and how many units have a value that is neither placed nor possible for any of their
+ * empty squares. Each update touches only the three units of the square that changed.
+ *
+ * Units are numbered like {@link SolverWorkspace}: rows 0 to n - 1, then columns, then blocks.
+ */
+public final class ConflictIndex {
+    private final int rowColLength;
+
+    // Number of squares holding each value, per unit, indexed by value
+    private final int[][] unitValueCounts;
+
+    // Number of (unit, value) pairs where more than one square in the unit holds the value
+    private int duplicateCount;
+
+    // Number of empty squares without any possible value
+    private int deadSquareCount;
+
+    // For each unit and value, true if no empty square in the unit can take the value
+    private final boolean[][] isUnitValueUnplaceable;
+
+    // Number of (unit, value) pairs where no square holds the value and no empty square can take it
+    private int missingValueCount;
+
+    ConflictIndex(int rowColLength) {
+        this.rowColLength = rowColLength;
+        unitValueCounts = new int[3 * rowColLength][rowColLength + 1];
+        isUnitValueUnplaceable = new boolean[3 * rowColLength][rowColLength + 1];
+    }
+
+    void valueSet(int row, int col, int block, int value, boolean wasDead) {
+        increment(row, value);
+        increment(rowColLength + col, value);
+        increment(2 * rowColLength + block, value);
+        if (wasDead) {
+            deadSquareCount--;
+        }
+    }
+
+    void valueCleared(int row, int col, int block, int value, boolean isDead) {
+        decrement(row, value);
+        decrement(rowColLength + col, value);
+        decrement(2 * rowColLength + block, value);
+        if (isDead) {
+            deadSquareCount++;
+        }
+    }
+
+    void deadStateChanged(boolean isDead) {
+        deadSquareCount += isDead ? 1 : -1;
+    }
+
+    /**
+     * Called when the last empty square of the unit that could take the value loses it, or the first one gains it.
+     */
+    void placeableChanged(int unit, int value, boolean isUnplaceable) {
+        isUnitValueUnplaceable[unit][value] = isUnplaceable;
+        if (unitValueCounts[unit][value] == 0) {
+            missingValueCount += isUnplaceable ? 1 : -1;
+        }
+    }
+
+    private void increment(int unit, int value) {
+        int count = ++unitValueCounts[unit][value];
+        if (count == 2) {
+            duplicateCount++;
+        } else if (count == 1 && isUnitValueUnplaceable[unit][value]) {
+            missingValueCount--;
+        }
+    }
+
+    private void decrement(int unit, int value) {
+        int count = --unitValueCounts[unit][value];
+        if (count == 1) {
+            duplicateCount--;
+        } else if (count == 0 && isUnitValueUnplaceable[unit][value]) {
+            missingValueCount++;
+        }
+    }
+
+    int getUnitValueCount(int unit, int value) {
+        return unitValueCounts[unit][value];
+    }
+
+    public int getRowValueCount(int row, int value) {
+        return unitValueCounts[row][value];
+    }
+
+    public int getColumnValueCount(int col, int value) {
+        return unitValueCounts[rowColLength + col][value];
+    }
+
+    public int getBlockValueCount(int block, int value) {
+        return unitValueCounts[2 * rowColLength + block][value];
+    }
+
+    /**
+     * @return true if some row, column, or block holds the same value more than once
+     */
+    public boolean hasDuplicates() {
+        return duplicateCount > 0;
+    }
+
+    public int getDeadSquareCount() {
+        return deadSquareCount;
+    }
+
+    /**
+     * @return the number of (unit, value) pairs where the value is not in the unit and no empty square of the unit can
+     *         take it
+     */
+    public int getMissingValueCount() {
+        return missingValueCount;
+    }
+
+    /**
+     * @return true if the grid has duplicate values, an empty square that cannot take any value, or a unit with no
+     *         place left for one of its values, so it cannot be completed from here
+     */
+    public boolean isContradictory() {
+        return duplicateCount > 0 || deadSquareCount > 0 || missingValueCount > 0;
+    }
+}
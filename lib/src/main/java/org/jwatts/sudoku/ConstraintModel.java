@@ -0,0 +1,216 @@
+package org.jwatts.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The constraints of a 9x9 puzzle, precomputed into the index arrays that {@link SolverWorkspace} propagates over.
+ * Classic sudoku is rows, columns, and blocks; variants swap the blocks for irregular (jigsaw) regions, add extra
+ * regions such as the two diagonals, or add Killer cages whose squares must hold distinct values adding up to a given
+ * sum.
+ *
+ * Units are the groups of nine squares that must hold each value exactly once. They are numbered with rows first
+ * (0-8), then columns (9-17), then regions: blocks or jigsaw regions, followed by any extra regions.
+ */
+public final class ConstraintModel {
+    static final int ROW_COL_LENGTH = 9;
+    static final int CELL_COUNT = ROW_COL_LENGTH * ROW_COL_LENGTH;
+    static final int FIRST_REGION_UNIT = 2 * ROW_COL_LENGTH;
+
+    // Unit membership is kept as a bit mask per square
+    private static final int MAX_UNITS = Long.SIZE;
+
+    public static final ConstraintModel CLASSIC = builder().build();
+
+    // Squares of each unit
+    final int[][] units;
+
+    // For each square, bit u is set if the square is in unit u
+    final long[] unitMasks;
+
+    // For each square, every other square that must hold a different value: units and cages combined
+    final int[][] peers;
+
+    final int[][] cages;
+    final int[] cageSums;
+
+    // For each square, the index of its cage, or -1 if it is in none
+    final int[] cageOfCell;
+
+    private ConstraintModel(int[][] units, int[][] cages, int[] cageSums) {
+        this.units = units;
+        this.cages = cages;
+        this.cageSums = cageSums;
+
+        cageOfCell = new int[CELL_COUNT];
+        Arrays.fill(cageOfCell, -1);
+        for (int cage = 0; cage < cages.length; cage++) {
+            for (int cell : cages[cage]) {
+                cageOfCell[cell] = cage;
+            }
+        }
+
+        unitMasks = new long[CELL_COUNT];
+        for (int unit = 0; unit < units.length; unit++) {
+            for (int cell : units[unit]) {
+                unitMasks[cell] |= 1L << unit;
+            }
+        }
+
+        boolean[][] isPeer = new boolean[CELL_COUNT][CELL_COUNT];
+        for (int[][] groups : new int[][][] { units, cages }) {
+            for (int[] group : groups) {
+                for (int cell : group) {
+                    for (int other : group) {
+                        isPeer[cell][other] = cell != other;
+                    }
+                }
+            }
+        }
+        peers = new int[CELL_COUNT][];
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int[] cellPeers = new int[CELL_COUNT];
+            int peerCount = 0;
+            for (int other = 0; other < CELL_COUNT; other++) {
+                if (isPeer[cell][other]) {
+                    cellPeers[peerCount++] = other;
+                }
+            }
+            peers[cell] = Arrays.copyOf(cellPeers, peerCount);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getUnitCount() {
+        return units.length;
+    }
+
+    public int getCageCount() {
+        return cages.length;
+    }
+
+    /**
+     * Builds a {@link ConstraintModel}, starting from classic rows, columns, and blocks. Squares are addressed by
+     * index, row-major from 0 to 80.
+     */
+    public static final class Builder {
+        private int[] regionOfCell;
+        private final List<int[]> extraRegions = new ArrayList<>();
+        private final List<int[]> cages = new ArrayList<>();
+        private final List<Integer> cageSums = new ArrayList<>();
+
+        private Builder() {}
+
+        /**
+         * Replaces the blocks with irregular regions, as in jigsaw sudoku.
+         *
+         * @param regionOfCell the region (0-8) of each of the 81 squares; every region must have nine squares
+         */
+        public Builder withJigsawRegions(int[] regionOfCell) {
+            if (regionOfCell.length != CELL_COUNT) {
+                throw new IllegalArgumentException("Jigsaw layout must assign a region to all 81 squares");
+            }
+            int[] regionSizes = new int[ROW_COL_LENGTH];
+            for (int region : regionOfCell) {
+                if (region < 0 || region >= ROW_COL_LENGTH || ++regionSizes[region] > ROW_COL_LENGTH) {
+                    throw new IllegalArgumentException("Jigsaw layout needs nine regions of nine squares each");
+                }
+            }
+            this.regionOfCell = regionOfCell.clone();
+            return this;
+        }
+
+        /**
+         * Adds both main diagonals as regions, as in diagonal (X) sudoku.
+         */
+        public Builder withDiagonals() {
+            int[] diagonal = new int[ROW_COL_LENGTH];
+            int[] antiDiagonal = new int[ROW_COL_LENGTH];
+            for (int i = 0; i < ROW_COL_LENGTH; i++) {
+                diagonal[i] = i * ROW_COL_LENGTH + i;
+                antiDiagonal[i] = i * ROW_COL_LENGTH + (ROW_COL_LENGTH - 1 - i);
+            }
+            return withRegion(diagonal).withRegion(antiDiagonal);
+        }
+
+        /**
+         * Adds a region of nine squares that must hold each value once, e.g. the windows of windoku.
+         */
+        public Builder withRegion(int... cells) {
+            if (cells.length != ROW_COL_LENGTH || !areDistinctCells(cells)) {
+                throw new IllegalArgumentException("A region must have nine distinct squares");
+            }
+            extraRegions.add(cells.clone());
+            return this;
+        }
+
+        /**
+         * Adds a Killer cage: the squares hold distinct values that add up to sum.
+         */
+        public Builder withCage(int sum, int... cells) {
+            if (cells.length == 0 || cells.length > ROW_COL_LENGTH || !areDistinctCells(cells)) {
+                throw new IllegalArgumentException("A cage must have one to nine distinct squares");
+            }
+            int minSum = cells.length * (cells.length + 1) / 2;
+            int maxSum = cells.length * (2 * ROW_COL_LENGTH + 1 - cells.length) / 2;
+            if (sum < minSum || sum > maxSum) {
+                throw new IllegalArgumentException(
+                        "A cage of " + cells.length + " squares cannot add up to " + sum);
+            }
+            for (int[] cage : cages) {
+                for (int cell : cage) {
+                    for (int newCell : cells) {
+                        if (cell == newCell) {
+                            throw new IllegalArgumentException("Square " + cell + " is already in a cage");
+                        }
+                    }
+                }
+            }
+            cages.add(cells.clone());
+            cageSums.add(sum);
+            return this;
+        }
+
+        public ConstraintModel build() {
+            int unitCount = FIRST_REGION_UNIT + ROW_COL_LENGTH + extraRegions.size();
+            if (unitCount > MAX_UNITS) {
+                throw new IllegalArgumentException("At most " + MAX_UNITS + " units are supported");
+            }
+
+            int[][] units = new int[unitCount][ROW_COL_LENGTH];
+            int[] regionFill = new int[ROW_COL_LENGTH];
+            for (int cell = 0; cell < CELL_COUNT; cell++) {
+                int row = cell / ROW_COL_LENGTH;
+                int col = cell % ROW_COL_LENGTH;
+                int region = regionOfCell != null ? regionOfCell[cell] : ((row / 3) * 3) + (col / 3);
+                units[row][col] = cell;
+                units[ROW_COL_LENGTH + col][row] = cell;
+                units[FIRST_REGION_UNIT + region][regionFill[region]++] = cell;
+            }
+            for (int i = 0; i < extraRegions.size(); i++) {
+                units[FIRST_REGION_UNIT + ROW_COL_LENGTH + i] = extraRegions.get(i);
+            }
+
+            int[] sums = new int[cageSums.size()];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = cageSums.get(i);
+            }
+            return new ConstraintModel(units, cages.toArray(new int[cages.size()][]), sums);
+        }
+
+        private static boolean areDistinctCells(int[] cells) {
+            boolean[] seen = new boolean[CELL_COUNT];
+            for (int cell : cells) {
+                if (cell < 0 || cell >= CELL_COUNT || seen[cell]) {
+                    return false;
+                }
+                seen[cell] = true;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.jwatts.sudoku;
+
+/**
+ * Solves the grid as an exact cover problem with Knuth's Algorithm X over dancing links. Every (square, value) choice
+ * is a row covering four columns: the square is filled, and its row, column, and block have the value. Unlike the
+ * logical solver this always finishes a puzzle that has a solution, since it backtracks.
+ *
+ * The links are kept in parallel int arrays rather than node objects, built once per solve.
+ */
+class DancingLinksSolverBackend implements SolverBackend {
+    static final String NAME = "dlx";
+
+    @Override
+    public boolean solve(Grid grid) {
+        int[] solution = new ExactCover(grid.getBlockSize()).solve(SolverBackends.readValues(grid));
+        if (solution == null) {
+            return false;
+        }
+        SolverBackends.writeSolution(grid, solution);
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    static final class ExactCover {
+        private final int rowColLength;
+        private final int cellCount;
+
+        // Node 0 is the root, nodes 1..columnCount are column headers, then four nodes per choice
+        private final int[] left;
+        private final int[] right;
+        private final int[] up;
+        private final int[] down;
+        private final int[] columnOf;
+        private final int[] choiceOf;
+        private final int[] columnSizes;
+
+        private final int[] chosen;
+
+        ExactCover(int blockSize) {
+            rowColLength = blockSize * blockSize;
+            cellCount = rowColLength * rowColLength;
+            int columnCount = 4 * cellCount;
+            int choiceCount = cellCount * rowColLength;
+            int nodeCount = 1 + columnCount + 4 * choiceCount;
+            left = new int[nodeCount];
+            right = new int[nodeCount];
+            up = new int[nodeCount];
+            down = new int[nodeCount];
+            columnOf = new int[nodeCount];
+            choiceOf = new int[nodeCount];
+            columnSizes = new int[columnCount + 1];
+            chosen = new int[cellCount];
+
+            for (int column = 0; column <= columnCount; column++) {
+                left[column] = column == 0 ? columnCount : column - 1;
+                right[column] = column == columnCount ? 0 : column + 1;
+                up[column] = column;
+                down[column] = column;
+                columnOf[column] = column;
+            }
+
+            int node = columnCount + 1;
+            for (int choice = 0; choice < choiceCount; choice++) {
+                int cell = choice / rowColLength;
+                int valueIndex = choice % rowColLength;
+                int row = cell / rowColLength;
+                int col = cell % rowColLength;
+                int block = ((row / blockSize) * blockSize) + (col / blockSize);
+                int[] columns = {
+                        1 + cell,
+                        1 + cellCount + row * rowColLength + valueIndex,
+                        1 + 2 * cellCount + col * rowColLength + valueIndex,
+                        1 + 3 * cellCount + block * rowColLength + valueIndex,
+                };
+                for (int i = 0; i < columns.length; i++) {
+                    int column = columns[i];
+                    columnOf[node + i] = column;
+                    choiceOf[node + i] = choice;
+                    up[node + i] = up[column];
+                    down[node + i] = column;
+                    down[up[column]] = node + i;
+                    up[column] = node + i;
+                    columnSizes[column]++;
+                    left[node + i] = node + (i + 3) % 4;
+                    right[node + i] = node + (i + 1) % 4;
+                }
+                node += 4;
+            }
+        }
+
+        /**
+         * @param values row-major grid values, 0 for empty
+         * @return the completed values, or null if the givens conflict or the puzzle has no solution
+         */
+        int[] solve(int[] values) {
+            boolean[] covered = new boolean[columnSizes.length];
+            int depth = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (values[cell] == 0) {
+                    continue;
+                }
+                // First node of the choice for this value in this square
+                int node = 1 + 4 * cellCount + 4 * (cell * rowColLength + values[cell] - 1);
+                int j = node;
+                do {
+                    if (covered[columnOf[j]]) {
+                        return null;
+                    }
+                    j = right[j];
+                } while (j != node);
+                do {
+                    covered[columnOf[j]] = true;
+                    cover(columnOf[j]);
+                    j = right[j];
+                } while (j != node);
+                chosen[depth++] = choiceOf[node];
+            }
+
+            if (!search(depth)) {
+                return null;
+            }
+            int[] solution = new int[cellCount];
+            for (int choice : chosen) {
+                solution[choice / rowColLength] = choice % rowColLength + 1;
+            }
+            return solution;
+        }
+
+        private boolean search(int depth) {
+            if (right[0] == 0) {
+                return true;
+            }
+
+            // Column with the fewest remaining choices
+            int column = right[0];
+            for (int c = right[column]; c != 0; c = right[c]) {
+                if (columnSizes[c] < columnSizes[column]) {
+                    column = c;
+                }
+            }
+            if (columnSizes[column] == 0) {
+                return false;
+            }
+
+            cover(column);
+            for (int node = down[column]; node != column; node = down[node]) {
+                chosen[depth] = choiceOf[node];
+                for (int j = right[node]; j != node; j = right[j]) {
+                    cover(columnOf[j]);
+                }
+                if (search(depth + 1)) {
+                    return true;
+                }
+                for (int j = left[node]; j != node; j = left[j]) {
+                    uncover(columnOf[j]);
+                }
+            }
+            uncover(column);
+            return false;
+        }
+
+        private void cover(int column) {
+            right[left[column]] = right[column];
+            left[right[column]] = left[column];
+            for (int i = down[column]; i != column; i = down[i]) {
+                for (int j = right[i]; j != i; j = right[j]) {
+                    up[down[j]] = up[j];
+                    down[up[j]] = down[j];
+                    columnSizes[columnOf[j]]--;
+                }
+            }
+        }
+
+        private void uncover(int column) {
+            for (int i = up[column]; i != column; i = up[i]) {
+                for (int j = left[i]; j != i; j = left[j]) {
+                    columnSizes[columnOf[j]]++;
+                    up[down[j]] = j;
+                    down[up[j]] = j;
+                }
+            }
+            right[left[column]] = column;
+            left[right[column]] = column;
+        }
+    }
+}
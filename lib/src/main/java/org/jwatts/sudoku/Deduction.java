@@ -0,0 +1,62 @@
+package org.jwatts.sudoku;
+
+/**
+ * A single logical step towards solving a grid: either placing a value in a square, or, for techniques like pointing
+ * pairs, removing a value from the possible values of a square.
+ *
+ * @see Grid#nextDeduction()
+ */
+public final class Deduction {
+    public enum Technique {
+        NAKED_SINGLE,
+        HIDDEN_SINGLE,
+        POINTING_PAIR
+    }
+
+    private final Technique technique;
+    private final int rowIndex;
+    private final int colIndex;
+    private final int value;
+    private final boolean isElimination;
+
+    Deduction(Technique technique, int rowIndex, int colIndex, int value, boolean isElimination) {
+        this.technique = technique;
+        this.rowIndex = rowIndex;
+        this.colIndex = colIndex;
+        this.value = value;
+        this.isElimination = isElimination;
+    }
+
+    public Technique getTechnique() {
+        return technique;
+    }
+
+    public int getRowIndex() {
+        return rowIndex;
+    }
+
+    public int getColIndex() {
+        return colIndex;
+    }
+
+    /**
+     * @return the value to place, or the value to remove if this is an elimination
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * @return true if this deduction removes {@link #getValue()} from the square's possible values rather than placing
+     *         it
+     */
+    public boolean isElimination() {
+        return isElimination;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s %d at row %d, col %d", technique, isElimination ? "remove" : "place", value,
+                rowIndex, colIndex);
+    }
+}
@@ -0,0 +1,193 @@
+package org.jwatts.sudoku;
+
+import org.jwatts.sudoku.events.SolverEventListener;
+import org.jwatts.sudoku.events.SolverEvents;
+
+/**
+ * Resumable depth-first search over {@link SolverWorkspace} states: propagates, then branches on the square with the
+ * fewest candidates. The search stack is explicit, one workspace per branch level, so the search can stop after any
+ * step, at a solution or when its budget runs out, and carry on later from exactly where it was.
+ *
+ * Shared by {@link SolutionEnumerator} and the budgeted {@link Grid#solve(SolveBudget)}.
+ */
+final class DepthFirstSearch {
+    enum Outcome {
+        SOLUTION,
+        EXHAUSTED,
+        OUT_OF_BUDGET
+    }
+
+    private static final int CELL_COUNT = SolverWorkspace.CELL_COUNT;
+
+    private final ConstraintModel model;
+
+    // Indexed by branch level; the workspace holds the propagated state at that level before branching
+    private final SolverWorkspace[] workspaces = new SolverWorkspace[CELL_COUNT + 1];
+    private final int[] branchCells = new int[CELL_COUNT + 1];
+    private final int[] untriedCandidates = new int[CELL_COUNT + 1];
+    private int depth = -1;
+
+    // Set when propagation alone solved the root, so there is no branching to do
+    private boolean isRootSolved;
+
+    private SolverWorkspace solution;
+    private long stepCount;
+
+    /**
+     * Copies and propagates the root state; root itself is left as is.
+     */
+    DepthFirstSearch(SolverWorkspace root) {
+        model = root.getModel();
+        SolverWorkspace state = workspace(0);
+        state.copyFrom(root);
+        if (state.hasContradiction()) {
+            return;
+        }
+        state.solve();
+        if (state.hasContradiction()) {
+            return;
+        }
+        if (state.getFilledCount() == CELL_COUNT) {
+            isRootSolved = true;
+            return;
+        }
+        depth = 0;
+        branchOnFewestCandidates(0);
+    }
+
+    // Starts a split off at a branch point of another search, with the candidates it gave up
+    private DepthFirstSearch(SolverWorkspace branchPoint, int branchCell, int candidates) {
+        model = branchPoint.getModel();
+        workspace(0).copyFrom(branchPoint);
+        branchCells[0] = branchCell;
+        untriedCandidates[0] = candidates;
+        depth = 0;
+    }
+
+    /**
+     * @return the propagated state the search started from: every value in it is forced by the givens, and its
+     *         candidates are what remains possible for each empty square
+     */
+    SolverWorkspace getRoot() {
+        return workspaces[0];
+    }
+
+    /**
+     * @return the solution found by the last call to {@link #advance} that returned {@link Outcome#SOLUTION}
+     */
+    SolverWorkspace getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return the number of branches tried so far
+     */
+    long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Searches for the next solution, trying at most maxSteps branches and stopping once System.nanoTime() passes
+     * deadlineNanos, if hasDeadline.
+     */
+    Outcome advance(long maxSteps, boolean hasDeadline, long deadlineNanos) {
+        if (isRootSolved) {
+            isRootSolved = false;
+            solution = workspaces[0];
+            return Outcome.SOLUTION;
+        }
+
+        SolverEventListener events = SolverEvents.ENABLED ? SolverEvents.getListener() : null;
+        long stepLimit = stepCount + maxSteps;
+        while (depth >= 0) {
+            if (stepCount - stepLimit >= 0 || (hasDeadline && System.nanoTime() - deadlineNanos >= 0)) {
+                return Outcome.OUT_OF_BUDGET;
+            }
+            int candidates = untriedCandidates[depth];
+            if (candidates == 0) {
+                if (events != null) {
+                    events.backtracked(depth);
+                }
+                depth--;
+                continue;
+            }
+            int bit = candidates & -candidates;
+            untriedCandidates[depth] = candidates ^ bit;
+            stepCount++;
+            if (events != null) {
+                events.branched(depth, branchCells[depth], Integer.bitCount(candidates));
+            }
+
+            SolverWorkspace child = workspace(depth + 1);
+            child.copyFrom(workspaces[depth]);
+            if (!child.setValue(branchCells[depth], Integer.numberOfTrailingZeros(bit) + 1)) {
+                continue;
+            }
+            child.solve();
+            if (child.hasContradiction()) {
+                continue;
+            }
+            if (child.getFilledCount() == CELL_COUNT) {
+                solution = child;
+                return Outcome.SOLUTION;
+            }
+            depth++;
+            branchOnFewestCandidates(depth);
+        }
+        return Outcome.EXHAUSTED;
+    }
+
+    /**
+     * Gives away the untried candidates of the shallowest branch point that has any, since those have the biggest
+     * subtrees left. At the deepest open branch point, which has no search below it in progress here, half of the
+     * candidates are kept.
+     *
+     * @return the search over the candidates given away, or null if there is nothing left to split
+     */
+    DepthFirstSearch trySplit() {
+        for (int level = 0; level <= depth; level++) {
+            int candidates = untriedCandidates[level];
+            int candidateCount = Integer.bitCount(candidates);
+            if (level < depth && candidateCount > 0) {
+                untriedCandidates[level] = 0;
+                return new DepthFirstSearch(workspaces[level], branchCells[level], candidates);
+            }
+            if (level == depth && candidateCount > 1) {
+                int kept = 0;
+                int givenAway = candidates;
+                for (int i = 0; i < (candidateCount + 1) / 2; i++) {
+                    int bit = givenAway & -givenAway;
+                    kept |= bit;
+                    givenAway ^= bit;
+                }
+                untriedCandidates[level] = kept;
+                return new DepthFirstSearch(workspaces[level], branchCells[level], givenAway);
+            }
+        }
+        return null;
+    }
+
+    private void branchOnFewestCandidates(int level) {
+        SolverWorkspace state = workspaces[level];
+        int bestCell = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            if (state.getValue(cell) == 0) {
+                int count = Integer.bitCount(state.getCandidates(cell));
+                if (count < bestCount) {
+                    bestCell = cell;
+                    bestCount = count;
+                }
+            }
+        }
+        branchCells[level] = bestCell;
+        untriedCandidates[level] = state.getCandidates(bestCell);
+    }
+
+    private SolverWorkspace workspace(int level) {
+        if (workspaces[level] == null) {
+            workspaces[level] = new SolverWorkspace(model);
+        }
+        return workspaces[level];
+    }
+}
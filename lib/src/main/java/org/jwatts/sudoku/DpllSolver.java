@@ -0,0 +1,246 @@
+package org.jwatts.sudoku;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small DPLL SAT solver: unit propagation over two watched literals per clause, and chronological backtracking that
+ * flips the most recent unflipped decision. Branches on a literal of the shortest unsatisfied clause with more than two
+ * literals, which for a {@link CnfEncoding} is the square or unit with the fewest places left for a value.
+ *
+ * Literals are DIMACS style: variable v is the literal v, its negation -v.
+ */
+class DpllSolver {
+    private static final int UNASSIGNED = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = -1;
+
+    private final int variableCount;
+    private final int[][] clauses;
+    private final int[] longClauses;
+
+    // Clauses watching each literal, indexed by literalIndex(); clause[0] and clause[1] are the watched literals
+    private final int[][] watches;
+    private final int[] watchCounts;
+
+    private final int[] assignment;
+    private final int[] trail;
+    private int trailSize;
+    private int propagateHead;
+
+    private final int[] decisionTrailStarts;
+    private final int[] decisionLiterals;
+    private final boolean[] decisionFlipped;
+    private int decisionLevel;
+
+    private boolean isUnsatisfiable;
+
+    DpllSolver(int variableCount, List<int[]> clauses) {
+        this.variableCount = variableCount;
+        assignment = new int[variableCount + 1];
+        trail = new int[variableCount];
+        decisionTrailStarts = new int[variableCount];
+        decisionLiterals = new int[variableCount];
+        decisionFlipped = new boolean[variableCount];
+        watches = new int[2 * (variableCount + 1)][];
+        watchCounts = new int[watches.length];
+        for (int i = 0; i < watches.length; i++) {
+            watches[i] = new int[4];
+        }
+
+        this.clauses = new int[clauses.size()][];
+        int[] longClauseIndexes = new int[clauses.size()];
+        int longClauseCount = 0;
+        for (int c = 0; c < this.clauses.length; c++) {
+            int[] clause = clauses.get(c).clone();
+            this.clauses[c] = clause;
+            if (clause.length == 0) {
+                isUnsatisfiable = true;
+            } else if (clause.length == 1) {
+                // Single-literal clauses never need watching: they are assigned once, up front
+                if (!enqueue(clause[0])) {
+                    isUnsatisfiable = true;
+                }
+            } else {
+                watch(clause[0], c);
+                watch(clause[1], c);
+                if (clause.length > 2) {
+                    longClauseIndexes[longClauseCount++] = c;
+                }
+            }
+        }
+        longClauses = Arrays.copyOf(longClauseIndexes, longClauseCount);
+    }
+
+    /**
+     * @return the satisfying assignment indexed by variable (index 0 unused), or null if the clauses are
+     *         unsatisfiable
+     */
+    boolean[] solve() {
+        if (isUnsatisfiable || !propagate()) {
+            return null;
+        }
+        while (true) {
+            int literal = chooseBranchLiteral();
+            if (literal == 0) {
+                boolean[] result = new boolean[variableCount + 1];
+                for (int v = 1; v <= variableCount; v++) {
+                    result[v] = assignment[v] == TRUE;
+                }
+                return result;
+            }
+            decisionTrailStarts[decisionLevel] = trailSize;
+            decisionLiterals[decisionLevel] = literal;
+            decisionFlipped[decisionLevel] = false;
+            decisionLevel++;
+            enqueue(literal);
+
+            while (!propagate()) {
+                while (decisionLevel > 0 && decisionFlipped[decisionLevel - 1]) {
+                    decisionLevel--;
+                    undoTo(decisionTrailStarts[decisionLevel]);
+                }
+                if (decisionLevel == 0) {
+                    return null;
+                }
+                int level = decisionLevel - 1;
+                undoTo(decisionTrailStarts[level]);
+                decisionFlipped[level] = true;
+                enqueue(-decisionLiterals[level]);
+            }
+        }
+    }
+
+    private int chooseBranchLiteral() {
+        int best = 0;
+        int bestOpenCount = Integer.MAX_VALUE;
+        for (int c : longClauses) {
+            int[] clause = clauses[c];
+            int openCount = 0;
+            int firstOpen = 0;
+            boolean isSatisfied = false;
+            for (int literal : clause) {
+                int value = valueOf(literal);
+                if (value == TRUE) {
+                    isSatisfied = true;
+                    break;
+                }
+                if (value == UNASSIGNED) {
+                    if (openCount++ == 0) {
+                        firstOpen = literal;
+                    }
+                }
+            }
+            if (!isSatisfied && openCount < bestOpenCount) {
+                best = firstOpen;
+                bestOpenCount = openCount;
+                if (openCount == 2) {
+                    break;
+                }
+            }
+        }
+        if (best != 0) {
+            return best;
+        }
+        for (int v = 1; v <= variableCount; v++) {
+            if (assignment[v] == UNASSIGNED) {
+                return v;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return false if some clause has all of its literals false
+     */
+    private boolean propagate() {
+        while (propagateHead < trailSize) {
+            int falseLiteral = -trail[propagateHead++];
+            int watchIndex = literalIndex(falseLiteral);
+            int[] watching = watches[watchIndex];
+            int count = watchCounts[watchIndex];
+            int kept = 0;
+            int i = 0;
+            boolean isConflict = false;
+            while (i < count) {
+                int c = watching[i++];
+                int[] clause = clauses[c];
+                if (clause[0] == falseLiteral) {
+                    clause[0] = clause[1];
+                    clause[1] = falseLiteral;
+                }
+                if (valueOf(clause[0]) == TRUE) {
+                    watching[kept++] = c;
+                    continue;
+                }
+
+                boolean isMoved = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (valueOf(clause[k]) != FALSE) {
+                        clause[1] = clause[k];
+                        clause[k] = falseLiteral;
+                        watch(clause[1], c);
+                        isMoved = true;
+                        break;
+                    }
+                }
+                if (isMoved) {
+                    continue;
+                }
+
+                watching[kept++] = c;
+                if (!enqueue(clause[0])) {
+                    isConflict = true;
+                    break;
+                }
+            }
+            while (i < count) {
+                watching[kept++] = watching[i++];
+            }
+            watchCounts[watchIndex] = kept;
+            if (isConflict) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the literal true.
+     *
+     * @return false if it is already false
+     */
+    private boolean enqueue(int literal) {
+        int value = valueOf(literal);
+        if (value != UNASSIGNED) {
+            return value == TRUE;
+        }
+        assignment[Math.abs(literal)] = literal > 0 ? TRUE : FALSE;
+        trail[trailSize++] = literal;
+        return true;
+    }
+
+    private void undoTo(int trailStart) {
+        while (trailSize > trailStart) {
+            assignment[Math.abs(trail[--trailSize])] = UNASSIGNED;
+        }
+        propagateHead = trailSize;
+    }
+
+    private int valueOf(int literal) {
+        int value = assignment[Math.abs(literal)];
+        return literal > 0 ? value : -value;
+    }
+
+    private void watch(int literal, int clauseIndex) {
+        int index = literalIndex(literal);
+        if (watchCounts[index] == watches[index].length) {
+            watches[index] = Arrays.copyOf(watches[index], 2 * watches[index].length);
+        }
+        watches[index][watchCounts[index]++] = clauseIndex;
+    }
+
+    private static int literalIndex(int literal) {
+        return literal > 0 ? 2 * literal : -2 * literal + 1;
+    }
+}
@@ -1,16 +1,15 @@
 package org.jwatts.sudoku;
 
-import org.apache.commons.collections4.CollectionUtils;
+import org.jwatts.sudoku.events.SolverEventListener;
+import org.jwatts.sudoku.events.SolverEvents;
 import org.jwatts.sudoku.events.ValueSetObserver;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.jwatts.sudoku.store.PackedGrid;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 public class Grid {
-    private static final Logger sLogger = LoggerFactory.getLogger(Grid.class);
     private static final int DEFAULT_BLOCK_SIZE = 3;
 
     // Each block is blockSize * blockSize, whole grid is blockSize^2 * blockSize^2
@@ -31,6 +30,26 @@ public class Grid {
 
     private final Set<ValueSetObserver> valueSetObservers;
 
+    private final ConflictIndex conflictIndex;
+
+    private final LookupTables tables;
+
+    // For each unit and value, indexed by unit * (rowColLength + 1) + value: bit i is set if the i-th square of the
+    // unit is empty and can still take the value. Units are numbered like ConflictIndex, rows, then columns, then
+    // blocks; positions are the column within a row, the row within a column, and row-major within a block.
+    private final int[] unitValuePositions;
+
+    // Set when a technique eliminates a possible value, cleared when every square's eliminations are reset
+    private boolean hasEliminatedValues;
+
+    // Resolved on first use, so that building and editing a grid does not load the backends
+    private SolverBackend solverBackend;
+
+    // Only tracked while a history is attached; current after every value set or cleared
+    private GridHistory history;
+    private GridState state;
+    private boolean isRestoring;
+
     Grid(int blockSize) {
         this.blockSize = blockSize;
         rowColLength = blockSize * blockSize;
@@ -39,6 +58,15 @@ public class Grid {
         blocks = new Square[rowColLength][rowColLength];
         allPossibleValues = Collections.unmodifiableSet(initAllPossibleValues());
         valueSetObservers = new HashSet<>();
+        conflictIndex = new ConflictIndex(rowColLength);
+        tables = LookupTables.forBlockSize(blockSize);
+        unitValuePositions = new int[3 * rowColLength * (rowColLength + 1)];
+        int allPositions = (1 << rowColLength) - 1;
+        for (int unit = 0; unit < 3 * rowColLength; unit++) {
+            for (int value = 1; value <= rowColLength; value++) {
+                unitValuePositions[unit * (rowColLength + 1) + value] = allPositions;
+            }
+        }
         initialize();
     }
 
@@ -100,6 +128,10 @@ public class Grid {
         return rowColLength;
     }
 
+    int getBlockSize() {
+        return blockSize;
+    }
+
     public Square[][] getSquares() {
         return squares;
     }
@@ -118,31 +150,220 @@ public class Grid {
     }
 
     /**
-     * @return true if the puzzle was fully solved; false otherwise
+     * Solves the grid in place with its {@link SolverBackend}, by default the one named by
+     * {@link SolverBackends#SOLVER_BACKEND_PROPERTY}, or the logical solver.
+     *
+     * @return true if the puzzle was fully solved; false otherwise, including right away if the grid already has
+     *         conflicting values or a square with no possible values
      */
     public boolean solve() {
+        if (conflictIndex.isContradictory()) {
+            return false;
+        }
+        if (!SolverEvents.ENABLED) {
+            return getSolverBackend().solve(this);
+        }
+
+        SolverEventListener events = SolverEvents.getListener();
+        events.solveStarted(fingerprint(), getFilledInSquareCount());
+        boolean isSolved = false;
+        try {
+            isSolved = getSolverBackend().solve(this);
+            return isSolved;
+        } finally {
+            events.solveFinished(isSolved, getFilledInSquareCount());
+        }
+    }
+
+    public SolverBackend getSolverBackend() {
+        if (solverBackend == null) {
+            solverBackend = SolverBackends.getDefault();
+        }
+        return solverBackend;
+    }
+
+    public void setSolverBackend(SolverBackend solverBackend) {
+        this.solverBackend = solverBackend;
+    }
+
+    /**
+     * The logical solver behind {@link LogicalSolverBackend}.
+     */
+    boolean solveWithTechniques() {
         int totalGridSize = rowColLength * rowColLength;
         int filledCount = getFilledInSquareCount();
 
         while (filledCount < totalGridSize) {
+            if (conflictIndex.isContradictory()) {
+                return false;
+            }
+
             int prevFilledCount = filledCount;
-            fillInValues();
+            SolverEventListener events = SolverEvents.ENABLED ? SolverEvents.getListener() : null;
+            if (events != null) {
+                events.passStarted();
+            }
+            fillInValues(events);
             filledCount = getFilledInSquareCount();
+            if (events != null) {
+                events.passFinished(filledCount, filledCount != prevFilledCount);
+            }
 
             if (filledCount == prevFilledCount) {
                 return false;
             }
         }
 
-        return true;
+        return !conflictIndex.isContradictory();
+    }
+
+    /**
+     * Finds the next logical step towards solving this grid without changing it, for giving hints. The grid's values
+     * and eliminated possible values are copied into a {@link SolverWorkspace}, which looks for the cheapest deduction
+     * among the techniques {@link #solve()} uses.
+     *
+     * @return null if the grid is solved, has conflicts, or needs techniques beyond the ones implemented here
+     */
+    public Deduction nextDeduction() {
+        if (rowColLength != SolverWorkspace.ROW_COL_LENGTH) {
+            throw new UnsupportedOperationException("nextDeduction only valid for 9x9 grids");
+        }
+        if (conflictIndex.isContradictory()) {
+            return null;
+        }
+        return toWorkspace().nextDeduction();
+    }
+
+    /**
+     * Solves as far as a budget allows, for callers that would rather have a partly solved grid in time than wait on
+     * a hard puzzle. Unlike {@link #solve()} this always finishes a puzzle that has a solution, given the budget,
+     * since it backtracks after propagating. Whatever is known when the search stops is applied to this grid: the
+     * solution, or else the values forced by the givens and the eliminated candidates.
+     *
+     * @return the outcome, with a continuation to resume from if the budget ran out
+     * @throws UnsupportedOperationException if the grid is not 9x9
+     */
+    public PartialSolution solve(SolveBudget budget) {
+        if (rowColLength != SolverWorkspace.ROW_COL_LENGTH) {
+            throw new UnsupportedOperationException("Budgeted solve only valid for 9x9 grids");
+        }
+        if (!SolverEvents.ENABLED) {
+            return solveWithBudget(budget);
+        }
+
+        SolverEventListener events = SolverEvents.getListener();
+        events.solveStarted(fingerprint(), getFilledInSquareCount());
+        boolean isSolved = false;
+        try {
+            PartialSolution result = solveWithBudget(budget);
+            isSolved = result.getStatus() == PartialSolution.Status.SOLVED;
+            return result;
+        } finally {
+            events.solveFinished(isSolved, getFilledInSquareCount());
+        }
+    }
+
+    private PartialSolution solveWithBudget(SolveBudget budget) {
+        PartialSolution result = new SolveContinuation(new DepthFirstSearch(toWorkspace())).resume(budget);
+        result.applyTo(this);
+        return result;
+    }
+
+    /**
+     * @return the {@link PackedGrid#fingerprint} of the current values, or 0 if the grid is not 9x9
+     */
+    private long fingerprint() {
+        if (rowColLength * rowColLength != PackedGrid.CELL_COUNT) {
+            return 0;
+        }
+        byte[] serialized = new byte[PackedGrid.CELL_COUNT];
+        for (int row = 0; row < rowColLength; row++) {
+            for (int col = 0; col < rowColLength; col++) {
+                serialized[row * rowColLength + col] = (byte) ('0' + squares[row][col].getValue());
+            }
+        }
+        byte[] packed = new byte[PackedGrid.PACKED_SIZE];
+        PackedGrid.pack(serialized, 0, packed, 0);
+        return PackedGrid.fingerprint(packed, 0);
     }
 
-    private void fillInValues() {
+    /**
+     * Copies the values and the eliminated possible values of this 9x9 grid into a new workspace.
+     */
+    private SolverWorkspace toWorkspace() {
+        SolverWorkspace workspace = new SolverWorkspace();
+        for (int row = 0; row < rowColLength; row++) {
+            for (int col = 0; col < rowColLength; col++) {
+                if (squares[row][col].hasValue()) {
+                    workspace.setValue(row * rowColLength + col, squares[row][col].getValue());
+                }
+            }
+        }
+        for (int row = 0; row < rowColLength; row++) {
+            for (int col = 0; col < rowColLength; col++) {
+                workspace.restrictCandidates(row * rowColLength + col, squares[row][col].getPossibleValueMask());
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * @param events where to report what each technique did, or null
+     */
+    private void fillInValues(SolverEventListener events) {
+        int possibleValueCount = events != null ? getPossibleValueCount() : 0;
+        int filledCount = events != null ? getFilledInSquareCount() : 0;
+
+        // The conflict index is current after every step, so stop as soon as a step leads to a contradiction rather
+        // than making more deductions from it
         removePointingPairsFromPossibleValues();
-        findValuesForGroup(blocks);
-        findValuesForGroup(squares);
-        findValuesForGroup(columns);
-        fillInNakedSingles();
+        if (events != null) {
+            int removedCount = possibleValueCount - getPossibleValueCount();
+            if (removedCount > 0) {
+                events.techniqueApplied(Deduction.Technique.POINTING_PAIR, removedCount);
+            }
+        }
+        if (!conflictIndex.isContradictory()) {
+            findValuesForGroup(blocks, 2 * rowColLength);
+        }
+        if (!conflictIndex.isContradictory()) {
+            findValuesForGroup(squares, 0);
+        }
+        if (!conflictIndex.isContradictory()) {
+            findValuesForGroup(columns, rowColLength);
+        }
+        if (events != null) {
+            filledCount = reportPlacements(events, Deduction.Technique.HIDDEN_SINGLE, filledCount);
+        }
+        if (!conflictIndex.isContradictory()) {
+            fillInNakedSingles();
+        }
+        if (events != null) {
+            reportPlacements(events, Deduction.Technique.NAKED_SINGLE, filledCount);
+        }
+    }
+
+    /**
+     * @return the number of squares filled now
+     */
+    private int reportPlacements(SolverEventListener events, Deduction.Technique technique, int prevFilledCount) {
+        int filledCount = getFilledInSquareCount();
+        if (filledCount > prevFilledCount) {
+            events.techniqueApplied(technique, filledCount - prevFilledCount);
+        }
+        return filledCount;
+    }
+
+    private int getPossibleValueCount() {
+        int count = 0;
+        for (Square[] row : squares) {
+            for (Square square : row) {
+                if (!square.hasValue()) {
+                    count += LookupTables.bitCount(square.getPossibleValueMask());
+                }
+            }
+        }
+        return count;
     }
 
     /**
@@ -153,55 +374,52 @@ public class Grid {
         for (int row = 0; row < rowColLength; row++) {
             for (int col = 0; col < rowColLength; col++) {
                 Square currentSquare = squares[row][col];
-                if (!currentSquare.hasValue()) {
-                    Set<Integer> possibleValues = currentSquare.getPossibleValues();
-                    if (possibleValues.size() == 1) {
-                        currentSquare.setValue(possibleValues.iterator().next());
-                    }
+                int possibleValueMask = currentSquare.getPossibleValueMask();
+                if (possibleValueMask != 0 && LookupTables.bitCount(possibleValueMask) == 1) {
+                    currentSquare.setValue(LookupTables.lowestDigit(possibleValueMask));
                 }
             }
         }
     }
 
-    private void findValuesForGroup(Square[][] squareGroup) {
-        for (Square[] s : squareGroup) {
-            findValuesForSquareCollection(s);
+    /**
+     * @param firstUnit unit number of squareGroup[0]
+     */
+    private void findValuesForGroup(Square[][] squareGroup, int firstUnit) {
+        for (int i = 0; i < squareGroup.length; i++) {
+            if (conflictIndex.isContradictory()) {
+                return;
+            }
+            if (!findValuesForSquareCollection(squareGroup[i], firstUnit + i)) {
+                return;
+            }
         }
     }
 
     /**
      * This method finds so-called Hidden Singles, where values are deduced from the needs of a row, column, or block
      * based on the possible values that all squares in that collection can take.
+     *
+     * @return false if some value has no square left in the collection, so the grid cannot be completed
      */
-    private void findValuesForSquareCollection(Square[] squareCollection) {
-        // We want the values that are not currently set in this block
-        Set<Integer> groupNeededValues = getNeededValuesForSquareCollection(squareCollection);
-        outer: for (Integer i : groupNeededValues) {
-            Square candidateSquare = null;
-            for (Square s : squareCollection) {
-                if (!s.hasValue() && s.getPossibleValues().contains(i)) {
-                    if (candidateSquare != null) {
-                        // cannot have more than one candidate square per value, so go to the next int
-                        continue outer;
-                    }
-                    candidateSquare = s;
-                }
+    private boolean findValuesForSquareCollection(Square[] squareCollection, int unit) {
+        int base = unit * (rowColLength + 1);
+        for (int value = 1; value <= rowColLength; value++) {
+            // We want the values that are not currently set in this collection
+            if (conflictIndex.getUnitValueCount(unit, value) > 0) {
+                continue;
             }
 
-            if (candidateSquare == null) {
-                // Shouldn't happen, something has gone horribly wrong
-                throw new RuntimeException("No possible square found for value " + i);
+            int positions = unitValuePositions[base + value];
+            if (positions == 0) {
+                return false;
+            }
+            // cannot have more than one candidate square per value
+            if ((positions & (positions - 1)) == 0) {
+                squareCollection[LookupTables.lowestDigit(positions) - 1].setValue(value);
             }
-
-            candidateSquare.setValue(i);
         }
-    }
-
-    private Set<Integer> getNeededValuesForSquareCollection(Square[] squareCollection) {
-        Set<Integer> groupNeededValues = allPossibleValues();
-        NeededValuePredicate neededValuePredicate = new NeededValuePredicate(squareCollection);
-        CollectionUtils.filter(groupNeededValues, neededValuePredicate);
-        return groupNeededValues;
+        return true;
     }
 
     /**
@@ -214,59 +432,26 @@ public class Grid {
     private void removePointingPairsFromPossibleValues() {
         for (int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
             Square[] block = blocks[blockIndex];
-            Set<Integer> blockNeededValues = getNeededValuesForSquareCollection(block);
-            valueLoop: for (Integer value : blockNeededValues) {
-                int inRow = -1;
-                int inCol = -1;
-                MatchType matchType = MatchType.UNKNOWN;
-                for (Square s : block) {
-                    if (s.hasValue()) {
-                        continue;
-                    }
-
-                    Set<Integer> possibleValues = s.getPossibleValues();
-                    if (possibleValues.contains(value)) {
-                        // If we already have a position for this value, either the row or the column must be the same.
-                        // We can only have *one* of the two be the same; if two squares have the same row, and one of
-                        // those two shares a col with a third square with that value, then we need to move on the
-                        // next value.
-                        if (inRow < 0 && inCol < 0) {
-                            // This condition means that this is the first square these have matched on.
-                            // Don't know if we're matching on row or col until our next match
-                            inRow = s.getRowIndex();
-                            inCol = s.getColIndex();
-                            continue;
-                        }
-
-                        if (matchType == MatchType.UNKNOWN) {
-                            if (inRow == s.getRowIndex()) {
-                                matchType = MatchType.ROW;
-                            } else if (inCol == s.getColIndex()) {
-                                matchType = MatchType.COL;
-                            } else {
-                                // We have a second match that does not share a row or col with the previous one.
-                                continue valueLoop;
-                            }
-                            continue;
-                        }
+            int unit = 2 * rowColLength + blockIndex;
+            for (int value = 1; value <= rowColLength; value++) {
+                if (conflictIndex.getUnitValueCount(unit, value) > 0) {
+                    continue;
+                }
 
-                        if ((matchType == MatchType.ROW && inRow != s.getRowIndex())
-                                        || (matchType == MatchType.COL && inCol != s.getColIndex())) {
-                            continue valueLoop;
-                        }
-                    }
+                // We need at least two squares for this value, all sharing a row or all sharing a column
+                int positions = unitValuePositions[unit * (rowColLength + 1) + value];
+                if (LookupTables.bitCount(positions) < 2) {
+                    continue;
                 }
-                // After iterating over the squares, we should have a ROW or COL MatchType, or we should have
-                // continued to the next needed value.
-                Square[] squareCollection = null;
-                if (matchType == MatchType.ROW) {
+                int firstPosition = LookupTables.lowestDigit(positions) - 1;
+                Square[] squareCollection;
+                if ((positions & ~tables.blockRowPositions[firstPosition / blockSize]) == 0) {
                     // Remove value from the possible values of other squares in this row
-                    squareCollection = squares[inRow];
-                } else if (matchType == MatchType.COL) {
+                    squareCollection = squares[block[firstPosition].getRowIndex()];
+                } else if ((positions & ~tables.blockColPositions[firstPosition % blockSize]) == 0) {
                     // Remove value from the possible values of other squares in this col
-                    squareCollection = columns[inCol];
+                    squareCollection = columns[block[firstPosition].getColIndex()];
                 } else {
-                    // matchType should always be ROW or COL here, but add this continue to protect against NPE below
                     continue;
                 }
 
@@ -281,12 +466,6 @@ public class Grid {
         }
     }
 
-    private enum MatchType {
-        ROW,
-        COL,
-        UNKNOWN
-    }
-
     public Square[] getRow(int rowIndex) {
         return squares[rowIndex];
     }
@@ -347,7 +526,7 @@ public class Grid {
         // rows 0-2 get mapped to blocks 0-2
         // rows 3-5 get mapped to blocks 3-5
         // rows 6-8 get mapped to blocks 6-8
-        return ((row / blockSize) * blockSize) + (col / blockSize);
+        return tables.blockOf[row * rowColLength + col];
     }
 
     public Set<Integer> allPossibleValues() {
@@ -364,6 +543,10 @@ public class Grid {
         valueSetObservers.add(valueSetObserver);
     }
 
+    public void removeValueSetObserver(ValueSetObserver valueSetObserver) {
+        valueSetObservers.remove(valueSetObserver);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("___________________\n");
@@ -413,11 +596,127 @@ public class Grid {
         return fromIntArrays(gridValues);
     }
 
+    /**
+     * Sets or, with a value of 0, clears a square. The possible values of the whole grid stay current while the puzzle
+     * is being edited, so a following {@link #solve()} picks up from there. Setting a value into an empty square only
+     * updates the associated squares of the edited square. Clearing or replacing a value also drops every value that a
+     * technique eliminated anywhere in the grid, since an elimination can rest on the old value through a chain of
+     * others; that walks the whole grid, but only if something was eliminated since the last such walk.
+     */
     public void setSquareValueAt(int rowIndex, int colIndex, int value) {
-        // Silently ignore invalid values
-        if (value > 0 && value < 10) {
+        if (value == 0) {
+            squares[rowIndex][colIndex].clearValue();
+        } else if (value > 0 && value <= rowColLength) {
             squares[rowIndex][colIndex].setValue(value);
         }
+        // Silently ignore invalid values
+    }
+
+    /**
+     * @return true if any square has the same value as one of its associated squares
+     */
+    public boolean hasConflicts() {
+        return conflictIndex.hasDuplicates();
+    }
+
+    public ConflictIndex getConflictIndex() {
+        return conflictIndex;
+    }
+
+    /**
+     * Called by a square whenever values become possible or impossible for it, to keep the positions of each value in
+     * its row, column, and block current.
+     *
+     * @param changedMask the values that changed, bit (v - 1) for value v
+     */
+    void possibleValuesChanged(Square square, int changedMask) {
+        int cell = square.getRowIndex() * rowColLength + square.getColIndex();
+        int rowUnit = tables.rowOf[cell];
+        int colUnit = rowColLength + tables.colOf[cell];
+        int blockUnit = 2 * rowColLength + tables.blockOf[cell];
+        int rowPosition = 1 << tables.colOf[cell];
+        int colPosition = 1 << tables.rowOf[cell];
+        int blockPosition = 1 << tables.blockPositionOf[cell];
+        while (changedMask != 0) {
+            int value = LookupTables.lowestDigit(changedMask);
+            changedMask &= changedMask - 1;
+            togglePosition(rowUnit, value, rowPosition);
+            togglePosition(colUnit, value, colPosition);
+            togglePosition(blockUnit, value, blockPosition);
+        }
+    }
+
+    private void togglePosition(int unit, int value, int position) {
+        int index = unit * (rowColLength + 1) + value;
+        int oldPositions = unitValuePositions[index];
+        unitValuePositions[index] = oldPositions ^ position;
+        if (oldPositions == 0 || oldPositions == position) {
+            conflictIndex.placeableChanged(unit, value, oldPositions != 0);
+        }
+    }
+
+    int getUnitValuePositions(int unit, int value) {
+        return unitValuePositions[unit * (rowColLength + 1) + value];
+    }
+
+    /**
+     * @return the current values as an immutable state
+     */
+    public GridState getState() {
+        if (rowColLength != GridState.ROW_COL_LENGTH) {
+            throw new UnsupportedOperationException("getState only valid for 9x9 grids");
+        }
+        return state != null ? state : GridState.of(this);
+    }
+
+    void setHistory(GridHistory history) {
+        this.history = history;
+        state = getState();
+    }
+
+    /**
+     * Sets the values of this grid to the ones of a state without adding versions to the history.
+     */
+    void restore(GridState target) {
+        isRestoring = true;
+        try {
+            target.applyTo(this);
+        } finally {
+            isRestoring = false;
+        }
+        state = target;
+    }
+
+    /**
+     * Called by a square after its value was set or cleared.
+     */
+    void valueChanged(Square square) {
+        if (history == null) {
+            return;
+        }
+        state = state.with(square.getRowIndex(), square.getColIndex(), square.getValue());
+        if (!isRestoring) {
+            history.versionAdded(state);
+        }
+    }
+
+    /**
+     * Called by a square when a technique removes one of its possible values.
+     */
+    void valueEliminated() {
+        hasEliminatedValues = true;
+    }
+
+    void resetEliminatedValues() {
+        if (!hasEliminatedValues) {
+            return;
+        }
+        hasEliminatedValues = false;
+        for (Square[] row : squares) {
+            for (Square s : row) {
+                s.resetEliminatedValues();
+            }
+        }
     }
 
     public int getSquareValueAt(int rowIndex, int colIndex) {
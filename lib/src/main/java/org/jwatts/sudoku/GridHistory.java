@@ -0,0 +1,87 @@
+package org.jwatts.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unlimited undo and redo for a 9x9 {@link Grid}. Once attached, every value set or cleared on the grid, by the user
+ * through {@link Grid#setSquareValueAt(int, int, int)} or by the solver, adds a version. Versions are
+ * {@link GridState}s, which share memory with each other, so a version costs about a hundred bytes however long the
+ * session. The versions from one point to another also replay a solve step by step.
+ *
+ * Editing after an undo drops the versions that could have been redone, as in a text editor. Not thread safe: undo and
+ * redo must not run while the grid is being solved on another thread.
+ */
+public final class GridHistory {
+    private final Grid grid;
+    private final List<GridState> versions = new ArrayList<>();
+    private int currentVersion;
+
+    /**
+     * Attaches a history to the grid, replacing any earlier one, starting from its current values.
+     */
+    public GridHistory(Grid grid) {
+        this.grid = grid;
+        versions.add(grid.getState());
+        grid.setHistory(this);
+    }
+
+    void versionAdded(GridState state) {
+        versions.subList(currentVersion + 1, versions.size()).clear();
+        versions.add(state);
+        currentVersion++;
+    }
+
+    public boolean canUndo() {
+        return currentVersion > 0;
+    }
+
+    public boolean canRedo() {
+        return currentVersion < versions.size() - 1;
+    }
+
+    /**
+     * @return false if there was nothing to undo
+     */
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        goTo(currentVersion - 1);
+        return true;
+    }
+
+    /**
+     * @return false if there was nothing to redo
+     */
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        goTo(currentVersion + 1);
+        return true;
+    }
+
+    /**
+     * Restores the grid to a version, keeping all versions so that it can move forward again.
+     */
+    public void goTo(int version) {
+        if (version < 0 || version >= versions.size()) {
+            throw new IndexOutOfBoundsException("No version " + version + " of " + versions.size());
+        }
+        grid.restore(versions.get(version));
+        currentVersion = version;
+    }
+
+    public int getVersionCount() {
+        return versions.size();
+    }
+
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public GridState getVersion(int version) {
+        return versions.get(version);
+    }
+}
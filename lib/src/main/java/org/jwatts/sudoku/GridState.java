@@ -0,0 +1,106 @@
+package org.jwatts.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the values of a 9x9 grid. Changing a value with {@link #with(int, int, int)} returns a new
+ * state that shares almost all of its memory with the old one, so keeping every version of a grid is cheap.
+ *
+ * Values are packed four bits to a square, nine squares to a long per row, and the rows are grouped into three bands
+ * of three rows. An edit copies only the band it touches (three longs) and shares the other two.
+ */
+public final class GridState {
+    static final int ROW_COL_LENGTH = 9;
+    private static final int ROWS_PER_BAND = 3;
+    private static final int BITS_PER_VALUE = 4;
+
+    public static final GridState EMPTY = new GridState(new long[][] {
+            new long[ROWS_PER_BAND], new long[ROWS_PER_BAND], new long[ROWS_PER_BAND] }, 0);
+
+    private final long[][] bands;
+    private final int filledCount;
+
+    private GridState(long[][] bands, int filledCount) {
+        this.bands = bands;
+        this.filledCount = filledCount;
+    }
+
+    public static GridState of(Grid grid) {
+        GridState state = EMPTY;
+        for (int row = 0; row < ROW_COL_LENGTH; row++) {
+            for (int col = 0; col < ROW_COL_LENGTH; col++) {
+                state = state.with(row, col, grid.getSquareValueAt(row, col));
+            }
+        }
+        return state;
+    }
+
+    public int getValue(int rowIndex, int colIndex) {
+        long row = bands[rowIndex / ROWS_PER_BAND][rowIndex % ROWS_PER_BAND];
+        return (int) (row >>> (BITS_PER_VALUE * colIndex)) & 0xf;
+    }
+
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    /**
+     * @return a state with the value of one square changed, 0 for empty; this state if the square already has it
+     */
+    public GridState with(int rowIndex, int colIndex, int value) {
+        int oldValue = getValue(rowIndex, colIndex);
+        if (oldValue == value) {
+            return this;
+        }
+
+        int bandIndex = rowIndex / ROWS_PER_BAND;
+        long[] band = bands[bandIndex].clone();
+        int shift = BITS_PER_VALUE * colIndex;
+        band[rowIndex % ROWS_PER_BAND] = (band[rowIndex % ROWS_PER_BAND] & ~(0xfL << shift)) | ((long) value << shift);
+
+        long[][] newBands = bands.clone();
+        newBands[bandIndex] = band;
+        int filledChange = (value != 0 ? 1 : 0) - (oldValue != 0 ? 1 : 0);
+        return new GridState(newBands, filledCount + filledChange);
+    }
+
+    /**
+     * Sets the values of the grid to the ones of this state, touching only the squares that differ.
+     */
+    public void applyTo(Grid grid) {
+        for (int row = 0; row < ROW_COL_LENGTH; row++) {
+            for (int col = 0; col < ROW_COL_LENGTH; col++) {
+                int value = getValue(row, col);
+                if (grid.getSquareValueAt(row, col) != value) {
+                    grid.setSquareValueAt(row, col, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the values as in {@link Grid#toSerializedString()}
+     */
+    public String toSerializedString() {
+        char[] chars = new char[ROW_COL_LENGTH * ROW_COL_LENGTH];
+        for (int cell = 0; cell < chars.length; cell++) {
+            chars[cell] = (char) ('0' + getValue(cell / ROW_COL_LENGTH, cell % ROW_COL_LENGTH));
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GridState && Arrays.deepEquals(bands, ((GridState) o).bands);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(bands);
+    }
+
+    @Override
+    public String toString() {
+        return toSerializedString();
+    }
+}
@@ -0,0 +1,209 @@
+package org.jwatts.sudoku;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Solves up to 64 classic puzzles at once by bit-slicing their candidates: for every square and value there is one
+ * long whose bit p is set when the value is still possible for that square in puzzle p. Naked singles and hidden
+ * singles, the same rules as {@link SolverWorkspace}, then run on all puzzles together with plain bitwise operations
+ * and no branching per puzzle; each pass costs the same whether it advances one puzzle or all of them.
+ *
+ * Pointing pairs and search are left out. Puzzles that run out of singles are reported by {@link #getStuckLanes()} so
+ * the caller can hand them to the scalar path.
+ *
+ * Not thread safe; callers solving concurrently should use one instance per thread.
+ */
+public final class LaneSolver {
+    public static final int LANE_COUNT = Long.SIZE;
+
+    private static final int ROW_COL_LENGTH = ConstraintModel.ROW_COL_LENGTH;
+    private static final int CELL_COUNT = ConstraintModel.CELL_COUNT;
+    private static final int PACKED_SIZE = (CELL_COUNT + 1) / 2;
+
+    private final int[][] units = ConstraintModel.CLASSIC.units;
+    private final int[][] peers = ConstraintModel.CLASSIC.peers;
+
+    // Indexed by square * 9 + (value - 1); bit p is puzzle p
+    private final long[] candidates = new long[CELL_COUNT * ROW_COL_LENGTH];
+
+    // For each square, the puzzles where it has been settled and its value removed from its peers
+    private final long[] assigned = new long[CELL_COUNT];
+
+    private long activeLanes;
+    private long deadLanes;
+    private long solvedLanes;
+
+    /**
+     * Loads count puzzles (at most {@link #LANE_COUNT}) stored back to back in the packed layout of
+     * {@link org.jwatts.sudoku.store.PackedGrid}, starting at an absolute position of the buffer. Puzzle i goes into
+     * lane i.
+     */
+    public void loadPacked(ByteBuffer puzzles, int position, int count) {
+        if (count < 0 || count > LANE_COUNT) {
+            throw new IllegalArgumentException("Can load at most " + LANE_COUNT + " puzzles, not " + count);
+        }
+        activeLanes = count == LANE_COUNT ? -1L : (1L << count) - 1;
+        deadLanes = 0;
+        solvedLanes = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = activeLanes;
+        }
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            assigned[cell] = 0;
+        }
+
+        for (int lane = 0; lane < count; lane++) {
+            int start = position + lane * PACKED_SIZE;
+            long notLane = ~(1L << lane);
+            for (int cell = 0; cell < CELL_COUNT; cell++) {
+                int b = puzzles.get(start + (cell >> 1));
+                int value = (cell & 1) == 0 ? (b >> 4) & 0xf : b & 0xf;
+                if (value > 0 && value <= ROW_COL_LENGTH) {
+                    int base = cell * ROW_COL_LENGTH;
+                    for (int d = 0; d < ROW_COL_LENGTH; d++) {
+                        if (d != value - 1) {
+                            candidates[base + d] &= notLane;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies naked and hidden singles to every loaded puzzle until none of them makes progress.
+     *
+     * @return the lanes that were solved
+     */
+    public long solve() {
+        boolean progress;
+        do {
+            progress = fillInNakedSingles();
+            progress |= findHiddenSingles();
+        } while (progress && (deadLanes & activeLanes) != activeLanes);
+
+        long allAssigned = activeLanes;
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            allAssigned &= assigned[cell];
+        }
+        deadLanes &= activeLanes;
+        solvedLanes = allAssigned & ~deadLanes;
+        return solvedLanes;
+    }
+
+    /**
+     * @return the lanes with a square left without candidates or a unit with no place for a value, including puzzles
+     *         whose givens conflict
+     */
+    public long getDeadLanes() {
+        return deadLanes;
+    }
+
+    /**
+     * @return the lanes that are still consistent but need more than singles to finish
+     */
+    public long getStuckLanes() {
+        return activeLanes & ~deadLanes & ~solvedLanes;
+    }
+
+    /**
+     * Writes the values of one lane in the packed layout, with 0 for squares it has not settled.
+     */
+    public void writePacked(int lane, ByteBuffer dest, int position) {
+        long bit = 1L << lane;
+        for (int cell = 0; cell < CELL_COUNT; cell += 2) {
+            int low = cell + 1 < CELL_COUNT ? valueOf(cell + 1, bit) : 0;
+            dest.put(position + (cell >> 1), (byte) ((valueOf(cell, bit) << 4) | low));
+        }
+    }
+
+    private int valueOf(int cell, long bit) {
+        if ((assigned[cell] & bit) == 0) {
+            return 0;
+        }
+        int base = cell * ROW_COL_LENGTH;
+        for (int d = 0; d < ROW_COL_LENGTH; d++) {
+            if ((candidates[base + d] & bit) != 0) {
+                return d + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Settles every square that has a single candidate in some lane and removes that value from its peers, in those
+     * lanes only. Lanes where a square has no candidates left are marked dead.
+     */
+    private boolean fillInNakedSingles() {
+        boolean progress = false;
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int base = cell * ROW_COL_LENGTH;
+            long atLeastOne = 0;
+            long atLeastTwo = 0;
+            for (int d = 0; d < ROW_COL_LENGTH; d++) {
+                long c = candidates[base + d];
+                atLeastTwo |= atLeastOne & c;
+                atLeastOne |= c;
+            }
+            deadLanes |= ~atLeastOne;
+
+            long singles = atLeastOne & ~atLeastTwo & ~assigned[cell];
+            if (singles == 0) {
+                continue;
+            }
+            assigned[cell] |= singles;
+            progress = true;
+            int[] cellPeers = peers[cell];
+            for (int d = 0; d < ROW_COL_LENGTH; d++) {
+                long placed = candidates[base + d] & singles;
+                if (placed != 0) {
+                    long keep = ~placed;
+                    for (int peer : cellPeers) {
+                        candidates[peer * ROW_COL_LENGTH + d] &= keep;
+                    }
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Restricts a square to a value wherever it is the only place left for the value in one of its units, leaving the
+     * following naked singles pass to settle it. Lanes where a unit has no place left for a value are marked dead.
+     */
+    private boolean findHiddenSingles() {
+        boolean progress = false;
+        for (int[] unitCells : units) {
+            for (int d = 0; d < ROW_COL_LENGTH; d++) {
+                long atLeastOne = 0;
+                long atLeastTwo = 0;
+                for (int cell : unitCells) {
+                    long c = candidates[cell * ROW_COL_LENGTH + d];
+                    atLeastTwo |= atLeastOne & c;
+                    atLeastOne |= c;
+                }
+                deadLanes |= ~atLeastOne;
+
+                long hidden = atLeastOne & ~atLeastTwo;
+                if (hidden == 0) {
+                    continue;
+                }
+                for (int cell : unitCells) {
+                    long only = candidates[cell * ROW_COL_LENGTH + d] & hidden & ~assigned[cell];
+                    if (only == 0) {
+                        continue;
+                    }
+                    int base = cell * ROW_COL_LENGTH;
+                    long keep = ~only;
+                    for (int other = 0; other < ROW_COL_LENGTH; other++) {
+                        if (other != d && (candidates[base + other] & only) != 0) {
+                            candidates[base + other] &= keep;
+                            progress = true;
+                        }
+                    }
+                }
+            }
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,19 @@
+package org.jwatts.sudoku;
+
+/**
+ * The original solver: repeated passes of pointing pairs, hidden singles and naked singles over the grid's squares,
+ * stopping when a pass makes no progress. Never guesses, so it can leave hard puzzles unfinished.
+ */
+class LogicalSolverBackend implements SolverBackend {
+    static final String NAME = "logical";
+
+    @Override
+    public boolean solve(Grid grid) {
+        return grid.solveWithTechniques();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
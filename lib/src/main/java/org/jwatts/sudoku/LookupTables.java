@@ -0,0 +1,100 @@
+package org.jwatts.sudoku;
+
+/**
+ * Precomputed tables for the solver's hot loops, so they index arrays instead of dividing or counting bits.
+ *
+ * The static tables work on value masks, where bit (v - 1) stands for value v: the bit of each value, the number of
+ * values in a mask, and the lowest value in a mask. They cover masks of up to {@link #TABLE_BITS} values, which is
+ * every mask of a 9x9 grid; bigger masks fall back to the {@link Integer} bit methods.
+ *
+ * An instance holds the geometry of one block size: the row, column, and block of each square, with squares
+ * addressed by index, row-major, and the position of each square within its block.
+ */
+final class LookupTables {
+    static final int TABLE_BITS = 9;
+
+    private static final int[] DIGIT_BITS = new int[Integer.SIZE];
+    private static final byte[] BIT_COUNTS = new byte[1 << TABLE_BITS];
+    private static final byte[] LOWEST_DIGITS = new byte[1 << TABLE_BITS];
+
+    private static final LookupTables[] sByBlockSize = new LookupTables[6];
+
+    static {
+        for (int digit = 1; digit < DIGIT_BITS.length; digit++) {
+            DIGIT_BITS[digit] = 1 << (digit - 1);
+        }
+        for (int mask = 1; mask < BIT_COUNTS.length; mask++) {
+            BIT_COUNTS[mask] = (byte) (BIT_COUNTS[mask >> 1] + (mask & 1));
+            LOWEST_DIGITS[mask] = (byte) ((mask & 1) != 0 ? 1 : LOWEST_DIGITS[mask >> 1] + 1);
+        }
+    }
+
+    final int blockSize;
+    final int rowColLength;
+
+    final int[] rowOf;
+    final int[] colOf;
+    final int[] blockOf;
+
+    // Index of each square within the squares of its block, row-major within the block
+    final int[] blockPositionOf;
+
+    // Positions within a block that lie on each of its rows, and on each of its columns
+    final int[] blockRowPositions;
+    final int[] blockColPositions;
+
+    private LookupTables(int blockSize) {
+        this.blockSize = blockSize;
+        rowColLength = blockSize * blockSize;
+        int cellCount = rowColLength * rowColLength;
+        rowOf = new int[cellCount];
+        colOf = new int[cellCount];
+        blockOf = new int[cellCount];
+        blockPositionOf = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int row = cell / rowColLength;
+            int col = cell % rowColLength;
+            rowOf[cell] = row;
+            colOf[cell] = col;
+            blockOf[cell] = ((row / blockSize) * blockSize) + (col / blockSize);
+            blockPositionOf[cell] = ((row % blockSize) * blockSize) + (col % blockSize);
+        }
+
+        blockRowPositions = new int[blockSize];
+        blockColPositions = new int[blockSize];
+        for (int position = 0; position < rowColLength; position++) {
+            blockRowPositions[position / blockSize] |= 1 << position;
+            blockColPositions[position % blockSize] |= 1 << position;
+        }
+    }
+
+    static synchronized LookupTables forBlockSize(int blockSize) {
+        if (blockSize >= sByBlockSize.length) {
+            throw new IllegalArgumentException("Block size " + blockSize + " is too big for value masks");
+        }
+        LookupTables tables = sByBlockSize[blockSize];
+        if (tables == null) {
+            tables = new LookupTables(blockSize);
+            sByBlockSize[blockSize] = tables;
+        }
+        return tables;
+    }
+
+    /**
+     * @return the mask bit of value, 1 << (value - 1)
+     */
+    static int digitBit(int value) {
+        return DIGIT_BITS[value];
+    }
+
+    static int bitCount(int mask) {
+        return mask < BIT_COUNTS.length ? BIT_COUNTS[mask] : Integer.bitCount(mask);
+    }
+
+    /**
+     * @return the lowest value in the mask, or 0 if it is empty; for a mask of positions, the lowest position + 1
+     */
+    static int lowestDigit(int mask) {
+        return mask < LOWEST_DIGITS.length ? LOWEST_DIGITS[mask] : Integer.numberOfTrailingZeros(mask) + 1;
+    }
+}
@@ -0,0 +1,129 @@
+package org.jwatts.sudoku;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The outcome of a budgeted solve. If the budget ran out first, the values are the ones forced by the givens through
+ * propagation alone, never guesses, and the candidates are what remains possible for each empty square, so the
+ * result can be shown as a partly solved grid with pencil marks. The continuation picks the search up again later.
+ *
+ * Squares are addressed by row and column like {@link Grid}; candidates are masks with bit (v - 1) set for value v.
+ */
+public final class PartialSolution {
+    public enum Status {
+        SOLVED,
+        NO_SOLUTION,
+        OUT_OF_BUDGET
+    }
+
+    private static final int ROW_COL_LENGTH = SolverWorkspace.ROW_COL_LENGTH;
+    private static final int CELL_COUNT = SolverWorkspace.CELL_COUNT;
+
+    private final Status status;
+    private final int[] values = new int[CELL_COUNT];
+    private final int[] candidates = new int[CELL_COUNT];
+    private final int filledCount;
+    private final SolveContinuation continuation;
+    private final long stepCount;
+
+    PartialSolution(Status status, SolverWorkspace state, SolveContinuation continuation, long stepCount) {
+        this.status = status;
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            values[cell] = state.getValue(cell);
+            candidates[cell] = state.getCandidates(cell);
+        }
+        filledCount = state.getFilledCount();
+        this.continuation = continuation;
+        this.stepCount = stepCount;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * @return the value of the square, or 0 if it is still empty
+     */
+    public int getValue(int rowIndex, int colIndex) {
+        return values[rowIndex * ROW_COL_LENGTH + colIndex];
+    }
+
+    /**
+     * @return the mask of values still possible for the square, or 0 if it has a value
+     */
+    public int getCandidates(int rowIndex, int colIndex) {
+        return candidates[rowIndex * ROW_COL_LENGTH + colIndex];
+    }
+
+    /**
+     * Same as {@link #getCandidates(int, int)}, as a set like {@link Square#getPossibleValues()}.
+     */
+    public Set<Integer> getPossibleValues(int rowIndex, int colIndex) {
+        Set<Integer> possibleValues = new HashSet<>();
+        int mask = getCandidates(rowIndex, colIndex);
+        while (mask != 0) {
+            possibleValues.add(LookupTables.lowestDigit(mask));
+            mask &= mask - 1;
+        }
+        return possibleValues;
+    }
+
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    /**
+     * @return the search state to resume from, or null unless the budget ran out
+     */
+    public SolveContinuation getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * @return the number of guesses tried so far, over this and all earlier budgets of the same solve
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Fills the empty squares of grid that have a value here and removes the ruled-out candidates from the rest.
+     * Squares that already have a value are left alone. Nothing is applied for {@link Status#NO_SOLUTION}.
+     */
+    public void applyTo(Grid grid) {
+        if (status == Status.NO_SOLUTION) {
+            return;
+        }
+        Square[][] squares = grid.getSquares();
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            Square square = squares[cell / ROW_COL_LENGTH][cell % ROW_COL_LENGTH];
+            if (square.hasValue()) {
+                continue;
+            }
+            if (values[cell] != 0) {
+                square.setValue(values[cell]);
+            }
+        }
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            Square square = squares[cell / ROW_COL_LENGTH][cell % ROW_COL_LENGTH];
+            int ruledOut = square.getPossibleValueMask() & ~candidates[cell];
+            while (ruledOut != 0) {
+                square.removeFromPossibleValues(LookupTables.lowestDigit(ruledOut));
+                ruledOut &= ruledOut - 1;
+            }
+        }
+    }
+
+    public String toSerializedString() {
+        char[] chars = new char[CELL_COUNT];
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            chars[cell] = (char) ('0' + values[cell]);
+        }
+        return new String(chars);
+    }
+}
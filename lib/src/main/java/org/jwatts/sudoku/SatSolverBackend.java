@@ -0,0 +1,25 @@
+package org.jwatts.sudoku;
+
+/**
+ * Solves the grid by encoding it with {@link CnfEncoding} and running the local {@link DpllSolver}. The same encoding
+ * can be written out as DIMACS for an external SAT solver.
+ */
+class SatSolverBackend implements SolverBackend {
+    static final String NAME = "sat";
+
+    @Override
+    public boolean solve(Grid grid) {
+        CnfEncoding encoding = new CnfEncoding(grid);
+        boolean[] assignment = new DpllSolver(encoding.getVariableCount(), encoding.getClauses()).solve();
+        if (assignment == null) {
+            return false;
+        }
+        SolverBackends.writeSolution(grid, encoding.decode(assignment));
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,90 @@
+package org.jwatts.sudoku;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerates every solution of a 9x9 puzzle, lazily, for puzzles with more than one (or none). Each solution is
+ * produced on demand by a depth-first search that propagates with {@link SolverWorkspace} and branches on the square
+ * with the fewest candidates. The search keeps one workspace per branch level rather than any solutions, so memory
+ * is bounded by the 81 possible levels however many solutions there are, and the search can be stopped and resumed
+ * between any two solutions.
+ *
+ * Splitting hands the untried candidates of the shallowest open branch point to a new enumerator, so parallel
+ * streams divide the search tree between threads: <pre>SolutionEnumerator.solutions(grid).parallel().limit(n)</pre>
+ * Solutions come in a fixed order when enumerated sequentially, but splitting does not preserve it, so the
+ * enumerator does not report itself as ordered. Solutions are in the format of {@link Grid#toSerializedString()}.
+ *
+ * Not thread safe; parallel streams only ever use each split from one thread at a time.
+ */
+public final class SolutionEnumerator implements Spliterator<String> {
+    private final DepthFirstSearch search;
+
+    public SolutionEnumerator(CharSequence serializedGrid) {
+        this(ConstraintModel.CLASSIC, serializedGrid);
+    }
+
+    /**
+     * @param serializedGrid the puzzle, in the format accepted by {@link SolverWorkspace#load(CharSequence)}; if its
+     *        givens conflict, there are no solutions
+     * @throws IllegalArgumentException if the puzzle is not 81 characters long
+     */
+    public SolutionEnumerator(ConstraintModel model, CharSequence serializedGrid) {
+        SolverWorkspace root = new SolverWorkspace(model);
+        if (!root.load(serializedGrid) && !root.hasContradiction()) {
+            throw new IllegalArgumentException("Puzzle must have 81 squares");
+        }
+        search = new DepthFirstSearch(root);
+    }
+
+    private SolutionEnumerator(DepthFirstSearch search) {
+        this.search = search;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the grid is not 9x9
+     */
+    public static Stream<String> solutions(Grid grid) {
+        if (grid.getRowColLength() != SolverWorkspace.ROW_COL_LENGTH) {
+            throw new IllegalArgumentException("Solutions can only be enumerated for 9x9 grids");
+        }
+        return solutions(grid.toSerializedString());
+    }
+
+    public static Stream<String> solutions(CharSequence serializedGrid) {
+        return StreamSupport.stream(new SolutionEnumerator(serializedGrid), false);
+    }
+
+    public static Iterator<String> iterator(CharSequence serializedGrid) {
+        return Spliterators.iterator(new SolutionEnumerator(serializedGrid));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (search.advance(Long.MAX_VALUE, false, 0) != DepthFirstSearch.Outcome.SOLUTION) {
+            return false;
+        }
+        action.accept(search.getSolution().toSerializedString());
+        return true;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        DepthFirstSearch split = search.trySplit();
+        return split != null ? new SolutionEnumerator(split) : null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | NONNULL;
+    }
+}
@@ -0,0 +1,44 @@
+package org.jwatts.sudoku;
+
+/**
+ * Limits for a budgeted {@link Grid#solve(SolveBudget)}: a wall-clock time, a number of search steps, or both,
+ * whichever runs out first. A step is one guess tried for a square, followed by propagation.
+ */
+public final class SolveBudget {
+    public static final SolveBudget UNLIMITED = new SolveBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long maxNanos;
+    private final long maxSteps;
+
+    private SolveBudget(long maxNanos, long maxSteps) {
+        if (maxNanos < 0 || maxSteps < 0) {
+            throw new IllegalArgumentException("Budget cannot be negative");
+        }
+        this.maxNanos = maxNanos;
+        this.maxSteps = maxSteps;
+    }
+
+    public static SolveBudget ofMillis(long maxMillis) {
+        return new SolveBudget(maxMillis * 1000000L, Long.MAX_VALUE);
+    }
+
+    public static SolveBudget ofSteps(long maxSteps) {
+        return new SolveBudget(Long.MAX_VALUE, maxSteps);
+    }
+
+    public static SolveBudget of(long maxMillis, long maxSteps) {
+        return new SolveBudget(maxMillis * 1000000L, maxSteps);
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    boolean hasDeadline() {
+        return maxNanos != Long.MAX_VALUE;
+    }
+}
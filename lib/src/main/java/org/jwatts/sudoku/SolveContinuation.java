@@ -0,0 +1,41 @@
+package org.jwatts.sudoku;
+
+/**
+ * Where a budgeted solve stopped, from {@link PartialSolution#getContinuation()}. Holds the whole search stack, so
+ * {@link #resume(SolveBudget)} carries on from the next untried guess without redoing any work. It does not refer to
+ * the {@link Grid} it came from, so it can be resumed on another thread while the grid stays in use.
+ */
+public final class SolveContinuation {
+    private final DepthFirstSearch search;
+    private boolean isFinished;
+
+    SolveContinuation(DepthFirstSearch search) {
+        this.search = search;
+    }
+
+    /**
+     * Carries on the search within a new budget. The result is not applied to any grid; see
+     * {@link PartialSolution#applyTo(Grid)}.
+     *
+     * @throws IllegalStateException if an earlier call already solved the puzzle or found it has no solution
+     */
+    public synchronized PartialSolution resume(SolveBudget budget) {
+        if (isFinished) {
+            throw new IllegalStateException("The solve has already finished");
+        }
+        long deadlineNanos = budget.hasDeadline() ? System.nanoTime() + budget.getMaxNanos() : 0;
+        switch (search.advance(budget.getMaxSteps(), budget.hasDeadline(), deadlineNanos)) {
+            case SOLUTION:
+                isFinished = true;
+                return new PartialSolution(PartialSolution.Status.SOLVED, search.getSolution(), null,
+                        search.getStepCount());
+            case EXHAUSTED:
+                isFinished = true;
+                return new PartialSolution(PartialSolution.Status.NO_SOLUTION, search.getRoot(), null,
+                        search.getStepCount());
+            default:
+                return new PartialSolution(PartialSolution.Status.OUT_OF_BUDGET, search.getRoot(), this,
+                        search.getStepCount());
+        }
+    }
+}
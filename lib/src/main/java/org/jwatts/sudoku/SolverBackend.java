@@ -0,0 +1,20 @@
+package org.jwatts.sudoku;
+
+/**
+ * A way of solving a {@link Grid}. {@link Grid#solve()} dispatches to the grid's backend, so engines can be swapped
+ * at runtime without touching callers; see {@link SolverBackends} for the built-in ones.
+ */
+public interface SolverBackend {
+    /**
+     * Solves the grid in place. Implementations must set values through {@link Grid#setSquareValueAt(int, int, int)}
+     * or the grid's squares, so that {@link org.jwatts.sudoku.events.ValueSetObserver}s see every value.
+     *
+     * @return true if the grid was fully solved
+     */
+    boolean solve(Grid grid);
+
+    /**
+     * @return short name used to select this backend, e.g. in {@link SolverBackends#SOLVER_BACKEND_PROPERTY}
+     */
+    String getName();
+}
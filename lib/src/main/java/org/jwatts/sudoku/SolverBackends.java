@@ -0,0 +1,90 @@
+package org.jwatts.sudoku;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of {@link SolverBackend}s by name. The built-in backends are:
+ * <ul>
+ * <li>"logical": pointing pairs, hidden singles and naked singles only, see {@link LogicalSolverBackend}</li>
+ * <li>"dlx": exact cover with dancing links, see {@link DancingLinksSolverBackend}</li>
+ * <li>"sat": CNF encoding solved by a local DPLL solver, see {@link SatSolverBackend}</li>
+ * </ul>
+ * New grids use the default backend, which can be chosen with the {@link #SOLVER_BACKEND_PROPERTY} system property
+ * or changed at runtime with {@link #setDefault(SolverBackend)}.
+ */
+public final class SolverBackends {
+    public static final String SOLVER_BACKEND_PROPERTY = "org.jwatts.sudoku.solverBackend";
+
+    private static final Map<String, SolverBackend> sBackends = new LinkedHashMap<>();
+    private static volatile SolverBackend sDefault;
+
+    static {
+        register(new LogicalSolverBackend());
+        register(new DancingLinksSolverBackend());
+        register(new SatSolverBackend());
+    }
+
+    private SolverBackends() {}
+
+    public static synchronized void register(SolverBackend backend) {
+        sBackends.put(backend.getName(), backend);
+    }
+
+    /**
+     * @throws IllegalArgumentException if no backend with this name is registered
+     */
+    public static synchronized SolverBackend byName(String name) {
+        SolverBackend backend = sBackends.get(name);
+        if (backend == null) {
+            throw new IllegalArgumentException("Unknown solver backend " + name + "; known: " + sBackends.keySet());
+        }
+        return backend;
+    }
+
+    public static synchronized Collection<SolverBackend> all() {
+        return Collections.unmodifiableList(new ArrayList<>(sBackends.values()));
+    }
+
+    public static SolverBackend getDefault() {
+        SolverBackend backend = sDefault;
+        if (backend == null) {
+            backend = byName(System.getProperty(SOLVER_BACKEND_PROPERTY, LogicalSolverBackend.NAME));
+            sDefault = backend;
+        }
+        return backend;
+    }
+
+    public static void setDefault(SolverBackend backend) {
+        sDefault = backend;
+    }
+
+    /**
+     * @return the grid's values, row-major, with 0 for empty squares
+     */
+    static int[] readValues(Grid grid) {
+        int rowColLength = grid.getRowColLength();
+        int[] values = new int[rowColLength * rowColLength];
+        for (int cell = 0; cell < values.length; cell++) {
+            values[cell] = grid.getSquareValueAt(cell / rowColLength, cell % rowColLength);
+        }
+        return values;
+    }
+
+    /**
+     * Sets every empty square of the grid from a solution, notifying the grid's observers.
+     */
+    static void writeSolution(Grid grid, int[] solution) {
+        int rowColLength = grid.getRowColLength();
+        for (int cell = 0; cell < solution.length; cell++) {
+            int row = cell / rowColLength;
+            int col = cell % rowColLength;
+            if (grid.getSquareValueAt(row, col) == 0) {
+                grid.setSquareValueAt(row, col, solution[cell]);
+            }
+        }
+    }
+}
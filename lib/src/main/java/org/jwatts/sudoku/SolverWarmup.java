@@ -0,0 +1,41 @@
+package org.jwatts.sudoku;
+
+/**
+ * Optional warm-up for processes that care about the latency of their first real solve, like the app on launch or a
+ * server before it takes traffic: solves a built-in puzzle a few times so the solver's classes are loaded, its lookup
+ * tables built, and its hot loops compiled ahead of the first request. Run it on a background thread; it only touches
+ * grids of its own.
+ */
+public final class SolverWarmup {
+    public static final long DEFAULT_BUDGET_MILLIS = 200;
+
+    // An easy newspaper puzzle that every built-in backend solves
+    private static final String WARM_UP_PUZZLE =
+            "000000100000240950063007000000000507080050040620004000040710060000000000908000002";
+
+    private SolverWarmup() {}
+
+    /**
+     * Warms up the default backend for {@link #DEFAULT_BUDGET_MILLIS}.
+     */
+    public static int warmUp() {
+        return warmUp(SolverBackends.getDefault(), DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * Solves the warm-up puzzle with backend until budgetMillis have passed, and always at least once.
+     *
+     * @return the number of solves run
+     */
+    public static int warmUp(SolverBackend backend, long budgetMillis) {
+        long deadline = System.nanoTime() + budgetMillis * 1000000L;
+        int solveCount = 0;
+        do {
+            Grid grid = Grid.fromSerializedString(WARM_UP_PUZZLE);
+            grid.setSolverBackend(backend);
+            grid.solve();
+            solveCount++;
+        } while (System.nanoTime() - deadline < 0);
+        return solveCount;
+    }
+}
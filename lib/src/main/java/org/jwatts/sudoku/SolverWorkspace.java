@@ -0,0 +1,511 @@
+package org.jwatts.sudoku;
+
+import org.jwatts.sudoku.events.SolverEventListener;
+import org.jwatts.sudoku.events.SolverEvents;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable solver state for 9x9 puzzles. Applies the same techniques as {@link Grid#solve()} (pointing pairs, hidden
+ * singles and naked singles), but over primitive candidate masks instead of {@link Square} objects, so a single
+ * instance can be loaded and solved over and over without creating garbage.
+ *
+ * The constraints come from a {@link ConstraintModel}, classic sudoku by default. All propagation runs over the
+ * model's precomputed unit and peer arrays, so variants cost the same as classic puzzles. For variants, pointing pairs
+ * generalize to any region (block, jigsaw region, or extra region) whose candidates for a value all lie in another
+ * unit, and Killer cages additionally restrict each square to values that keep the cage sum reachable.
+ *
+ * Candidates are stored as 9-bit masks, where bit (v - 1) is set when value v is still possible for a square. Squares
+ * are addressed by index, row-major from 0 to 80.
+ *
+ * Not thread safe; callers solving concurrently should use one workspace per thread.
+ */
+public final class SolverWorkspace {
+    static final int ROW_COL_LENGTH = ConstraintModel.ROW_COL_LENGTH;
+    static final int CELL_COUNT = ConstraintModel.CELL_COUNT;
+    static final int ALL_CANDIDATES = (1 << ROW_COL_LENGTH) - 1;
+
+    private final ConstraintModel model;
+    private final int[][] units;
+    private final long[] unitMasks;
+    private final int[][] peers;
+    private final int[] cageOfCell;
+
+    private final int[] values = new int[CELL_COUNT];
+    private final int[] candidates = new int[CELL_COUNT];
+    private int filledCount;
+
+    // Set when some square is left with no candidates, some unit has no place left for a value, or some cage is
+    // filled with the wrong sum
+    private boolean contradiction;
+
+    public SolverWorkspace() {
+        this(ConstraintModel.CLASSIC);
+    }
+
+    public SolverWorkspace(ConstraintModel model) {
+        this.model = model;
+        units = model.units;
+        unitMasks = model.unitMasks;
+        peers = model.peers;
+        cageOfCell = model.cageOfCell;
+        clear();
+    }
+
+    public ConstraintModel getModel() {
+        return model;
+    }
+
+    public void clear() {
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            values[cell] = 0;
+            candidates[cell] = ALL_CANDIDATES;
+        }
+        filledCount = 0;
+        contradiction = false;
+    }
+
+    /**
+     * Makes this workspace a copy of other, which must use the same constraint model. Used to save the state at a
+     * search branch point without allocating.
+     */
+    void copyFrom(SolverWorkspace other) {
+        if (other.model != model) {
+            throw new IllegalArgumentException("Workspaces have different constraint models");
+        }
+        System.arraycopy(other.values, 0, values, 0, CELL_COUNT);
+        System.arraycopy(other.candidates, 0, candidates, 0, CELL_COUNT);
+        filledCount = other.filledCount;
+        contradiction = other.contradiction;
+    }
+
+    /**
+     * Loads a puzzle in the format of {@link Grid#toSerializedString()}. Any character other than '1' to '9' is treated
+     * as an empty square, so both '0' and '.' work as blanks.
+     *
+     * @return false if the string is not 81 characters long or the givens conflict with each other
+     */
+    public boolean load(CharSequence serializedGrid) {
+        clear();
+        if (serializedGrid.length() != CELL_COUNT) {
+            return false;
+        }
+
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int value = serializedGrid.charAt(cell) - '0';
+            if (value > 0 && value <= ROW_COL_LENGTH && !setValue(cell, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #load(CharSequence)}, reading 81 ASCII bytes starting at offset.
+     */
+    public boolean load(byte[] serializedGrid, int offset) {
+        clear();
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int value = serializedGrid[offset + cell] - '0';
+            if (value > 0 && value <= ROW_COL_LENGTH && !setValue(cell, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads a puzzle in the 4-bit packed layout of {@link org.jwatts.sudoku.store.PackedGrid}, from an absolute
+     * position of a (possibly direct or memory-mapped) buffer.
+     *
+     * @return false if the givens conflict with each other
+     */
+    public boolean loadPacked(ByteBuffer packed, int position) {
+        clear();
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int b = packed.get(position + (cell >> 1));
+            int value = (cell & 1) == 0 ? (b >> 4) & 0xf : b & 0xf;
+            if (value > 0 && value <= ROW_COL_LENGTH && !setValue(cell, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the current values in the packed layout of {@link org.jwatts.sudoku.store.PackedGrid}.
+     */
+    public void writePacked(ByteBuffer dest, int position) {
+        for (int cell = 0; cell < CELL_COUNT; cell += 2) {
+            int low = cell + 1 < CELL_COUNT ? values[cell + 1] : 0;
+            dest.put(position + (cell >> 1), (byte) ((values[cell] << 4) | low));
+        }
+    }
+
+    /**
+     * Writes the current values as 81 ASCII digits starting at offset, with '0' for empty squares.
+     */
+    public void writeTo(byte[] dest, int offset) {
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            dest[offset + cell] = (byte) ('0' + values[cell]);
+        }
+    }
+
+    public String toSerializedString() {
+        char[] chars = new char[CELL_COUNT];
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            chars[cell] = (char) ('0' + values[cell]);
+        }
+        return new String(chars);
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * @return the mask of values still possible for this square, or 0 if it already has a value
+     */
+    public int getCandidates(int cell) {
+        return candidates[cell];
+    }
+
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    public boolean hasContradiction() {
+        return contradiction;
+    }
+
+    /**
+     * Sets the value of a square and removes it from the candidates of all of its peers.
+     *
+     * @return false if the value is not a candidate for this square
+     */
+    public boolean setValue(int cell, int value) {
+        if (values[cell] != 0) {
+            return values[cell] == value;
+        }
+
+        int bit = 1 << (value - 1);
+        if ((candidates[cell] & bit) == 0) {
+            contradiction = true;
+            return false;
+        }
+
+        values[cell] = value;
+        candidates[cell] = 0;
+        filledCount++;
+        for (int peer : peers[cell]) {
+            if (values[peer] == 0) {
+                int remaining = candidates[peer] & ~bit;
+                candidates[peer] = remaining;
+                if (remaining == 0) {
+                    contradiction = true;
+                }
+            }
+        }
+        if (cageOfCell[cell] >= 0 && !isCageSumValid(cageOfCell[cell])) {
+            contradiction = true;
+        }
+        return true;
+    }
+
+    /**
+     * Checked whenever a square of the cage is filled, so that a cage completed by any technique or search branch is
+     * never accepted with the wrong sum.
+     */
+    private boolean isCageSumValid(int cage) {
+        int sum = 0;
+        for (int cell : model.cages[cage]) {
+            if (values[cell] == 0) {
+                return true;
+            }
+            sum += values[cell];
+        }
+        return sum == model.cageSums[cage];
+    }
+
+    /**
+     * Removes possible values that were ruled out outside of this workspace, e.g. by a {@link Square}'s eliminations.
+     */
+    void restrictCandidates(int cell, int mask) {
+        if (values[cell] == 0) {
+            candidates[cell] &= mask;
+            if (candidates[cell] == 0) {
+                contradiction = true;
+            }
+        }
+    }
+
+    /**
+     * Finds the cheapest deduction available from the current state without applying it: a naked single if there is
+     * one, then a hidden single (regions, rows, then columns, in the order {@link #solve()} uses), then a pointing pair
+     * elimination.
+     *
+     * @return null if the grid is solved, contradictory, or none of the techniques applies
+     */
+    public Deduction nextDeduction() {
+        if (contradiction) {
+            return null;
+        }
+
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int mask = candidates[cell];
+            if (values[cell] == 0 && mask != 0 && (mask & (mask - 1)) == 0) {
+                return deduction(Deduction.Technique.NAKED_SINGLE, cell, mask, false);
+            }
+        }
+
+        for (int i = 0; i < units.length; i++) {
+            // Regions first, then rows and columns
+            int[] unitCells = units[(i + ConstraintModel.FIRST_REGION_UNIT) % units.length];
+            int seenOnce = 0;
+            int seenTwice = 0;
+            for (int cell : unitCells) {
+                seenTwice |= seenOnce & candidates[cell];
+                seenOnce |= candidates[cell];
+            }
+            int singles = seenOnce & ~seenTwice;
+            if (singles != 0) {
+                int bit = singles & -singles;
+                for (int cell : unitCells) {
+                    if ((candidates[cell] & bit) != 0) {
+                        return deduction(Deduction.Technique.HIDDEN_SINGLE, cell, bit, false);
+                    }
+                }
+            }
+        }
+
+        for (int region = ConstraintModel.FIRST_REGION_UNIT; region < units.length; region++) {
+            for (int bit = 1; bit <= ALL_CANDIDATES; bit <<= 1) {
+                long lockedUnits = lockedUnits(region, bit);
+                while (lockedUnits != 0) {
+                    int unit = Long.numberOfTrailingZeros(lockedUnits);
+                    lockedUnits &= lockedUnits - 1;
+                    for (int cell : units[unit]) {
+                        if ((unitMasks[cell] & (1L << region)) == 0 && (candidates[cell] & bit) != 0) {
+                            return deduction(Deduction.Technique.POINTING_PAIR, cell, bit, true);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Deduction deduction(Deduction.Technique technique, int cell, int bit, boolean isElimination) {
+        return new Deduction(technique, cell / ROW_COL_LENGTH, cell % ROW_COL_LENGTH,
+                Integer.numberOfTrailingZeros(bit) + 1, isElimination);
+    }
+
+    /**
+     * @return true if the puzzle was fully solved; false if the techniques ran out of deductions or the puzzle turned
+     *         out to be contradictory
+     */
+    public boolean solve() {
+        while (filledCount < CELL_COUNT && !contradiction) {
+            if (!solvePass()) {
+                return false;
+            }
+        }
+        return !contradiction;
+    }
+
+    /**
+     * Runs the techniques of {@link #solve()} once over the whole grid: pointing pairs, cage sums, hidden singles, then
+     * naked singles.
+     *
+     * @return true if the pass placed a value or removed a candidate
+     */
+    public boolean solvePass() {
+        SolverEventListener events = SolverEvents.ENABLED ? SolverEvents.getListener() : null;
+        if (events != null) {
+            events.passStarted();
+        }
+
+        int prevFilledCount = filledCount;
+        int removedCount = removePointingPairs();
+        boolean eliminated = restrictCages() || removedCount > 0;
+        findHiddenSingles(ConstraintModel.FIRST_REGION_UNIT, units.length);
+        findHiddenSingles(0, ROW_COL_LENGTH);
+        findHiddenSingles(ROW_COL_LENGTH, ConstraintModel.FIRST_REGION_UNIT);
+        int hiddenSingleCount = filledCount - prevFilledCount;
+        fillInNakedSingles();
+        boolean isProgress = filledCount != prevFilledCount || eliminated;
+
+        if (events != null) {
+            if (removedCount > 0) {
+                events.techniqueApplied(Deduction.Technique.POINTING_PAIR, removedCount);
+            }
+            if (hiddenSingleCount > 0) {
+                events.techniqueApplied(Deduction.Technique.HIDDEN_SINGLE, hiddenSingleCount);
+            }
+            if (filledCount - prevFilledCount > hiddenSingleCount) {
+                events.techniqueApplied(Deduction.Technique.NAKED_SINGLE,
+                        filledCount - prevFilledCount - hiddenSingleCount);
+            }
+            events.passFinished(filledCount, isProgress);
+        }
+        return isProgress;
+    }
+
+    private void fillInNakedSingles() {
+        for (int cell = 0; cell < CELL_COUNT && !contradiction; cell++) {
+            int mask = candidates[cell];
+            if (values[cell] == 0 && mask != 0 && (mask & (mask - 1)) == 0) {
+                setValue(cell, Integer.numberOfTrailingZeros(mask) + 1);
+            }
+        }
+    }
+
+    /**
+     * Hidden singles for units firstUnit (inclusive) to endUnit (exclusive), e.g. all rows.
+     */
+    private void findHiddenSingles(int firstUnit, int endUnit) {
+        for (int unit = firstUnit; unit < endUnit && !contradiction; unit++) {
+            int[] unitCells = units[unit];
+            int placed = 0;
+            int seenOnce = 0;
+            int seenTwice = 0;
+            for (int cell : unitCells) {
+                int mask = candidates[cell];
+                seenTwice |= seenOnce & mask;
+                seenOnce |= mask;
+                if (values[cell] != 0) {
+                    placed |= 1 << (values[cell] - 1);
+                }
+            }
+
+            if ((placed | seenOnce) != ALL_CANDIDATES) {
+                // Some value has nowhere left to go in this unit
+                contradiction = true;
+                return;
+            }
+
+            int singles = seenOnce & ~seenTwice;
+            while (singles != 0) {
+                int bit = singles & -singles;
+                singles ^= bit;
+                int target = -1;
+                for (int cell : unitCells) {
+                    if ((candidates[cell] & bit) != 0) {
+                        target = cell;
+                        break;
+                    }
+                }
+
+                if (target < 0) {
+                    // The only place for this value was just taken by another hidden single
+                    contradiction = true;
+                    return;
+                }
+                setValue(target, Integer.numberOfTrailingZeros(bit) + 1);
+            }
+        }
+    }
+
+    /**
+     * Pointing pairs: when all candidates for a value within a region share another unit (for blocks, a row or
+     * column), the value can be removed from the rest of that unit.
+     *
+     * @return the number of candidates removed
+     */
+    private int removePointingPairs() {
+        int removedCount = 0;
+        for (int region = ConstraintModel.FIRST_REGION_UNIT; region < units.length; region++) {
+            for (int bit = 1; bit <= ALL_CANDIDATES; bit <<= 1) {
+                long lockedUnits = lockedUnits(region, bit);
+                while (lockedUnits != 0) {
+                    int unit = Long.numberOfTrailingZeros(lockedUnits);
+                    lockedUnits &= lockedUnits - 1;
+                    removedCount += removeOutsideRegion(units[unit], region, bit);
+                }
+            }
+        }
+        return removedCount;
+    }
+
+    /**
+     * @return the units other than region that contain every candidate square for the value in region
+     */
+    private long lockedUnits(int region, int bit) {
+        long commonUnits = -1L;
+        boolean found = false;
+        for (int cell : units[region]) {
+            if ((candidates[cell] & bit) != 0) {
+                commonUnits &= unitMasks[cell];
+                found = true;
+            }
+        }
+        return found ? commonUnits & ~(1L << region) : 0;
+    }
+
+    private int removeOutsideRegion(int[] unitCells, int region, int bit) {
+        int removedCount = 0;
+        for (int cell : unitCells) {
+            if ((unitMasks[cell] & (1L << region)) == 0 && (candidates[cell] & bit) != 0) {
+                removedCount++;
+                if ((candidates[cell] &= ~bit) == 0) {
+                    contradiction = true;
+                }
+            }
+        }
+        return removedCount;
+    }
+
+    /**
+     * Killer cages: each empty square of a cage keeps only the values that leave a reachable sum for the other empty
+     * squares, bounded by the sums of their smallest and largest candidates.
+     *
+     * @return true if any candidate was removed
+     */
+    private boolean restrictCages() {
+        boolean eliminated = false;
+        int[][] cages = model.cages;
+        for (int cage = 0; cage < cages.length && !contradiction; cage++) {
+            int remaining = model.cageSums[cage];
+            int minSum = 0;
+            int maxSum = 0;
+            int emptyCount = 0;
+            for (int cell : cages[cage]) {
+                if (values[cell] != 0) {
+                    remaining -= values[cell];
+                } else {
+                    int mask = candidates[cell];
+                    minSum += Integer.numberOfTrailingZeros(mask) + 1;
+                    maxSum += Integer.SIZE - Integer.numberOfLeadingZeros(mask);
+                    emptyCount++;
+                }
+            }
+            if (emptyCount == 0) {
+                contradiction = remaining != 0;
+                continue;
+            }
+
+            for (int cell : cages[cage]) {
+                int mask = candidates[cell];
+                if (values[cell] != 0 || mask == 0) {
+                    continue;
+                }
+                // Bounds for the other empty squares of the cage
+                int othersMin = minSum - (Integer.numberOfTrailingZeros(mask) + 1);
+                int othersMax = maxSum - (Integer.SIZE - Integer.numberOfLeadingZeros(mask));
+                int allowed = 0;
+                for (int value = remaining - othersMax; value <= remaining - othersMin; value++) {
+                    if (value > 0 && value <= ROW_COL_LENGTH) {
+                        allowed |= 1 << (value - 1);
+                    }
+                }
+                if ((mask & ~allowed) != 0) {
+                    eliminated = true;
+                    if ((candidates[cell] = mask & allowed) == 0) {
+                        contradiction = true;
+                    }
+                }
+            }
+        }
+        return eliminated;
+    }
+}
@@ -1,15 +1,10 @@
 package org.jwatts.sudoku;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 public class Square {
-    private static final Logger sLogger = LoggerFactory.getLogger(Square.class);
-
     private final int rowIndex;
     private final int colIndex;
     private final Grid grid;
@@ -21,6 +16,19 @@ public class Square {
     // cache of last computed values that this square could contain, if its value has not been set already
     private volatile Set<Integer> lastComputedPossibleValues;
 
+    // Number of associated squares currently holding each value, indexed by value. Kept up to date on every set and
+    // clear, so a value is possible for this square exactly when its count is 0, without rescanning the peers.
+    private final int[] associatedValueCounts;
+
+    // Values ruled out by techniques like pointing pairs (bit v for value v), which the counts above cannot express
+    private int eliminatedValues;
+
+    // Values with a zero count that have not been eliminated, bit (v - 1) for value v, maintained along with the two
+    // fields above
+    private int possibleValueMask;
+
+    private int blockIndex;
+
     // n^2 squares per row
     private Square[] row;
 
@@ -38,6 +46,8 @@ public class Square {
         this.rowIndex = rowIndex;
         this.colIndex = colIndex;
         this.grid = grid;
+        associatedValueCounts = new int[grid.getRowColLength() + 1];
+        possibleValueMask = (1 << grid.getRowColLength()) - 1;
     }
 
     // Must be called after the whole grid is populated
@@ -45,6 +55,7 @@ public class Square {
         row = grid.getRow(rowIndex);
         col = grid.getColumn(colIndex);
         block = grid.getBlockSquares(rowIndex, colIndex);
+        blockIndex = grid.computeBlockNumber(rowIndex, colIndex);
         initAllAssociatedSquares();
     }
 
@@ -68,21 +79,134 @@ public class Square {
     }
 
     public void setValue(int value) {
-        sLogger.debug("row {}, col {}; setting value {}", rowIndex, colIndex, value);
+        if (value == this.value) {
+            return;
+        }
+        if (value == 0) {
+            clearValue();
+            return;
+        }
+        removeValue();
+
+        if (Trace.ENABLED) {
+            Trace.debug(Square.class, "row {}, col {}; setting value {}", rowIndex, colIndex, value);
+        }
+        boolean wasDead = isDead();
+        int oldPossibleValueMask = getPossibleValueMask();
         this.value = value;
+        grid.possibleValuesChanged(this, oldPossibleValueMask);
+        grid.getConflictIndex().valueSet(rowIndex, colIndex, blockIndex, value, wasDead);
 
+        // Only the associated squares are affected, so update their counts rather than having them recompute
         for (Square s : allAssociatedSquares) {
-            if (!s.hasValue()) {
-                s.setDirty();
-            }
+            s.incrementAssociatedValueCount(value);
         }
 
+        grid.valueChanged(this);
         grid.notifyObservers(this);
 
         // null out lastComputedPossibleValues as cleanup
         lastComputedPossibleValues = null;
     }
 
+    /**
+     * Removes the value of this square, making it possible again for the associated squares. Observers are not
+     * notified, since they only track values being set.
+     */
+    public void clearValue() {
+        if (hasValue()) {
+            removeValue();
+            grid.valueChanged(this);
+        }
+    }
+
+    private void removeValue() {
+        if (!hasValue()) {
+            return;
+        }
+
+        if (Trace.ENABLED) {
+            Trace.debug(Square.class, "row {}, col {}; clearing value {}", rowIndex, colIndex, value);
+        }
+        int oldValue = value;
+        value = 0;
+        isDirty = true;
+        grid.possibleValuesChanged(this, getPossibleValueMask());
+        grid.getConflictIndex().valueCleared(rowIndex, colIndex, blockIndex, oldValue, isDead());
+        for (Square s : allAssociatedSquares) {
+            s.decrementAssociatedValueCount(oldValue);
+        }
+
+        // An emptied square can break the confinement that any earlier elimination relied on
+        grid.resetEliminatedValues();
+    }
+
+    private void incrementAssociatedValueCount(int associatedValue) {
+        boolean wasDead = isDead();
+        if (associatedValueCounts[associatedValue]++ == 0 && !isEliminated(associatedValue)) {
+            updatePossibleValueMask(possibleValueMask & ~LookupTables.digitBit(associatedValue));
+        }
+        setDirty();
+        updateDeadState(wasDead);
+    }
+
+    private void decrementAssociatedValueCount(int associatedValue) {
+        boolean wasDead = isDead();
+        if (--associatedValueCounts[associatedValue] == 0 && !isEliminated(associatedValue)) {
+            updatePossibleValueMask(possibleValueMask | LookupTables.digitBit(associatedValue));
+        }
+        setDirty();
+        updateDeadState(wasDead);
+    }
+
+    void resetEliminatedValues() {
+        boolean wasDead = isDead();
+        eliminatedValues = 0;
+        int mask = 0;
+        for (int i = 1; i < associatedValueCounts.length; i++) {
+            if (associatedValueCounts[i] == 0) {
+                mask |= LookupTables.digitBit(i);
+            }
+        }
+        updatePossibleValueMask(mask);
+        isDirty = true;
+        updateDeadState(wasDead);
+    }
+
+    private void updatePossibleValueMask(int mask) {
+        int oldPossibleValueMask = getPossibleValueMask();
+        possibleValueMask = mask;
+        int changedMask = oldPossibleValueMask ^ getPossibleValueMask();
+        if (changedMask != 0) {
+            grid.possibleValuesChanged(this, changedMask);
+        }
+    }
+
+    private boolean isEliminated(int possibleValue) {
+        return (eliminatedValues & (1 << possibleValue)) != 0;
+    }
+
+    /**
+     * @return true if this square is empty but has no possible values left, which means the grid cannot be solved
+     */
+    public boolean isDead() {
+        return !hasValue() && possibleValueMask == 0;
+    }
+
+    private void updateDeadState(boolean wasDead) {
+        boolean dead = isDead();
+        if (dead != wasDead) {
+            grid.getConflictIndex().deadStateChanged(dead);
+        }
+    }
+
+    /**
+     * @return true if this square has a value that one of its associated squares also has
+     */
+    public boolean isConflicting() {
+        return hasValue() && associatedValueCounts[value] > 0;
+    }
+
     public void attemptFindValue() {
         // value already populated, return
         if (hasValue()) {
@@ -95,7 +219,9 @@ public class Square {
             setValue(possibleValues.iterator().next());
             return;
         }
-        sLogger.debug("Possible values for row {}, col {} is {}", rowIndex, colIndex, possibleValues);
+        if (Trace.ENABLED) {
+            Trace.debug(Square.class, "Possible values for row {}, col {} is {}", rowIndex, colIndex, possibleValues);
+        }
     }
 
     public Set<Integer> getPossibleValues() {
@@ -104,18 +230,17 @@ public class Square {
             return lastComputedPossibleValues;
         }
 
-        // Start with all possible values, then iterate over the row, col, and block, removing values that are found.
-        // When only one value remains, then we know that that is the correct value for this square.
-        // An int[] or boolean[] array might be most efficient, but starting with Set<Integer> for convenience now.
-        Set<Integer> possibleValues = grid.allPossibleValues();
-        sLogger.debug("Getting possible values for square at row " + rowIndex + ", col " + colIndex);
-
-        // This replaces the above computing of possible values by row, col, and block with allAssociatedSquares
-        for (Square s : allAssociatedSquares) {
-            possibleValues.remove(s.getValue());
+        // A value is possible when no associated square holds it and no technique has eliminated it. When only one
+        // value remains, then we know that that is the correct value for this square.
+        Set<Integer> possibleValues = new HashSet<>();
+        for (int i = 1; i < associatedValueCounts.length; i++) {
+            if (associatedValueCounts[i] == 0 && !isEliminated(i)) {
+                possibleValues.add(i);
+            }
+        }
+        if (Trace.ENABLED) {
+            Trace.debug(Square.class, "Possible values for row {}, col {} are {}", rowIndex, colIndex, possibleValues);
         }
-        sLogger.debug("Removed values from all associated squares for row {}, col {}. Possible values are {}",
-                rowIndex, colIndex, possibleValues);
 
         // Technically setting these two should be in a synchronized block, but we don't solve across multiple threads
         isDirty = false;
@@ -123,11 +248,28 @@ public class Square {
         return possibleValues;
     }
 
+    /**
+     * Same as {@link #getPossibleValues()}, as a mask with bit (v - 1) set for each possible value v, or 0 if this
+     * square already has a value. Maintained along with the counts, without touching the cached set.
+     */
+    int getPossibleValueMask() {
+        return hasValue() ? 0 : possibleValueMask;
+    }
+
     public void removeFromPossibleValues(int value) {
         if (hasValue()) {
             return;
         }
 
+        if (!isEliminated(value)) {
+            boolean wasDead = isDead();
+            eliminatedValues |= 1 << value;
+            grid.valueEliminated();
+            if (associatedValueCounts[value] == 0) {
+                updatePossibleValueMask(possibleValueMask & ~LookupTables.digitBit(value));
+            }
+            updateDeadState(wasDead);
+        }
         getPossibleValues().remove(value);
     }
 
@@ -0,0 +1,21 @@
+package org.jwatts.sudoku;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Debug tracing for the solver's hot paths, off unless the {@link #TRACE_PROPERTY} system property is "true".
+ *
+ * Callers check {@link #ENABLED} before calling {@link #debug}, so when tracing is off nothing is boxed or formatted,
+ * and slf4j is never loaded or bound: the first solve in a fresh process does not pay for logging it will not do.
+ */
+final class Trace {
+    static final String TRACE_PROPERTY = "org.jwatts.sudoku.trace";
+
+    static final boolean ENABLED = Boolean.getBoolean(TRACE_PROPERTY);
+
+    private Trace() {}
+
+    static void debug(Class<?> source, String format, Object... args) {
+        LoggerFactory.getLogger(source).debug(format, args);
+    }
+}
@@ -0,0 +1,126 @@
+package org.jwatts.sudoku.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * How far a batch job got: the input offset up to which every puzzle has its solution in the output, the length of
+ * the output at that point, and the totals so far. A job that restarts from a checkpoint truncates its output back to
+ * {@link #getOutputOffset()} and carries on from {@link #getInputOffset()}, so whatever was written after the
+ * checkpoint is dropped and every solution ends up in the output exactly once.
+ *
+ * The file is a magic number, a version, the fields, and a CRC32 of all of them. It is written next to its final
+ * location, synced, and renamed into place, so a crash while checkpointing leaves the previous checkpoint intact.
+ */
+public final class BatchCheckpoint {
+    private static final int MAGIC = 0x53554350;
+    private static final int VERSION = 1;
+    private static final int SIZE = 4 + 4 + 5 * 8 + 8;
+
+    private final long inputLength;
+    private final long inputOffset;
+    private final long outputOffset;
+    private final long puzzleCount;
+    private final long solvedCount;
+
+    public BatchCheckpoint(long inputLength, long inputOffset, long outputOffset, long puzzleCount, long solvedCount) {
+        this.inputLength = inputLength;
+        this.inputOffset = inputOffset;
+        this.outputOffset = outputOffset;
+        this.puzzleCount = puzzleCount;
+        this.solvedCount = solvedCount;
+    }
+
+    /**
+     * @return the length of the input file, to tell if a checkpoint belongs to a different input
+     */
+    public long getInputLength() {
+        return inputLength;
+    }
+
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    public long getOutputOffset() {
+        return outputOffset;
+    }
+
+    public long getPuzzleCount() {
+        return puzzleCount;
+    }
+
+    public long getSolvedCount() {
+        return solvedCount;
+    }
+
+    /**
+     * @return the checkpoint in file, or null if there is none
+     * @throws IOException if the file is not a whole, valid checkpoint
+     */
+    public static BatchCheckpoint read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        try (RandomAccessFile access = new RandomAccessFile(file, "r")) {
+            FileChannel channel = access.getChannel();
+            if (channel.size() != SIZE) {
+                throw new IOException("Checkpoint has the wrong size: " + file);
+            }
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, SIZE - 8);
+        if (buffer.getLong(SIZE - 8) != crc.getValue() || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Corrupt checkpoint: " + file);
+        }
+        return new BatchCheckpoint(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                buffer.getLong());
+    }
+
+    /**
+     * Atomically replaces the checkpoint in file with this one.
+     */
+    public void write(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putLong(inputLength)
+                .putLong(inputOffset)
+                .putLong(outputOffset)
+                .putLong(puzzleCount)
+                .putLong(solvedCount);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile access = new RandomAccessFile(tempFile, "rw")) {
+            FileChannel channel = access.getChannel();
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        if (!tempFile.renameTo(file)) {
+            // Renaming over an existing file fails on some platforms
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Could not replace checkpoint " + file);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("input %d/%d, output %d, %d/%d solved", inputOffset, inputLength, outputOffset,
+                solvedCount, puzzleCount);
+    }
+}
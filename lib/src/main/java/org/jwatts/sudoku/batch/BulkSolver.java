@@ -0,0 +1,202 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.LaneSolver;
+import org.jwatts.sudoku.SolverWorkspace;
+import org.jwatts.sudoku.events.SolverEventListener;
+import org.jwatts.sudoku.events.SolverEvents;
+import org.jwatts.sudoku.store.PackedGrid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves arrays of puzzles in the packed layout of {@link PackedGrid}, reading them straight out of one buffer and
+ * writing solutions into the same position of a parallel buffer. With memory-mapped buffers the whole decode, solve,
+ * and encode chain runs on the mapped pages: each worker keeps one {@link SolverWorkspace} for the whole run, so there
+ * is no allocation or copying per puzzle.
+ *
+ * Puzzles that are invalid or that the solver cannot finish get an all-zero output record, the same "no solution"
+ * marker used by {@link org.jwatts.sudoku.store.PuzzleStore}.
+ *
+ * In {@link Mode#BIT_PARALLEL} mode each worker first runs 64 puzzles at a time through a {@link LaneSolver}, and only
+ * the puzzles that need more than singles go through the workspace.
+ */
+public class BulkSolver implements Closeable {
+    static final int CHUNK_SIZE = 1024;
+
+    public enum Mode {
+        SCALAR,
+        BIT_PARALLEL
+    }
+
+    // Largest number of puzzles mapped at once by solveFile, keeping each mapping well under 2GB
+    private static final int PUZZLES_PER_WINDOW = 1 << 24;
+
+    private final int threadCount;
+    private final Mode mode;
+    private final ExecutorService executor;
+
+    public BulkSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkSolver(int threadCount) {
+        this(threadCount, Mode.SCALAR);
+    }
+
+    public BulkSolver(int threadCount, Mode mode) {
+        this.threadCount = threadCount;
+        this.mode = mode;
+        executor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    /**
+     * Solves count puzzles stored back to back from position 0 of puzzles, writing each solution at the same position
+     * of solutions. Workers take chunks of {@link #CHUNK_SIZE} puzzles at a time, so both buffers are only ever
+     * accessed with absolute gets and puts.
+     *
+     * @return the number of puzzles solved
+     */
+    public long solve(ByteBuffer puzzles, ByteBuffer solutions, int count) throws InterruptedException {
+        AtomicInteger nextChunk = new AtomicInteger();
+        int chunkCount = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<Callable<Long>> workers = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            workers.add(() -> {
+                SolverWorkspace workspace = new SolverWorkspace();
+                LaneSolver laneSolver = mode == Mode.BIT_PARALLEL ? new LaneSolver() : null;
+                long solvedCount = 0;
+                int chunk;
+                while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                    SolverEventListener events = SolverEvents.ENABLED ? SolverEvents.getListener() : null;
+                    if (events != null) {
+                        events.chunkStarted();
+                    }
+                    long chunkSolvedCount = 0;
+                    int end = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+                    if (laneSolver != null) {
+                        for (int first = chunk * CHUNK_SIZE; first < end; first += LaneSolver.LANE_COUNT) {
+                            chunkSolvedCount += solveLanes(laneSolver, workspace, puzzles, solutions, first,
+                                    Math.min(LaneSolver.LANE_COUNT, end - first));
+                        }
+                    } else {
+                        for (int puzzle = chunk * CHUNK_SIZE; puzzle < end; puzzle++) {
+                            if (solveOne(workspace, puzzles, solutions, puzzle * PackedGrid.PACKED_SIZE)) {
+                                chunkSolvedCount++;
+                            }
+                        }
+                    }
+                    solvedCount += chunkSolvedCount;
+                    if (events != null) {
+                        events.chunkFinished(end - chunk * CHUNK_SIZE, (int) chunkSolvedCount);
+                    }
+                }
+                return solvedCount;
+            });
+        }
+
+        long solvedCount = 0;
+        for (Future<Long> result : executor.invokeAll(workers)) {
+            try {
+                solvedCount += result.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Bulk solve worker failed", e.getCause());
+            }
+        }
+        return solvedCount;
+    }
+
+    static boolean solveOne(SolverWorkspace workspace, ByteBuffer puzzles, ByteBuffer solutions, int position) {
+        if (workspace.loadPacked(puzzles, position) && workspace.solve()) {
+            workspace.writePacked(solutions, position);
+            return true;
+        }
+
+        writeNoSolution(solutions, position);
+        return false;
+    }
+
+    /**
+     * Solves count consecutive puzzles starting at index first, falling back to the workspace for lanes that the lane
+     * solver could not finish with singles alone.
+     *
+     * @return the number of puzzles solved
+     */
+    static int solveLanes(LaneSolver laneSolver, SolverWorkspace workspace, ByteBuffer puzzles, ByteBuffer solutions,
+            int first, int count) {
+        laneSolver.loadPacked(puzzles, first * PackedGrid.PACKED_SIZE, count);
+        long solved = laneSolver.solve();
+        long stuck = laneSolver.getStuckLanes();
+        int solvedCount = 0;
+        for (int lane = 0; lane < count; lane++) {
+            int position = (first + lane) * PackedGrid.PACKED_SIZE;
+            long bit = 1L << lane;
+            if ((solved & bit) != 0) {
+                laneSolver.writePacked(lane, solutions, position);
+                solvedCount++;
+            } else if ((stuck & bit) != 0) {
+                if (solveOne(workspace, puzzles, solutions, position)) {
+                    solvedCount++;
+                }
+            } else {
+                writeNoSolution(solutions, position);
+            }
+        }
+        return solvedCount;
+    }
+
+    private static void writeNoSolution(ByteBuffer solutions, int position) {
+        for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+            solutions.put(position + i, (byte) 0);
+        }
+    }
+
+    /**
+     * Maps a file of packed puzzles and writes a solution file of the same size, window by window.
+     *
+     * @return the number of puzzles solved
+     */
+    public long solveFile(File puzzleFile, File solutionFile) throws IOException, InterruptedException {
+        try (RandomAccessFile puzzleAccess = new RandomAccessFile(puzzleFile, "r");
+                RandomAccessFile solutionAccess = new RandomAccessFile(solutionFile, "rw")) {
+            long length = puzzleAccess.length();
+            if (length % PackedGrid.PACKED_SIZE != 0) {
+                throw new IOException(puzzleFile + " is not a whole number of packed puzzles");
+            }
+            solutionAccess.setLength(length);
+
+            FileChannel puzzleChannel = puzzleAccess.getChannel();
+            FileChannel solutionChannel = solutionAccess.getChannel();
+            long puzzleCount = length / PackedGrid.PACKED_SIZE;
+            long solvedCount = 0;
+            for (long first = 0; first < puzzleCount; first += PUZZLES_PER_WINDOW) {
+                int windowCount = (int) Math.min(PUZZLES_PER_WINDOW, puzzleCount - first);
+                long position = first * PackedGrid.PACKED_SIZE;
+                long size = (long) windowCount * PackedGrid.PACKED_SIZE;
+                MappedByteBuffer puzzles = puzzleChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                MappedByteBuffer solutions = solutionChannel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                solvedCount += solve(puzzles, solutions, windowCount);
+                solutions.force();
+            }
+            return solvedCount;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
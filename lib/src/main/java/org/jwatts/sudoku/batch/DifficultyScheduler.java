@@ -0,0 +1,313 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.Grid;
+import org.jwatts.sudoku.PartialSolution;
+import org.jwatts.sudoku.SolveBudget;
+import org.jwatts.sudoku.events.SolverEventListener;
+import org.jwatts.sudoku.events.SolverEvents;
+import org.jwatts.sudoku.store.PackedGrid;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves a batch of puzzles on a pool of threads, starting the ones that {@link SolveCostEstimator} expects to be
+ * slowest first. With puzzles taken in input order a few hard ones can land at the end of the batch and keep a single
+ * thread busy while the rest sit idle; taken longest first, the hard ones overlap with each other and the cheap ones
+ * fill the gaps at the end.
+ *
+ * Threads claim puzzles from one shared queue in chunks that shrink as the queue drains: large while there is plenty
+ * left, to keep claims cheap, and single puzzles near the end, so that no thread holds a backlog of claimed puzzles
+ * while another runs out of work.
+ */
+public final class DifficultyScheduler implements Closeable {
+    public enum Order {
+        INPUT,
+        LONGEST_FIRST
+    }
+
+    static final int MAX_CHUNK_SIZE = 64;
+
+    // Chunks are sized to leave this many chunks per thread in the queue
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final int threadCount;
+    private final ExecutorService executor;
+    private Order order = Order.LONGEST_FIRST;
+    private SolveBudget budget = SolveBudget.UNLIMITED;
+
+    public DifficultyScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public DifficultyScheduler(int threadCount) {
+        this.threadCount = threadCount;
+        executor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    /**
+     * @param budget the budget for each puzzle; puzzles that run out of it count as unsolved
+     */
+    public void setBudget(SolveBudget budget) {
+        this.budget = budget;
+    }
+
+    public static final class Result {
+        private final int puzzleCount;
+        private final int solvedCount;
+        private final long makespanNanos;
+        private final long estimateNanos;
+        private final long[] sortedLatencyNanos;
+        private final long[] sortedSolveNanos;
+
+        Result(int puzzleCount, int solvedCount, long makespanNanos, long estimateNanos, long[] latencyNanos,
+                long[] solveNanos) {
+            this.puzzleCount = puzzleCount;
+            this.solvedCount = solvedCount;
+            this.makespanNanos = makespanNanos;
+            this.estimateNanos = estimateNanos;
+            sortedLatencyNanos = latencyNanos.clone();
+            Arrays.sort(sortedLatencyNanos);
+            sortedSolveNanos = solveNanos.clone();
+            Arrays.sort(sortedSolveNanos);
+        }
+
+        public int getPuzzleCount() {
+            return puzzleCount;
+        }
+
+        public int getSolvedCount() {
+            return solvedCount;
+        }
+
+        /**
+         * @return the time from the start of the batch until the last puzzle was solved, estimates included
+         */
+        public long getMakespanNanos() {
+            return makespanNanos;
+        }
+
+        /**
+         * @return the time spent estimating costs before the first solve, 0 for {@link Order#INPUT}
+         */
+        public long getEstimateNanos() {
+            return estimateNanos;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the time from the start of the batch until a puzzle's solution was ready, at the percentile
+         */
+        public long getLatencyNanos(double percentile) {
+            return percentileOf(sortedLatencyNanos, percentile);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the time spent solving a single puzzle, at the percentile
+         */
+        public long getSolveNanos(double percentile) {
+            return percentileOf(sortedSolveNanos, percentile);
+        }
+
+        private static long percentileOf(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d solved, makespan %d ms (%d ms estimating), latency p50 %d ms p99 %d ms, "
+                    + "solve p99 %d us", solvedCount, puzzleCount, makespanNanos / 1000000, estimateNanos / 1000000,
+                    getLatencyNanos(50) / 1000000, getLatencyNanos(99) / 1000000, getSolveNanos(99) / 1000);
+        }
+    }
+
+    /**
+     * Solves the puzzles, each in the format of {@link Grid#toSerializedString()}.
+     *
+     * @param solutions receives the solution of each puzzle at the same index, or null if it was invalid, has no
+     *                  solution, or ran out of budget
+     */
+    public Result solve(List<? extends CharSequence> puzzles, String[] solutions) throws InterruptedException {
+        int count = puzzles.size();
+        long start = System.nanoTime();
+        int[] schedule = order == Order.LONGEST_FIRST ? longestFirst(puzzles) : inputOrder(count);
+        long estimateNanos = order == Order.LONGEST_FIRST ? System.nanoTime() - start : 0;
+
+        long[] latencyNanos = new long[count];
+        long[] solveNanos = new long[count];
+        AtomicInteger next = new AtomicInteger();
+        int solvedCount = 0;
+        for (int solved : runWorkers(() -> {
+            int workerSolvedCount = 0;
+            int first;
+            while ((first = claim(next, count)) < count) {
+                SolverEventListener events = SolverEvents.ENABLED ? SolverEvents.getListener() : null;
+                if (events != null) {
+                    events.chunkStarted();
+                }
+                int chunkSolvedCount = 0;
+                int end = Math.min(count, first + chunkSize(count - first));
+                for (int i = first; i < end; i++) {
+                    int puzzle = schedule[i];
+                    long solveStart = System.nanoTime();
+                    solutions[puzzle] = solveOne(puzzles.get(puzzle));
+                    long solveEnd = System.nanoTime();
+                    solveNanos[puzzle] = solveEnd - solveStart;
+                    latencyNanos[puzzle] = solveEnd - start;
+                    if (solutions[puzzle] != null) {
+                        chunkSolvedCount++;
+                    }
+                }
+                workerSolvedCount += chunkSolvedCount;
+                if (events != null) {
+                    events.chunkFinished(end - first, chunkSolvedCount);
+                }
+            }
+            return workerSolvedCount;
+        })) {
+            solvedCount += solved;
+        }
+        return new Result(count, solvedCount, System.nanoTime() - start, estimateNanos, latencyNanos, solveNanos);
+    }
+
+    /**
+     * Claims the next chunk of the schedule.
+     *
+     * @return the index of the first claimed puzzle, or count if there are none left
+     */
+    private int claim(AtomicInteger next, int count) {
+        while (true) {
+            int first = next.get();
+            if (first >= count) {
+                return count;
+            }
+            if (next.compareAndSet(first, first + chunkSize(count - first))) {
+                return first;
+            }
+        }
+    }
+
+    private int chunkSize(int remaining) {
+        return Math.max(1, Math.min(MAX_CHUNK_SIZE, remaining / (CHUNKS_PER_THREAD * threadCount)));
+    }
+
+    private String solveOne(CharSequence puzzle) {
+        if (puzzle.length() != PackedGrid.CELL_COUNT) {
+            return null;
+        }
+        Grid grid = Grid.fromSerializedString(puzzle.toString());
+        if (grid == null || grid.hasConflicts()) {
+            return null;
+        }
+        return grid.solve(budget).getStatus() == PartialSolution.Status.SOLVED ? grid.toSerializedString() : null;
+    }
+
+    /**
+     * Estimates every puzzle's cost in parallel, then orders them from most to least expensive.
+     */
+    private int[] longestFirst(List<? extends CharSequence> puzzles) throws InterruptedException {
+        int count = puzzles.size();
+        // Costs are non-negative, so their float bits sort like the costs; the index goes in the low half
+        long[] keys = new long[count];
+        AtomicInteger next = new AtomicInteger();
+        runWorkers(() -> {
+            SolveCostEstimator estimator = new SolveCostEstimator();
+            int first;
+            while ((first = claim(next, count)) < count) {
+                int end = Math.min(count, first + chunkSize(count - first));
+                for (int i = first; i < end; i++) {
+                    float cost = (float) estimator.estimate(puzzles.get(i));
+                    keys[i] = ((long) Float.floatToIntBits(cost) << 32) | i;
+                }
+            }
+            return 0;
+        });
+        Arrays.sort(keys);
+
+        int[] schedule = new int[count];
+        for (int i = 0; i < count; i++) {
+            schedule[i] = (int) keys[count - 1 - i];
+        }
+        return schedule;
+    }
+
+    private static int[] inputOrder(int count) {
+        int[] schedule = new int[count];
+        for (int i = 0; i < count; i++) {
+            schedule[i] = i;
+        }
+        return schedule;
+    }
+
+    private List<Integer> runWorkers(Callable<Integer> worker) throws InterruptedException {
+        List<Callable<Integer>> workers = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            workers.add(worker);
+        }
+        List<Integer> results = new ArrayList<>(threadCount);
+        for (Future<Integer> result : executor.invokeAll(workers)) {
+            try {
+                results.add(result.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Scheduled solve worker failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Solves a file of puzzles, one per line, in input order and then longest first, and prints how each went:
+     * <pre>java org.jwatts.sudoku.batch.DifficultyScheduler puzzles.txt [threads]</pre>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: DifficultyScheduler <puzzles> [threads]");
+            System.exit(2);
+        }
+        List<String> puzzles = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(args[0])))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    puzzles.add(line.trim());
+                }
+            }
+        }
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String[] solutions = new String[puzzles.size()];
+        try (DifficultyScheduler scheduler = new DifficultyScheduler(threadCount)) {
+            // Warm up both paths before timing either
+            scheduler.solve(puzzles, solutions);
+            for (Order order : Order.values()) {
+                scheduler.setOrder(order);
+                System.out.println(order + ": " + scheduler.solve(puzzles, solutions));
+            }
+        }
+    }
+}
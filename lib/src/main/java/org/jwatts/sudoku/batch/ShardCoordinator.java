@@ -0,0 +1,440 @@
+package org.jwatts.sudoku.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves a file of puzzles, one per line, across several local worker processes, for corpora too big for one JVM.
+ * The input is cut into byte ranges of {@link #DEFAULT_SHARD_SIZE} bytes, and each {@link ShardWorker} process takes
+ * one shard at a time over its stdin and stdout pipes, writing the solutions of the shard to a file of its own. The
+ * coordinator appends the shard files to the output in input order as soon as every earlier shard is done, so the
+ * output has one line per input puzzle, in the same order, as if one process had solved the whole file.
+ *
+ * A shard whose worker fails, dies, or takes longer than {@link #DEFAULT_SHARD_TIMEOUT_MILLIS} ms is put back in the
+ * queue and the worker is killed and replaced, up to {@link #DEFAULT_MAX_ATTEMPTS} attempts per shard. Workers share
+ * nothing but the input file, so throughput grows with the worker count until the machine runs out of cores or disk
+ * bandwidth.
+ *
+ * With a checkpoint file, a run records how far the merged output got every {@link #DEFAULT_CHECKPOINT_INTERVAL_MILLIS}
+ * ms, and a run that crashed picks up from there; see {@link BatchCheckpoint}. A checkpoint costs one sync of the
+ * output and one tiny file write per interval.
+ *
+ * <pre>java org.jwatts.sudoku.batch.ShardCoordinator puzzles.txt solutions.txt [workers]</pre>
+ * resumes from solutions.txt.checkpoint if an earlier run left one behind.
+ */
+public class ShardCoordinator {
+    public static final long DEFAULT_SHARD_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 10000;
+    public static final long DEFAULT_SHARD_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+    /**
+     * Called from worker threads as each shard finishes, in completion order; counts cover the finished shards.
+     */
+    public interface ProgressListener {
+        void shardCompleted(int completedShardCount, int shardCount, long puzzleCount, long solvedCount);
+    }
+
+    /**
+     * Starts a worker process speaking the {@link ShardWorker} protocol.
+     */
+    interface WorkerLauncher {
+        Process launch() throws IOException;
+    }
+
+    public static final class Result {
+        private final int shardCount;
+        private final long puzzleCount;
+        private final long solvedCount;
+        private final int retryCount;
+
+        Result(int shardCount, long puzzleCount, long solvedCount, int retryCount) {
+            this.shardCount = shardCount;
+            this.puzzleCount = puzzleCount;
+            this.solvedCount = solvedCount;
+            this.retryCount = retryCount;
+        }
+
+        public int getShardCount() {
+            return shardCount;
+        }
+
+        public long getPuzzleCount() {
+            return puzzleCount;
+        }
+
+        public long getSolvedCount() {
+            return solvedCount;
+        }
+
+        /**
+         * @return the number of shard attempts that failed and were retried
+         */
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d solved in %d shards, %d retries", solvedCount, puzzleCount, shardCount,
+                    retryCount);
+        }
+    }
+
+    private static final class Shard {
+        final int index;
+        final long start;
+        final long end;
+        int attemptCount;
+        boolean isDone;
+        long puzzleCount;
+        long solvedCount;
+
+        Shard(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final int workerCount;
+    private final WorkerLauncher launcher;
+    private long shardSize = DEFAULT_SHARD_SIZE;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private ProgressListener progressListener;
+    private File checkpointFile;
+    private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+    private long shardTimeoutMillis = DEFAULT_SHARD_TIMEOUT_MILLIS;
+
+    // Kills workers that take too long over a shard, for the duration of a run
+    private ScheduledThreadPoolExecutor watchdog;
+
+    // Guarded by this, for the duration of a run
+    private Deque<Shard> pendingShards;
+    private int shardCount;
+    private int completedShardCount;
+    private long completedPuzzleCount;
+    private long completedSolvedCount;
+    private int retryCount;
+    private IOException failure;
+
+    public ShardCoordinator(int workerCount) {
+        this(workerCount, ShardCoordinator::launchWorkerJvm);
+    }
+
+    ShardCoordinator(int workerCount, WorkerLauncher launcher) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Need at least one worker");
+        }
+        this.workerCount = workerCount;
+        this.launcher = launcher;
+    }
+
+    public void setShardSize(long shardSize) {
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("Shard size must be positive");
+        }
+        this.shardSize = shardSize;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Makes runs checkpoint their progress to checkpointFile, at most every {@link #setCheckpointInterval interval},
+     * and resume from the checkpoint in it if there is one. The file is deleted once a run finishes.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public void setCheckpointInterval(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    /**
+     * Sets how long a worker may take over one shard before it is killed and the shard counts as a failed attempt.
+     */
+    public void setShardTimeout(long shardTimeoutMillis) {
+        if (shardTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Shard timeout must be positive");
+        }
+        this.shardTimeoutMillis = shardTimeoutMillis;
+    }
+
+    /**
+     * Solves every puzzle in input, writing one line per puzzle to output.
+     *
+     * @throws IOException if a shard failed on every attempt, or the files could not be read or written
+     */
+    public Result run(File input, File output) throws IOException, InterruptedException {
+        long length = input.length();
+        BatchCheckpoint checkpoint = checkpointFile != null ? BatchCheckpoint.read(checkpointFile) : null;
+        if (checkpoint != null && checkpoint.getInputLength() != length) {
+            throw new IOException("Checkpoint " + checkpointFile + " is for a different input than " + input);
+        }
+        long firstStart = checkpoint != null ? checkpoint.getInputOffset() : 0;
+        deleteShardFiles(output);
+        List<Shard> shards = new ArrayList<>();
+        for (long start = firstStart; start < length; start += shardSize) {
+            shards.add(new Shard(shards.size(), start, Math.min(length, start + shardSize)));
+        }
+        synchronized (this) {
+            pendingShards = new ArrayDeque<>(shards);
+            shardCount = shards.size();
+            completedShardCount = 0;
+            completedPuzzleCount = 0;
+            completedSolvedCount = 0;
+            retryCount = 0;
+            failure = null;
+        }
+        watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "shard-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Almost every timeout is cancelled, so don't keep them queued until they would have gone off
+        watchdog.setRemoveOnCancelPolicy(true);
+
+        List<Thread> workerThreads = new ArrayList<>();
+        for (int i = 0; i < Math.min(workerCount, shards.size()); i++) {
+            Thread thread = new Thread(() -> runWorker(input, output), "shard-worker-" + i);
+            thread.start();
+            workerThreads.add(thread);
+        }
+
+        long puzzleCount = checkpoint != null ? checkpoint.getPuzzleCount() : 0;
+        long solvedCount = checkpoint != null ? checkpoint.getSolvedCount() : 0;
+        try (FileChannel out = new RandomAccessFile(output, "rw").getChannel()) {
+            // Drop whatever was merged after the checkpoint; those shards are solved again
+            long outputOffset = checkpoint != null ? checkpoint.getOutputOffset() : 0;
+            if (out.size() < outputOffset) {
+                throw new IOException(output + " is shorter than its checkpoint says");
+            }
+            out.truncate(outputOffset);
+            out.position(outputOffset);
+            long lastCheckpointNanos = System.nanoTime();
+
+            for (Shard shard : shards) {
+                synchronized (this) {
+                    while (!shard.isDone && failure == null) {
+                        wait();
+                    }
+                    if (failure != null) {
+                        break;
+                    }
+                }
+                File shardFile = shardFile(output, shard.index);
+                try (FileChannel in = new FileInputStream(shardFile).getChannel()) {
+                    long size = in.size();
+                    for (long position = 0; position < size; ) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                if (!shardFile.delete()) {
+                    throw new IOException("Could not delete " + shardFile);
+                }
+                puzzleCount += shard.puzzleCount;
+                solvedCount += shard.solvedCount;
+
+                if (checkpointFile != null
+                        && System.nanoTime() - lastCheckpointNanos >= checkpointIntervalMillis * 1000000L) {
+                    // The output must be on disk before a checkpoint that vouches for it
+                    out.force(false);
+                    new BatchCheckpoint(length, shard.end, out.position(), puzzleCount, solvedCount)
+                            .write(checkpointFile);
+                    lastCheckpointNanos = System.nanoTime();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                if (failure == null && completedShardCount < shards.size()) {
+                    failure = new IOException("Coordinator stopped before all shards were merged");
+                }
+                pendingShards.clear();
+                notifyAll();
+            }
+            for (Thread thread : workerThreads) {
+                thread.join();
+            }
+            watchdog.shutdownNow();
+        }
+
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (checkpointFile != null && checkpointFile.exists() && !checkpointFile.delete()) {
+            throw new IOException("Could not delete " + checkpointFile);
+        }
+        return new Result(shards.size(), puzzleCount, solvedCount, retryCount);
+    }
+
+    /**
+     * Feeds shards to one worker process, replacing the process whenever it fails.
+     */
+    private void runWorker(File input, File output) {
+        Process process = null;
+        try {
+            PrintWriter commands = null;
+            BufferedReader replies = null;
+            Shard shard;
+            while ((shard = nextShard()) != null) {
+                if (process == null) {
+                    try {
+                        process = launcher.launch();
+                    } catch (IOException e) {
+                        fail(new IOException("Could not start a worker", e));
+                        return;
+                    }
+                    commands = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), "US-ASCII"));
+                    replies = new BufferedReader(new InputStreamReader(process.getInputStream(), "US-ASCII"));
+                }
+
+                commands.println(ShardWorker.SOLVE_COMMAND + " " + shard.index + " " + shard.start + " "
+                        + shard.end + " " + input.getAbsolutePath() + " "
+                        + shardFile(output, shard.index).getAbsolutePath());
+                commands.flush();
+                // Killing the process ends the wait for a reply
+                Process running = process;
+                ScheduledFuture<?> timeout = watchdog.schedule(running::destroyForcibly, shardTimeoutMillis,
+                        TimeUnit.MILLISECONDS);
+                String reply;
+                try {
+                    reply = commands.checkError() ? null : replies.readLine();
+                } finally {
+                    if (!timeout.cancel(false)) {
+                        reply = "timed out after " + shardTimeoutMillis + " ms";
+                    }
+                }
+                String[] fields = reply != null ? reply.split(" ", 4) : new String[0];
+                if (fields.length == 4 && fields[0].equals(ShardWorker.DONE_REPLY)
+                        && fields[1].equals(String.valueOf(shard.index))) {
+                    shardDone(shard, Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                } else {
+                    // Start over with a fresh process, whatever state this one is in. It must be gone before the
+                    // shard is retried, or it could still be writing the same shard file as the next attempt.
+                    process = null;
+                    running.destroyForcibly().waitFor();
+                    shardFailed(shard, reply != null ? reply : "worker exited");
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new IOException("Interrupted while replacing a worker", e));
+        } catch (RuntimeException e) {
+            // For example from the progress listener; without a failure the coordinator would wait for ever
+            fail(new IOException("Shard worker thread failed", e));
+        } finally {
+            if (process != null) {
+                // Closing stdin tells the worker to exit
+                try {
+                    process.getOutputStream().close();
+                    process.waitFor();
+                } catch (IOException | InterruptedException e) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    private synchronized Shard nextShard() {
+        return failure == null ? pendingShards.poll() : null;
+    }
+
+    private synchronized void shardDone(Shard shard, long puzzleCount, long solvedCount) {
+        shard.puzzleCount = puzzleCount;
+        shard.solvedCount = solvedCount;
+        shard.isDone = true;
+        completedShardCount++;
+        completedPuzzleCount += puzzleCount;
+        completedSolvedCount += solvedCount;
+        notifyAll();
+        if (progressListener != null) {
+            progressListener.shardCompleted(completedShardCount, shardCount, completedPuzzleCount,
+                    completedSolvedCount);
+        }
+    }
+
+    private synchronized void shardFailed(Shard shard, String reason) {
+        shard.attemptCount++;
+        if (shard.attemptCount >= maxAttempts) {
+            fail(new IOException("Shard " + shard.index + " failed " + shard.attemptCount + " times: " + reason));
+            return;
+        }
+        retryCount++;
+        pendingShards.addFirst(shard);
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Deletes shard files left behind by a run that crashed.
+     */
+    private static void deleteShardFiles(File output) throws IOException {
+        File[] leftovers = output.getAbsoluteFile().getParentFile()
+                .listFiles((dir, name) -> name.startsWith(output.getName() + ".shard"));
+        if (leftovers == null) {
+            return;
+        }
+        for (File leftover : leftovers) {
+            if (!leftover.delete()) {
+                throw new IOException("Could not delete " + leftover);
+            }
+        }
+    }
+
+    static File shardFile(File output, int shardIndex) {
+        return new File(output.getAbsoluteFile().getParentFile(), output.getName() + ".shard" + shardIndex);
+    }
+
+    private static Process launchWorkerJvm() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ShardWorker.class.getName())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: ShardCoordinator <puzzle file> <solution file> [workers]");
+            System.exit(1);
+        }
+        int workerCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        ShardCoordinator coordinator = new ShardCoordinator(workerCount);
+        coordinator.setCheckpointFile(new File(args[1] + ".checkpoint"));
+        coordinator.setProgressListener((completed, total, puzzles, solved) ->
+                System.err.printf("%d/%d shards done%n", completed, total));
+        long start = System.nanoTime();
+        Result result = coordinator.run(new File(args[0]), new File(args[1]));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        System.out.printf("%s with %d workers in %d ms%n", result, workerCount, elapsedMillis);
+    }
+}
@@ -0,0 +1,170 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.Grid;
+import org.jwatts.sudoku.events.SolverEventListener;
+import org.jwatts.sudoku.events.SolverEvents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Worker process for {@link ShardCoordinator}. Reads one shard assignment per line from stdin, solves the shard, and
+ * answers on stdout, until stdin is closed:
+ * <pre>
+ * in:  SOLVE &lt;shard&gt; &lt;start&gt; &lt;end&gt; &lt;input file&gt; &lt;output file&gt;
+ * out: DONE &lt;shard&gt; &lt;puzzles&gt; &lt;solved&gt;
+ *      FAILED &lt;shard&gt; &lt;message&gt;
+ * </pre>
+ *
+ * A shard is the byte range [start, end) of a file of puzzles, one per line. It owns every line that starts inside
+ * the range, so a line split by a boundary belongs to the shard it starts in. Each puzzle is solved with {@link Grid}
+ * and written as one output line: the grid after solving, still containing '0's if the solver got stuck, or
+ * {@link #ERROR_LINE} if the line was not a valid puzzle. Output goes to a temporary file that is renamed into place
+ * only once the whole shard is written, so a worker that dies mid-shard never leaves a partial shard behind.
+ */
+public final class ShardWorker {
+    static final String SOLVE_COMMAND = "SOLVE";
+    static final String DONE_REPLY = "DONE";
+    static final String FAILED_REPLY = "FAILED";
+    static final String ERROR_LINE = "error";
+
+    private static final int PUZZLE_LENGTH = 81;
+
+    private ShardWorker() {}
+
+    public static void main(String[] args) throws IOException {
+        // Nothing but replies may go to stdout
+        PrintStream replies = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "US-ASCII");
+        System.setOut(System.err);
+
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, "US-ASCII"));
+        String command;
+        while ((command = commands.readLine()) != null) {
+            String[] fields = command.split(" ");
+            if (fields.length != 6 || !fields[0].equals(SOLVE_COMMAND)) {
+                replies.println(FAILED_REPLY + " -1 Unknown command");
+                continue;
+            }
+            String shard = fields[1];
+            try {
+                File outputFile = new File(fields[5]);
+                File tempFile = new File(outputFile.getPath() + ".tmp");
+                long[] counts;
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                    counts = solveShard(new File(fields[4]), Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                            out);
+                }
+                if (outputFile.exists() && !outputFile.delete() || !tempFile.renameTo(outputFile)) {
+                    throw new IOException("Could not move " + tempFile + " to " + outputFile);
+                }
+                replies.println(DONE_REPLY + " " + shard + " " + counts[0] + " " + counts[1]);
+            } catch (IOException | RuntimeException e) {
+                replies.println(FAILED_REPLY + " " + shard + " " + String.valueOf(e).replace('\n', ' '));
+            }
+        }
+    }
+
+    /**
+     * Solves the lines owned by the byte range [start, end) of input.
+     *
+     * @return the number of puzzles in the shard and the number solved
+     */
+    static long[] solveShard(File input, long start, long end, OutputStream out) throws IOException {
+        long puzzleCount = 0;
+        long solvedCount = 0;
+        SolverEventListener events = SolverEvents.ENABLED ? SolverEvents.getListener() : null;
+        if (events != null) {
+            events.chunkStarted();
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(input))) {
+            long position = 0;
+            if (start > 0) {
+                // Skip the tail of a line that started in the previous shard
+                skipFully(in, start - 1);
+                position = start - 1;
+                int b;
+                while ((b = in.read()) != -1) {
+                    position++;
+                    if (b == '\n') {
+                        break;
+                    }
+                }
+            }
+
+            byte[] line = new byte[PUZZLE_LENGTH + 2];
+            while (position < end) {
+                int length = 0;
+                boolean isTooLong = false;
+                int b;
+                while ((b = in.read()) != -1) {
+                    position++;
+                    if (b == '\n') {
+                        break;
+                    }
+                    if (length < line.length) {
+                        line[length++] = (byte) b;
+                    } else {
+                        isTooLong = true;
+                    }
+                }
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                if (length > 0 || isTooLong) {
+                    puzzleCount++;
+                    if (solveLine(line, length, isTooLong, out)) {
+                        solvedCount++;
+                    }
+                }
+                if (b == -1) {
+                    break;
+                }
+            }
+        } finally {
+            if (events != null) {
+                events.chunkFinished((int) puzzleCount, (int) solvedCount);
+            }
+        }
+        return new long[] { puzzleCount, solvedCount };
+    }
+
+    private static boolean solveLine(byte[] line, int length, boolean isTooLong, OutputStream out)
+            throws IOException {
+        Grid grid = null;
+        if (!isTooLong && length == PUZZLE_LENGTH) {
+            grid = Grid.fromSerializedString(new String(line, 0, length, "US-ASCII"));
+        }
+        if (grid == null || grid.hasConflicts()) {
+            out.write(ERROR_LINE.getBytes("US-ASCII"));
+            out.write('\n');
+            return false;
+        }
+        boolean solved = grid.solve();
+        out.write(grid.toSerializedString().getBytes("US-ASCII"));
+        out.write('\n');
+        return solved;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    return;
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.SolverWorkspace;
+import org.jwatts.sudoku.store.PackedGrid;
+
+/**
+ * Guesses how long a puzzle will take to solve before solving it, so that a scheduler can start the expensive ones
+ * first. The guess costs one load and one propagation pass in a {@link SolverWorkspace}, a small fraction of a solve,
+ * and is built from three features:
+ * <ul>
+ *     <li>the clue count, as every given is a square the solver does not have to fill;</li>
+ *     <li>the candidate entropy after placing the givens: the sum over empty squares of log2 of their candidate
+ *     counts, i.e. how many bits are still unknown;</li>
+ *     <li>the entropy after one pass of {@link SolverWorkspace#solvePass()}. What the pass resolved is a sign the
+ *     puzzle will keep collapsing under propagation, and what is left is roughly what search has to find.</li>
+ * </ul>
+ * The weights were fitted to {@link org.jwatts.sudoku.Grid#solve(org.jwatts.sudoku.SolveBudget)} times over a mix of
+ * minimal puzzles and puzzles with 25 to 80 clues, and come out roughly in microseconds on a desktop machine. Only
+ * their order matters.
+ *
+ * Not thread safe; use one instance per thread.
+ */
+public final class SolveCostEstimator {
+    private static final double BASE_COST = 215;
+    private static final double COST_PER_CLUE = -0.79;
+    private static final double COST_PER_RESOLVED_BIT = -0.41;
+    private static final double COST_PER_REMAINING_BIT = 0.31;
+
+    // Estimates stay positive, as DifficultyScheduler orders them by their float bits
+    private static final double MIN_COST = 1;
+
+    // Indexed by candidate count, 0 for squares that have a value
+    private static final double[] LOG2 = new double[10];
+
+    static {
+        for (int i = 1; i < LOG2.length; i++) {
+            LOG2[i] = Math.log(i) / Math.log(2);
+        }
+    }
+
+    private final SolverWorkspace workspace = new SolverWorkspace();
+
+    /**
+     * @return the expected relative cost of solving the puzzle; invalid puzzles are cheap, as they are rejected
+     *         before solving
+     */
+    public double estimate(CharSequence serializedGrid) {
+        if (!workspace.load(serializedGrid)) {
+            return MIN_COST;
+        }
+        int clueCount = workspace.getFilledCount();
+        double initialEntropy = entropy();
+        workspace.solvePass();
+        double remainingEntropy = workspace.hasContradiction() ? 0 : entropy();
+        double cost = BASE_COST + COST_PER_CLUE * clueCount
+                + COST_PER_RESOLVED_BIT * (initialEntropy - remainingEntropy)
+                + COST_PER_REMAINING_BIT * remainingEntropy;
+        return Math.max(MIN_COST, cost);
+    }
+
+    private double entropy() {
+        double entropy = 0;
+        for (int cell = 0; cell < PackedGrid.CELL_COUNT; cell++) {
+            entropy += LOG2[Integer.bitCount(workspace.getCandidates(cell))];
+        }
+        return entropy;
+    }
+}
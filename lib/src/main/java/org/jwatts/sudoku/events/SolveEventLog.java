@@ -0,0 +1,100 @@
+package org.jwatts.sudoku.events;
+
+import org.jwatts.sudoku.Square;
+
+import java.util.Arrays;
+
+/**
+ * Records the values set during a solve as a log of ints, one (square index, value) event each, so that a UI can play
+ * the solve back at its own pace instead of being sent every value as it happens. Appending costs an array store, so
+ * observing a solve barely slows it down however fast it runs.
+ *
+ * One thread (the solver's) appends while one other thread (the UI's) reads: events up to {@link #size()} are always
+ * safe to read. Squares are addressed by index, row-major.
+ */
+public final class SolveEventLog implements ValueSetObserver {
+    private static final int VALUE_BITS = 8;
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+
+    private final int rowColLength;
+    private volatile int[] events = new int[128];
+    private volatile int size;
+    private volatile boolean isFinished;
+
+    // Reader-side scratch space for coalesce, one bit per square
+    private final long[] dirtyBits;
+
+    public SolveEventLog(int rowColLength) {
+        this.rowColLength = rowColLength;
+        dirtyBits = new long[(rowColLength * rowColLength + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    @Override
+    public void notifyValueSet(Square square) {
+        append(square.getRowIndex() * rowColLength + square.getColIndex(), square.getValue());
+    }
+
+    void append(int cell, int value) {
+        int[] current = events;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, 2 * current.length);
+            events = current;
+        }
+        current[size] = (cell << VALUE_BITS) | value;
+        // Publishing the new size makes the event, and any grown array, visible to the reader
+        size = size + 1;
+    }
+
+    /**
+     * Marks the solve as done; no more events will be added.
+     */
+    public void finish() {
+        isFinished = true;
+    }
+
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCell(int index) {
+        return events[index] >>> VALUE_BITS;
+    }
+
+    public int getValue(int index) {
+        return events[index] & VALUE_MASK;
+    }
+
+    /**
+     * Applies the events from (inclusive) to to (exclusive) to values, indexed by square, for rendering them as one
+     * frame: however many times a square changed, only its latest value counts.
+     *
+     * @param dirtyCells receives each square that changed, once, in index order
+     * @return the number of squares written to dirtyCells
+     */
+    public int coalesce(int from, int to, int[] values, int[] dirtyCells) {
+        if (to > size) {
+            throw new IndexOutOfBoundsException("Only " + size + " events, not " + to);
+        }
+        int[] current = events;
+        for (int i = from; i < to; i++) {
+            int cell = current[i] >>> VALUE_BITS;
+            values[cell] = current[i] & VALUE_MASK;
+            dirtyBits[cell >>> 6] |= 1L << cell;
+        }
+
+        int dirtyCount = 0;
+        for (int word = 0; word < dirtyBits.length; word++) {
+            long bits = dirtyBits[word];
+            while (bits != 0) {
+                dirtyCells[dirtyCount++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+            dirtyBits[word] = 0;
+        }
+        return dirtyCount;
+    }
+}
@@ -0,0 +1,44 @@
+package org.jwatts.sudoku.events;
+
+import org.jwatts.sudoku.Deduction;
+
+/**
+ * Follows what the solver is doing as it happens, for profilers and tracing: solves, propagation passes and the
+ * techniques each pass applied, search branches and backtracks, and batch chunks. Only called when
+ * {@link SolverEvents#ENABLED}, always on the thread doing the work; started and finished calls pair up and nest per
+ * thread, e.g. the passes of a solve come between its solveStarted and solveFinished.
+ */
+public interface SolverEventListener {
+    /**
+     * @param fingerprint the {@link org.jwatts.sudoku.store.PackedGrid#fingerprint} of the puzzle, or 0 if it is not
+     *                    9x9
+     */
+    void solveStarted(long fingerprint, int clueCount);
+
+    void solveFinished(boolean isSolved, int filledCount);
+
+    void passStarted();
+
+    /**
+     * @param isProgress false if the pass could not place a value or remove a candidate, which ends a logical solve
+     */
+    void passFinished(int filledCount, boolean isProgress);
+
+    /**
+     * Called once per pass for each technique that did something.
+     *
+     * @param count values placed, or candidates removed for eliminations
+     */
+    void techniqueApplied(Deduction.Technique technique, int count);
+
+    /**
+     * @param candidateCount candidates of the branch square not tried yet, including this one
+     */
+    void branched(int depth, int cell, int candidateCount);
+
+    void backtracked(int depth);
+
+    void chunkStarted();
+
+    void chunkFinished(int puzzleCount, int solvedCount);
+}
@@ -0,0 +1,60 @@
+package org.jwatts.sudoku.events;
+
+import org.jwatts.sudoku.Deduction;
+
+/**
+ * Hook for a {@link SolverEventListener}, off unless the {@link #EVENTS_PROPERTY} system property is "true".
+ *
+ * Like the solver's trace flag, {@link #ENABLED} is a constant that call sites check first, so with events off the JIT
+ * drops the instrumentation and the solver runs as if it were not there. With events on, a listener can be swapped in
+ * and out at any time; until one is set, events go nowhere.
+ */
+public final class SolverEvents {
+    public static final String EVENTS_PROPERTY = "org.jwatts.sudoku.events";
+
+    public static final boolean ENABLED = Boolean.getBoolean(EVENTS_PROPERTY);
+
+    private static final SolverEventListener NO_LISTENER = new SolverEventListener() {
+        @Override
+        public void solveStarted(long fingerprint, int clueCount) {}
+
+        @Override
+        public void solveFinished(boolean isSolved, int filledCount) {}
+
+        @Override
+        public void passStarted() {}
+
+        @Override
+        public void passFinished(int filledCount, boolean isProgress) {}
+
+        @Override
+        public void techniqueApplied(Deduction.Technique technique, int count) {}
+
+        @Override
+        public void branched(int depth, int cell, int candidateCount) {}
+
+        @Override
+        public void backtracked(int depth) {}
+
+        @Override
+        public void chunkStarted() {}
+
+        @Override
+        public void chunkFinished(int puzzleCount, int solvedCount) {}
+    };
+
+    private static volatile SolverEventListener sListener = NO_LISTENER;
+
+    private SolverEvents() {}
+
+    public static SolverEventListener getListener() {
+        return sListener;
+    }
+
+    /**
+     * @param listener the listener for all solver threads, or null to drop events again
+     */
+    public static void setListener(SolverEventListener listener) {
+        sListener = listener != null ? listener : NO_LISTENER;
+    }
+}
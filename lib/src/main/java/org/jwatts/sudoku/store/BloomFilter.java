@@ -0,0 +1,73 @@
+package org.jwatts.sudoku.store;
+
+/**
+ * Bloom filter over 64-bit fingerprints such as {@link PackedGrid#fingerprint}, sized for an expected number of
+ * insertions and a false positive rate. The bit positions come from double hashing of the fingerprint, so each lookup
+ * costs {@link #getHashCount()} multiply-adds and as many memory reads.
+ *
+ * Not thread safe.
+ */
+final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    // Largest array Java will allocate
+    private static final long MAX_WORDS = Integer.MAX_VALUE - 8;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Need a positive size and a false positive rate between 0 and 1");
+        }
+        double optimalBits = -expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2);
+        long wordCount = Math.min(MAX_WORDS, Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE)));
+        words = new long[(int) wordCount];
+        bitCount = wordCount * Long.SIZE;
+        hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedInsertions * LN2));
+    }
+
+    boolean mightContain(long fingerprint) {
+        long h2 = secondHash(fingerprint);
+        long combined = fingerprint;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitCount;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    void put(long fingerprint) {
+        long h2 = secondHash(fingerprint);
+        long combined = fingerprint;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitCount;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+            combined += h2;
+        }
+    }
+
+    long getBitCount() {
+        return bitCount;
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return the false positive rate to expect once insertions fingerprints have been added
+     */
+    double expectedFalsePositiveRate(long insertions) {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+    }
+
+    private static long secondHash(long fingerprint) {
+        // Odd, so that successive positions never repeat before wrapping around
+        return (Long.rotateLeft(fingerprint, 32) * 0x9e3779b97f4a7c15L) | 1;
+    }
+}
@@ -0,0 +1,325 @@
+package org.jwatts.sudoku.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The saved state of one game in progress: the value and candidate notes of each square, kept as an append-only
+ * journal so that saving on every keystroke costs one small write.
+ *
+ * The journal file starts with a snapshot of the whole game, followed by one record per edit. Every record is a type
+ * byte, a payload length byte, the payload, and a CRC32 of the three. An edit record is 9 bytes. Every
+ * {@link #SNAPSHOT_INTERVAL} edits the journal is compacted: a new file holding only a snapshot is written and synced
+ * next to the old one, then renamed over it. Opening a journal therefore reads one snapshot and a short tail.
+ *
+ * If the process dies partway through appending a record, the torn record fails its checksum the next time the
+ * journal is opened, and the file is truncated back to the last whole record. A leftover compaction file is simply
+ * deleted, since the old journal is only replaced once the new one is complete. The one exception is a compaction file
+ * with no journal next to it, left by dying between deleting the old journal and renaming the new one over it on
+ * platforms that cannot rename over a file: if it holds a whole snapshot, it becomes the journal.
+ *
+ * Squares are addressed by index, row-major from 0 to 80. Notes are masks with bit (v - 1) set for value v. Not thread
+ * safe.
+ */
+public final class GameJournal implements Closeable {
+    public static final int CELL_COUNT = PackedGrid.CELL_COUNT;
+
+    static final int SNAPSHOT_INTERVAL = 256;
+
+    private static final int MAGIC = 0x53554a4e;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+
+    private static final byte SNAPSHOT = 1;
+    private static final byte VALUE = 2;
+    private static final byte NOTES = 3;
+
+    // Type and payload length before the payload, CRC32 after it
+    private static final int RECORD_OVERHEAD = 2 + 4;
+    private static final int SNAPSHOT_PAYLOAD_SIZE = 8 + PackedGrid.PACKED_SIZE + 2 * CELL_COUNT;
+    private static final int MAX_NOTES = (1 << 9) - 1;
+
+    private final File file;
+    private final File compactionFile;
+    private final int snapshotInterval;
+
+    private final int[] values = new int[CELL_COUNT];
+    private final int[] notes = new int[CELL_COUNT];
+    private long editCount;
+    private int tailRecordCount;
+
+    private FileChannel channel;
+    private long endPosition;
+
+    // Reused for every record written, so edits do not allocate
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_OVERHEAD + SNAPSHOT_PAYLOAD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    GameJournal(File file, int snapshotInterval) throws IOException {
+        this.file = file;
+        this.snapshotInterval = snapshotInterval;
+        compactionFile = new File(file.getPath() + ".tmp");
+        if (compactionFile.exists()) {
+            if (!file.exists() && isCompleteSnapshotFile(compactionFile)) {
+                replaceWithCompactionFile();
+            } else if (!compactionFile.delete()) {
+                throw new IOException("Could not delete " + compactionFile);
+            }
+        }
+
+        if (!file.exists()) {
+            writeSnapshotFile();
+            replaceWithCompactionFile();
+        }
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            replay();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    public int getNotes(int cell) {
+        return notes[cell];
+    }
+
+    /**
+     * @return the number of edits recorded over the life of the game
+     */
+    public long getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * @return true if no square has a value or notes
+     */
+    public boolean isEmpty() {
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            if (values[cell] != 0 || notes[cell] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a value, or with 0 an empty square. Does nothing if the square already has the value.
+     */
+    public void setValue(int cell, int value) throws IOException {
+        checkCell(cell);
+        if (value < 0 || value > 9) {
+            throw new IllegalArgumentException("Invalid value " + value);
+        }
+        if (values[cell] != value) {
+            values[cell] = value;
+            appendEdit(VALUE, cell, value);
+        }
+    }
+
+    /**
+     * Records the candidate notes of a square. Does nothing if the square already has these notes.
+     */
+    public void setNotes(int cell, int notesMask) throws IOException {
+        checkCell(cell);
+        if (notesMask < 0 || notesMask > MAX_NOTES) {
+            throw new IllegalArgumentException("Invalid notes mask " + notesMask);
+        }
+        if (notes[cell] != notesMask) {
+            notes[cell] = notesMask;
+            appendEdit(NOTES, cell, notesMask);
+        }
+    }
+
+    private static void checkCell(int cell) {
+        if (cell < 0 || cell >= CELL_COUNT) {
+            throw new IllegalArgumentException("Invalid square " + cell);
+        }
+    }
+
+    /**
+     * Forces the records written so far to disk. Appends only reach the OS, which survives the app being killed but
+     * not the device losing power, so call this at points like onPause.
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Rewrites the journal as a single snapshot of the current state.
+     */
+    public void compact() throws IOException {
+        writeSnapshotFile();
+        channel.close();
+        replaceWithCompactionFile();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        endPosition = channel.size();
+        tailRecordCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private void appendEdit(byte type, int cell, int value) throws IOException {
+        editCount++;
+        beginRecord();
+        recordBuffer.put((byte) cell).putShort((short) value);
+        endPosition += writeRecord(channel, endPosition, type);
+        if (++tailRecordCount >= snapshotInterval) {
+            compact();
+        }
+    }
+
+    private void beginRecord() {
+        recordBuffer.clear();
+        recordBuffer.position(2);
+    }
+
+    /**
+     * Writes the payload put in recordBuffer since {@link #beginRecord()} as a record of this type at position.
+     *
+     * @return the size of the record
+     */
+    private int writeRecord(FileChannel dest, long position, byte type) throws IOException {
+        recordBuffer.put(0, type);
+        recordBuffer.put(1, (byte) (recordBuffer.position() - 2));
+        crc.reset();
+        crc.update(recordBuffer.array(), 0, recordBuffer.position());
+        recordBuffer.putInt((int) crc.getValue());
+        recordBuffer.flip();
+        int size = recordBuffer.remaining();
+        while (recordBuffer.hasRemaining()) {
+            position += dest.write(recordBuffer, position);
+        }
+        return size;
+    }
+
+    private void writeSnapshotFile() throws IOException {
+        try (RandomAccessFile access = new RandomAccessFile(compactionFile, "rw")) {
+            FileChannel dest = access.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            dest.write(header, 0);
+
+            beginRecord();
+            recordBuffer.putLong(editCount);
+            for (int cell = 0; cell < CELL_COUNT; cell += 2) {
+                int low = cell + 1 < CELL_COUNT ? values[cell + 1] : 0;
+                recordBuffer.put((byte) ((values[cell] << 4) | low));
+            }
+            for (int cell = 0; cell < CELL_COUNT; cell++) {
+                recordBuffer.putShort((short) notes[cell]);
+            }
+            writeRecord(dest, FILE_HEADER_SIZE, SNAPSHOT);
+            dest.force(true);
+        }
+    }
+
+    private void replaceWithCompactionFile() throws IOException {
+        if (!compactionFile.renameTo(file)) {
+            // Renaming over an existing file fails on some platforms
+            if (!file.delete() || !compactionFile.renameTo(file)) {
+                throw new IOException("Could not replace journal " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshot and the edits after it, truncating any torn or corrupt tail.
+     */
+    private void replay() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal too large: " + file);
+        }
+        ByteBuffer contents = ByteBuffer.allocate((int) size);
+        while (contents.hasRemaining() && channel.read(contents, contents.position()) >= 0) {
+            // Keep reading until the whole file is in
+        }
+        contents.flip();
+        if (contents.remaining() < FILE_HEADER_SIZE || contents.getInt(0) != MAGIC || contents.getInt(4) != VERSION) {
+            throw new IOException("Not a game journal: " + file);
+        }
+
+        int position = FILE_HEADER_SIZE;
+        if (!isSnapshotRecord(contents, position)) {
+            throw new IOException("Journal has no valid snapshot: " + file);
+        }
+        int payload = position + 2;
+        editCount = contents.getLong(payload);
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int b = contents.get(payload + 8 + (cell >> 1));
+            values[cell] = (cell & 1) == 0 ? (b >> 4) & 0xf : b & 0xf;
+            notes[cell] = contents.getShort(payload + 8 + PackedGrid.PACKED_SIZE + 2 * cell);
+        }
+        position += RECORD_OVERHEAD + SNAPSHOT_PAYLOAD_SIZE;
+
+        tailRecordCount = 0;
+        int recordSize;
+        while ((recordSize = checkedRecordSize(contents, position)) > 0) {
+            byte type = contents.get(position);
+            int cell = contents.get(position + 2) & 0xff;
+            int value = contents.getShort(position + 3);
+            if ((type != VALUE && type != NOTES) || contents.get(position + 1) != 3 || cell >= CELL_COUNT) {
+                break;
+            }
+            (type == VALUE ? values : notes)[cell] = value;
+            editCount++;
+            tailRecordCount++;
+            position += recordSize;
+        }
+
+        endPosition = position;
+        if (position < size) {
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * @return true if snapshotFile is exactly a header and a snapshot, as written by {@link #writeSnapshotFile()}
+     */
+    private boolean isCompleteSnapshotFile(File snapshotFile) throws IOException {
+        ByteBuffer contents = ByteBuffer.allocate(FILE_HEADER_SIZE + RECORD_OVERHEAD + SNAPSHOT_PAYLOAD_SIZE);
+        try (RandomAccessFile access = new RandomAccessFile(snapshotFile, "r")) {
+            if (access.length() != contents.capacity()) {
+                return false;
+            }
+            access.readFully(contents.array());
+        }
+        return contents.getInt(0) == MAGIC && contents.getInt(4) == VERSION
+                && isSnapshotRecord(contents, FILE_HEADER_SIZE);
+    }
+
+    private boolean isSnapshotRecord(ByteBuffer contents, int position) {
+        return checkedRecordSize(contents, position) > 0 && contents.get(position) == SNAPSHOT
+                && contents.get(position + 1) == (byte) SNAPSHOT_PAYLOAD_SIZE;
+    }
+
+    /**
+     * @return the size of the record at position, or -1 if it is cut short or fails its checksum
+     */
+    private int checkedRecordSize(ByteBuffer contents, int position) {
+        if (position + RECORD_OVERHEAD > contents.limit()) {
+            return -1;
+        }
+        int recordSize = RECORD_OVERHEAD + (contents.get(position + 1) & 0xff);
+        if (position + recordSize > contents.limit()) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(contents.array(), position, recordSize - 4);
+        return (int) crc.getValue() == contents.getInt(position + recordSize - 4) ? recordSize : -1;
+    }
+}
@@ -0,0 +1,76 @@
+package org.jwatts.sudoku.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A directory of saved games, one {@link GameJournal} file per game, named by a caller-chosen game id.
+ */
+public final class GameJournalStore {
+    static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final Pattern GAME_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final File directory;
+
+    private GameJournalStore(File directory) {
+        this.directory = directory;
+    }
+
+    public static GameJournalStore open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create game directory " + directory);
+        }
+        return new GameJournalStore(directory);
+    }
+
+    /**
+     * Opens the journal of a game, starting an empty one if the game has not been saved before.
+     *
+     * @param gameId letters, digits, '_' and '-' only, since it names the journal file
+     */
+    public GameJournal open(String gameId) throws IOException {
+        return new GameJournal(journalFile(gameId), GameJournal.SNAPSHOT_INTERVAL);
+    }
+
+    public boolean contains(String gameId) {
+        return journalFile(gameId).exists();
+    }
+
+    /**
+     * Deletes a game. Its journal must have been closed.
+     *
+     * @return true if the game existed and was deleted
+     */
+    public boolean delete(String gameId) {
+        File file = journalFile(gameId);
+        // Otherwise opening the game again could recover a leftover compaction file as its journal
+        new File(file.getPath() + ".tmp").delete();
+        return file.delete();
+    }
+
+    public List<String> getGameIds() {
+        List<String> gameIds = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(JOURNAL_SUFFIX)) {
+                    gameIds.add(name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+                }
+            }
+        }
+        Collections.sort(gameIds);
+        return gameIds;
+    }
+
+    File journalFile(String gameId) {
+        if (!GAME_ID_PATTERN.matcher(gameId).matches()) {
+            throw new IllegalArgumentException("Invalid game id " + gameId);
+        }
+        return new File(directory, gameId + JOURNAL_SUFFIX);
+    }
+}
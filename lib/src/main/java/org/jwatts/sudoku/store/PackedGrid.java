@@ -0,0 +1,82 @@
+package org.jwatts.sudoku.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact encoding for 9x9 grids: one 4-bit value per square (0 for empty), two squares per byte with the earlier
+ * square in the high nibble, in the same row-major order as {@link org.jwatts.sudoku.Grid#toSerializedString()}.
+ * Methods read and write caller-supplied arrays and buffers so that bulk code never allocates per grid.
+ */
+public final class PackedGrid {
+    public static final int CELL_COUNT = 81;
+    public static final int PACKED_SIZE = (CELL_COUNT + 1) / 2;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PackedGrid() {}
+
+    /**
+     * Packs 81 ASCII digits starting at srcOffset. Any character other than '1' to '9' is packed as an empty square.
+     */
+    public static void pack(byte[] serialized, int srcOffset, byte[] dest, int destOffset) {
+        for (int i = 0; i < PACKED_SIZE; i++) {
+            int high = digitAt(serialized, srcOffset + 2 * i);
+            int low = 2 * i + 1 < CELL_COUNT ? digitAt(serialized, srcOffset + 2 * i + 1) : 0;
+            dest[destOffset + i] = (byte) ((high << 4) | low);
+        }
+    }
+
+    /**
+     * Unpacks into 81 ASCII digits starting at destOffset, using '0' for empty squares.
+     */
+    public static void unpack(byte[] packed, int srcOffset, byte[] dest, int destOffset) {
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            dest[destOffset + cell] = (byte) ('0' + valueAt(packed, srcOffset, cell));
+        }
+    }
+
+    /**
+     * Same as {@link #unpack(byte[], int, byte[], int)}, reading from an absolute position of a (possibly direct)
+     * buffer.
+     */
+    public static void unpack(ByteBuffer packed, int srcPosition, byte[] dest, int destOffset) {
+        for (int i = 0; i < PACKED_SIZE; i++) {
+            int b = packed.get(srcPosition + i);
+            dest[destOffset + 2 * i] = (byte) ('0' + ((b >> 4) & 0xf));
+            if (2 * i + 1 < CELL_COUNT) {
+                dest[destOffset + 2 * i + 1] = (byte) ('0' + (b & 0xf));
+            }
+        }
+    }
+
+    public static int valueAt(byte[] packed, int offset, int cell) {
+        int b = packed[offset + (cell >> 1)];
+        return (cell & 1) == 0 ? (b >> 4) & 0xf : b & 0xf;
+    }
+
+    /**
+     * 64-bit fingerprint of a packed grid (FNV-1a with a final avalanche step, so the low bits are usable as a hash
+     * table index).
+     */
+    public static long fingerprint(byte[] packed, int offset) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < PACKED_SIZE; i++) {
+            hash = (hash ^ (packed[offset + i] & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static int digitAt(byte[] serialized, int index) {
+        int value = serialized[index] - '0';
+        return value > 0 && value <= 9 ? value : 0;
+    }
+}
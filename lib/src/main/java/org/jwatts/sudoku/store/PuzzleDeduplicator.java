@@ -0,0 +1,398 @@
+package org.jwatts.sudoku.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming filter that passes each distinct puzzle of an arbitrarily long stream once, with memory bounded by its
+ * configuration rather than by the stream.
+ *
+ * Every puzzle is first checked against a {@link BloomFilter} sized for {@link Builder#expectedPuzzles} and
+ * {@link Builder#falsePositiveRate}. A puzzle the filter has not seen is new for certain, and is accepted without any
+ * disk access. Only when the filter answers "maybe" is the puzzle looked up exactly: in a buffer of recent puzzles,
+ * then in sorted runs that the buffer is spilled to when full (see {@link SortedPuzzleRun}). Runs are merged eight at
+ * a time into bigger runs, so a lookup reads at most a few blocks per size tier.
+ *
+ * Memory use is the filter (about 1.2 bytes per expected puzzle at a 1% false positive rate), the buffer (about 60
+ * bytes per buffered puzzle), and 8 bytes per 64 spilled puzzles for the run indexes. Optionally, puzzles are reduced
+ * to a canonical form first (see {@link SymmetryCanonicalizer}), so that relabeled, transposed, or band or stack
+ * swapped copies of a puzzle count as duplicates.
+ *
+ * Not thread safe.
+ */
+public final class PuzzleDeduplicator implements Closeable {
+    public static final long DEFAULT_EXPECTED_PUZZLES = 10000000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 18;
+
+    static final int MERGE_FACTOR = 8;
+
+    private final File spillDirectory;
+    private final BloomFilter filter;
+    private final SymmetryCanonicalizer canonicalizer;
+    private final byte[] serialized = new byte[PackedGrid.CELL_COUNT];
+    private final byte[] canonical = new byte[PackedGrid.CELL_COUNT];
+    private final byte[] packed = new byte[PackedGrid.PACKED_SIZE];
+
+    // Buffered puzzles, with an open-addressing table of buffer index + 1, 0 marking an empty slot
+    private final int bufferCapacity;
+    private final long[] bufferFingerprints;
+    private final byte[] bufferPuzzles;
+    private final int[] bufferSlots;
+    private final int[] spillOrder;
+    private int bufferSize;
+
+    private final List<SortedPuzzleRun> runs = new ArrayList<>();
+    private int nextRunNumber;
+
+    private long recordCount;
+    private long duplicateCount;
+    private long filterNegativeCount;
+    private long falsePositiveCount;
+    private long spilledCount;
+
+    private PuzzleDeduplicator(Builder builder) throws IOException {
+        spillDirectory = builder.spillDirectory;
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IOException("Could not create spill directory " + spillDirectory);
+        }
+        filter = new BloomFilter(builder.expectedPuzzles, builder.falsePositiveRate);
+        canonicalizer = builder.isCanonicalizing ? new SymmetryCanonicalizer() : null;
+
+        bufferCapacity = builder.bufferSize;
+        bufferFingerprints = new long[bufferCapacity];
+        bufferPuzzles = new byte[bufferCapacity * PackedGrid.PACKED_SIZE];
+        bufferSlots = new int[Integer.highestOneBit(bufferCapacity) * 4];
+        spillOrder = new int[bufferCapacity];
+    }
+
+    /**
+     * @param spillDirectory where runs are written while deduplicating; they are deleted on {@link #close()}
+     */
+    public static Builder builder(File spillDirectory) {
+        return new Builder(spillDirectory);
+    }
+
+    /**
+     * @param serialized 81 ASCII characters starting at offset, as in
+     *        {@link org.jwatts.sudoku.Grid#toSerializedString()}
+     * @return true if the puzzle has not been added before
+     */
+    public boolean add(byte[] serialized, int offset) throws IOException {
+        recordCount++;
+        if (canonicalizer != null) {
+            canonicalizer.canonicalize(serialized, offset, canonical, 0);
+            PackedGrid.pack(canonical, 0, packed, 0);
+        } else {
+            PackedGrid.pack(serialized, offset, packed, 0);
+        }
+        long fingerprint = PackedGrid.fingerprint(packed, 0);
+
+        if (!filter.mightContain(fingerprint)) {
+            filterNegativeCount++;
+        } else if (bufferContains(fingerprint) || runsContain(fingerprint)) {
+            duplicateCount++;
+            return false;
+        } else {
+            falsePositiveCount++;
+        }
+        filter.put(fingerprint);
+        addToBuffer(fingerprint);
+        return true;
+    }
+
+    public boolean add(CharSequence puzzle) throws IOException {
+        if (puzzle.length() != PackedGrid.CELL_COUNT) {
+            throw new IllegalArgumentException("Puzzle must have " + PackedGrid.CELL_COUNT + " characters");
+        }
+        for (int i = 0; i < PackedGrid.CELL_COUNT; i++) {
+            serialized[i] = (byte) puzzle.charAt(i);
+        }
+        return add(serialized, 0);
+    }
+
+    public Stats getStats() {
+        return new Stats(recordCount, duplicateCount, filterNegativeCount, falsePositiveCount,
+                filter.expectedFalsePositiveRate(recordCount - duplicateCount), spilledCount, runs.size());
+    }
+
+    /**
+     * Deletes the spilled runs.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (SortedPuzzleRun run : runs) {
+            try {
+                run.delete();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private boolean bufferContains(long fingerprint) {
+        int mask = bufferSlots.length - 1;
+        for (int slot = (int) fingerprint & mask; bufferSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = bufferSlots[slot] - 1;
+            if (bufferFingerprints[entry] == fingerprint && isBuffered(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBuffered(int entry) {
+        int offset = entry * PackedGrid.PACKED_SIZE;
+        for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+            if (bufferPuzzles[offset + i] != packed[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean runsContain(long fingerprint) throws IOException {
+        for (SortedPuzzleRun run : runs) {
+            if (run.contains(fingerprint, packed, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addToBuffer(long fingerprint) throws IOException {
+        int entry = bufferSize++;
+        bufferFingerprints[entry] = fingerprint;
+        System.arraycopy(packed, 0, bufferPuzzles, entry * PackedGrid.PACKED_SIZE, PackedGrid.PACKED_SIZE);
+        int mask = bufferSlots.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (bufferSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        bufferSlots[slot] = entry + 1;
+
+        if (bufferSize == bufferCapacity) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        for (int i = 0; i < bufferSize; i++) {
+            spillOrder[i] = i;
+        }
+        sortByFingerprint(0, bufferSize - 1);
+        runs.add(SortedPuzzleRun.write(nextRunFile(), 0, bufferFingerprints, bufferPuzzles, spillOrder, bufferSize));
+        spilledCount += bufferSize;
+        bufferSize = 0;
+        Arrays.fill(bufferSlots, 0);
+
+        for (int tier = 0; mergeTier(tier); tier++) {
+            // Each merge may fill up the next tier
+        }
+    }
+
+    /**
+     * @return true if the tier had {@link #MERGE_FACTOR} runs, which were merged into one run of the next tier
+     */
+    private boolean mergeTier(int tier) throws IOException {
+        List<SortedPuzzleRun> tierRuns = new ArrayList<>();
+        for (SortedPuzzleRun run : runs) {
+            if (run.getTier() == tier) {
+                tierRuns.add(run);
+            }
+        }
+        if (tierRuns.size() < MERGE_FACTOR) {
+            return false;
+        }
+        SortedPuzzleRun merged = SortedPuzzleRun.merge(tierRuns, nextRunFile(), tier + 1);
+        runs.removeAll(tierRuns);
+        runs.add(merged);
+        for (SortedPuzzleRun run : tierRuns) {
+            run.delete();
+        }
+        return true;
+    }
+
+    private File nextRunFile() {
+        return new File(spillDirectory, "run-" + nextRunNumber++ + ".dat");
+    }
+
+    private void sortByFingerprint(int low, int high) {
+        while (high - low > 16) {
+            long pivot = bufferFingerprints[spillOrder[(low + high) >>> 1]];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (bufferFingerprints[spillOrder[i]] < pivot) {
+                    i++;
+                }
+                while (bufferFingerprints[spillOrder[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = spillOrder[i];
+                    spillOrder[i++] = spillOrder[j];
+                    spillOrder[j--] = swap;
+                }
+            }
+            // Recurse into the smaller side to bound the stack depth
+            if (j - low < high - i) {
+                sortByFingerprint(low, j);
+                low = i;
+            } else {
+                sortByFingerprint(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            int entry = spillOrder[i];
+            long key = bufferFingerprints[entry];
+            int j = i - 1;
+            while (j >= low && bufferFingerprints[spillOrder[j]] > key) {
+                spillOrder[j + 1] = spillOrder[j];
+                j--;
+            }
+            spillOrder[j + 1] = entry;
+        }
+    }
+
+    public static final class Builder {
+        private final File spillDirectory;
+        private long expectedPuzzles = DEFAULT_EXPECTED_PUZZLES;
+        private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private boolean isCanonicalizing;
+
+        private Builder(File spillDirectory) {
+            this.spillDirectory = spillDirectory;
+        }
+
+        /**
+         * Sizes the filter. More distinct puzzles than this still deduplicate exactly, but more of them go to disk.
+         */
+        public Builder expectedPuzzles(long expectedPuzzles) {
+            if (expectedPuzzles < 1) {
+                throw new IllegalArgumentException("Expected puzzle count must be positive");
+            }
+            this.expectedPuzzles = expectedPuzzles;
+            return this;
+        }
+
+        /**
+         * @param falsePositiveRate the fraction of new puzzles that the filter lets through to an exact lookup
+         */
+        public Builder falsePositiveRate(double falsePositiveRate) {
+            if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+                throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+            }
+            this.falsePositiveRate = falsePositiveRate;
+            return this;
+        }
+
+        /**
+         * @param bufferSize how many new puzzles to hold in memory before spilling them to a run
+         */
+        public Builder bufferSize(int bufferSize) {
+            if (bufferSize < 1 || bufferSize > 1 << 26) {
+                throw new IllegalArgumentException("Buffer size must be between 1 and " + (1 << 26));
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder canonicalize(boolean isCanonicalizing) {
+            this.isCanonicalizing = isCanonicalizing;
+            return this;
+        }
+
+        public PuzzleDeduplicator build() throws IOException {
+            return new PuzzleDeduplicator(this);
+        }
+    }
+
+    public static final class Stats {
+        private final long recordCount;
+        private final long duplicateCount;
+        private final long filterNegativeCount;
+        private final long falsePositiveCount;
+        private final double expectedFalsePositiveRate;
+        private final long spilledCount;
+        private final int runCount;
+
+        Stats(long recordCount, long duplicateCount, long filterNegativeCount, long falsePositiveCount,
+                double expectedFalsePositiveRate, long spilledCount, int runCount) {
+            this.recordCount = recordCount;
+            this.duplicateCount = duplicateCount;
+            this.filterNegativeCount = filterNegativeCount;
+            this.falsePositiveCount = falsePositiveCount;
+            this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+            this.spilledCount = spilledCount;
+            this.runCount = runCount;
+        }
+
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        public long getUniqueCount() {
+            return recordCount - duplicateCount;
+        }
+
+        public long getDuplicateCount() {
+            return duplicateCount;
+        }
+
+        /**
+         * @return the number of puzzles the filter accepted as new without an exact lookup
+         */
+        public long getFilterNegativeCount() {
+            return filterNegativeCount;
+        }
+
+        /**
+         * @return the number of new puzzles the filter flagged as possible duplicates
+         */
+        public long getFalsePositiveCount() {
+            return falsePositiveCount;
+        }
+
+        /**
+         * @return the fraction of new puzzles that needed an exact lookup
+         */
+        public double getFalsePositiveRate() {
+            long uniqueCount = getUniqueCount();
+            return uniqueCount == 0 ? 0 : (double) falsePositiveCount / uniqueCount;
+        }
+
+        /**
+         * @return the false positive rate the filter should give at its current fill
+         */
+        public double getExpectedFalsePositiveRate() {
+            return expectedFalsePositiveRate;
+        }
+
+        public long getSpilledCount() {
+            return spilledCount;
+        }
+
+        public int getRunCount() {
+            return runCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d unique of %d, %d duplicates, %.4f%% false positives (expected %.4f%%), "
+                    + "%d spilled to %d runs", getUniqueCount(), recordCount, duplicateCount,
+                    100 * getFalsePositiveRate(), 100 * expectedFalsePositiveRate, spilledCount, runCount);
+        }
+    }
+}
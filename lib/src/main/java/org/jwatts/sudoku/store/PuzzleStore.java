@@ -0,0 +1,342 @@
+package org.jwatts.sudoku.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deduplicated, memory-mapped store of puzzles and their solutions, meant for corpora far too large to hold as
+ * {@link org.jwatts.sudoku.Grid}s or Strings on the heap.
+ *
+ * The store is a directory with two files. The records file is an append-only array of fixed-size records (a packed
+ * puzzle followed by a packed solution, see {@link PackedGrid}) after a small header holding the record count. The
+ * index file is an open-addressing hash table of (fingerprint, record number + 1) slots, with 0 marking an empty
+ * slot. Both are mapped in segments, so reopening a store only maps the files again, and lookups and inserts read and
+ * write the mapped pages directly without allocating per record.
+ *
+ * Not thread safe; a store should have a single owner, which may hand out record numbers to other threads.
+ */
+public final class PuzzleStore implements Closeable {
+    static final String RECORDS_FILE_NAME = "puzzles.dat";
+    static final String INDEX_FILE_NAME = "puzzles.idx";
+
+    private static final int MAGIC = 0x53554450;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+
+    static final int RECORD_SIZE = 2 * PackedGrid.PACKED_SIZE;
+    private static final int SOLUTION_OFFSET = PackedGrid.PACKED_SIZE;
+    private static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 18;
+
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOTS_PER_SEGMENT_SHIFT = 22;
+    private static final long DEFAULT_INDEX_CAPACITY = 1 << 16;
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final FileChannel recordsChannel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> recordSegments = new ArrayList<>();
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer[] indexSegments;
+    private long indexCapacity;
+    private long count;
+
+    // Scratch space for packing the grids passed in, so lookups and inserts do not allocate
+    private final byte[] packedPuzzle = new byte[PackedGrid.PACKED_SIZE];
+    private final byte[] packedSolution = new byte[PackedGrid.PACKED_SIZE];
+
+    PuzzleStore(File directory, long expectedEntries, int recordsPerSegment) throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create store directory " + directory);
+        }
+
+        recordsChannel = new RandomAccessFile(new File(directory, RECORDS_FILE_NAME), "rw").getChannel();
+        boolean isNew = recordsChannel.size() == 0;
+        header = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (isNew) {
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            header.putLong(COUNT_OFFSET, 0);
+        } else if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            recordsChannel.close();
+            throw new IOException("Not a puzzle store: " + directory);
+        }
+        count = header.getLong(COUNT_OFFSET);
+
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        long existingIndexCapacity = indexFile.length() / SLOT_SIZE;
+        if (existingIndexCapacity > count) {
+            indexChannel = new RandomAccessFile(indexFile, "rw").getChannel();
+            indexCapacity = existingIndexCapacity;
+            indexSegments = mapIndex(indexChannel, indexCapacity);
+        } else {
+            // New store, or the index was lost (e.g. a crash while growing it), so build it from the records
+            rebuildIndex(capacityFor(Math.max(expectedEntries, count)));
+        }
+    }
+
+    public static PuzzleStore open(File directory) throws IOException {
+        return open(directory, DEFAULT_INDEX_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedEntries sizes the index of a new store up front, to avoid growing it while loading a corpus
+     */
+    public static PuzzleStore open(File directory, long expectedEntries) throws IOException {
+        return new PuzzleStore(directory, expectedEntries, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @param puzzle 81 ASCII digits starting at offset, as in {@link org.jwatts.sudoku.Grid#toSerializedString()}
+     * @return the record number of the puzzle, or -1 if it is not in the store
+     */
+    public long find(byte[] puzzle, int offset) {
+        PackedGrid.pack(puzzle, offset, packedPuzzle, 0);
+        long result = probe(PackedGrid.fingerprint(packedPuzzle, 0));
+        return result >= 0 ? result : -1;
+    }
+
+    /**
+     * Appends the puzzle unless it is already stored.
+     *
+     * @param solution 81 ASCII digits starting at solutionOffset, or null if the solution is not known yet
+     * @return the record number of the new or existing record
+     */
+    public long insert(byte[] puzzle, int puzzleOffset, byte[] solution, int solutionOffset) throws IOException {
+        PackedGrid.pack(puzzle, puzzleOffset, packedPuzzle, 0);
+        long fingerprint = PackedGrid.fingerprint(packedPuzzle, 0);
+        long result = probe(fingerprint);
+        if (result >= 0) {
+            return result;
+        }
+
+        // Keep the index at most 3/4 full so probe sequences stay short
+        if ((count + 1) * 4 > indexCapacity * 3) {
+            rebuildIndex(indexCapacity * 2);
+            result = probe(fingerprint);
+        }
+
+        long record = count;
+        ByteBuffer segment = recordSegment(record);
+        int position = recordPosition(record);
+        for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+            segment.put(position + i, packedPuzzle[i]);
+        }
+        writeSolution(segment, position, solution, solutionOffset);
+
+        // Record first, then its slot, then the count: after a crash the store never points at a half-written record
+        writeSlot(-1 - result, fingerprint, record);
+        count++;
+        header.putLong(COUNT_OFFSET, count);
+        return record;
+    }
+
+    public void readPuzzle(long record, byte[] dest, int offset) {
+        checkRecord(record);
+        PackedGrid.unpack(recordSegment(record), recordPosition(record), dest, offset);
+    }
+
+    /**
+     * @return false, leaving dest untouched, if no solution has been stored for this record
+     */
+    public boolean readSolution(long record, byte[] dest, int offset) {
+        checkRecord(record);
+        ByteBuffer segment = recordSegment(record);
+        int position = recordPosition(record) + SOLUTION_OFFSET;
+        boolean hasSolution = false;
+        for (int i = 0; i < PackedGrid.PACKED_SIZE && !hasSolution; i++) {
+            hasSolution = segment.get(position + i) != 0;
+        }
+        if (hasSolution) {
+            PackedGrid.unpack(segment, position, dest, offset);
+        }
+        return hasSolution;
+    }
+
+    public void setSolution(long record, byte[] solution, int offset) {
+        checkRecord(record);
+        writeSolution(recordSegment(record), recordPosition(record), solution, offset);
+    }
+
+    /**
+     * Forces all mapped changes to disk.
+     */
+    public void flush() {
+        header.force();
+        for (MappedByteBuffer segment : recordSegments) {
+            segment.force();
+        }
+        for (MappedByteBuffer segment : indexSegments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        recordsChannel.close();
+        indexChannel.close();
+    }
+
+    private void writeSolution(ByteBuffer segment, int recordPosition, byte[] solution, int offset) {
+        if (solution != null) {
+            PackedGrid.pack(solution, offset, packedSolution, 0);
+        }
+        for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+            segment.put(recordPosition + SOLUTION_OFFSET + i, solution != null ? packedSolution[i] : 0);
+        }
+    }
+
+    /**
+     * Linear probing for the puzzle in {@link #packedPuzzle}.
+     *
+     * @return the record number if found, otherwise -1 - (index of the empty slot that ended the probe)
+     */
+    private long probe(long fingerprint) {
+        long mask = indexCapacity - 1;
+        for (long slot = fingerprint & mask; ; slot = (slot + 1) & mask) {
+            ByteBuffer segment = indexSegments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+            int position = slotPosition(slot);
+            long recordRef = segment.getLong(position + 8);
+            // Slots pointing past the record count were written just before a crash, treat them as empty
+            if (recordRef == 0 || recordRef > count) {
+                return -1 - slot;
+            }
+            if (segment.getLong(position) == fingerprint && puzzleEquals(recordRef - 1)) {
+                return recordRef - 1;
+            }
+        }
+    }
+
+    private boolean puzzleEquals(long record) {
+        ByteBuffer segment = recordSegment(record);
+        int position = recordPosition(record);
+        for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+            if (segment.get(position + i) != packedPuzzle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeSlot(long slot, long fingerprint, long record) {
+        writeSlot(indexSegments, slot, fingerprint, record);
+    }
+
+    private static void writeSlot(ByteBuffer[] segments, long slot, long fingerprint, long record) {
+        ByteBuffer segment = segments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+        int position = slotPosition(slot);
+        segment.putLong(position, fingerprint);
+        segment.putLong(position + 8, record + 1);
+    }
+
+    /**
+     * Builds a fresh index of the given capacity from the records, in a temporary file that then replaces the index
+     * file. Used both to grow the index and to recover a store whose index file is missing.
+     */
+    private void rebuildIndex(long capacity) throws IOException {
+        File tempFile = new File(directory, INDEX_FILE_NAME + ".tmp");
+        if (tempFile.exists() && !tempFile.delete()) {
+            throw new IOException("Could not delete " + tempFile);
+        }
+
+        FileChannel newChannel = new RandomAccessFile(tempFile, "rw").getChannel();
+        MappedByteBuffer[] newSegments = mapIndex(newChannel, capacity);
+        long mask = capacity - 1;
+        // Not packedPuzzle: insert grows the index while it still holds the puzzle being inserted
+        byte[] recordPuzzle = new byte[PackedGrid.PACKED_SIZE];
+        for (long record = 0; record < count; record++) {
+            ByteBuffer segment = recordSegment(record);
+            int position = recordPosition(record);
+            for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+                recordPuzzle[i] = segment.get(position + i);
+            }
+            long fingerprint = PackedGrid.fingerprint(recordPuzzle, 0);
+            long slot = fingerprint & mask;
+            while (newSegments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)].getLong(slotPosition(slot) + 8) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            writeSlot(newSegments, slot, fingerprint, record);
+        }
+        for (MappedByteBuffer segment : newSegments) {
+            segment.force();
+        }
+
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        if (!tempFile.renameTo(new File(directory, INDEX_FILE_NAME))) {
+            newChannel.close();
+            throw new IOException("Could not replace index file in " + directory);
+        }
+        indexChannel = newChannel;
+        indexSegments = newSegments;
+        indexCapacity = capacity;
+    }
+
+    private static MappedByteBuffer[] mapIndex(FileChannel channel, long capacity) throws IOException {
+        long slotsPerSegment = Math.min(capacity, 1L << SLOTS_PER_SEGMENT_SHIFT);
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) (capacity / slotsPerSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            long segmentSize = slotsPerSegment * SLOT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentSize, segmentSize);
+        }
+        return segments;
+    }
+
+    private static int slotPosition(long slot) {
+        return (int) (slot & ((1L << SLOTS_PER_SEGMENT_SHIFT) - 1)) * SLOT_SIZE;
+    }
+
+    /**
+     * Smallest power of two that keeps the given number of entries under 3/4 load.
+     */
+    private static long capacityFor(long entries) {
+        long capacity = DEFAULT_INDEX_CAPACITY;
+        while (capacity * 3 < (entries + 1) * 4) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private ByteBuffer recordSegment(long record) {
+        int segmentIndex = (int) (record / recordsPerSegment);
+        try {
+            while (recordSegments.size() <= segmentIndex) {
+                long segmentSize = (long) recordsPerSegment * RECORD_SIZE;
+                long position = HEADER_SIZE + recordSegments.size() * segmentSize;
+                recordSegments.add(recordsChannel.map(FileChannel.MapMode.READ_WRITE, position, segmentSize));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map records segment " + segmentIndex + " of " + directory, e);
+        }
+        return recordSegments.get(segmentIndex);
+    }
+
+    private int recordPosition(long record) {
+        return (int) (record % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private void checkRecord(long record) {
+        if (record < 0 || record >= count) {
+            throw new IndexOutOfBoundsException("No record " + record + " in store of size " + count);
+        }
+    }
+}
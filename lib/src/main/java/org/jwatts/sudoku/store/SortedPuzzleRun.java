@@ -0,0 +1,220 @@
+package org.jwatts.sudoku.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An immutable file of packed puzzles sorted by fingerprint, as spilled by {@link PuzzleDeduplicator}. Each record is
+ * the fingerprint followed by the packed puzzle. Only every {@link #INDEX_INTERVAL}th fingerprint is kept in memory,
+ * so a lookup reads a single block of records from the file.
+ *
+ * Runs hold distinct puzzles, and are merged into bigger runs with {@link #merge}.
+ */
+final class SortedPuzzleRun implements Closeable {
+    static final int RECORD_SIZE = 8 + PackedGrid.PACKED_SIZE;
+    static final int INDEX_INTERVAL = 64;
+
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final int tier;
+    private final long recordCount;
+    private final long[] sparseIndex;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(INDEX_INTERVAL * RECORD_SIZE);
+
+    private SortedPuzzleRun(File file, int tier, long recordCount, long[] sparseIndex) throws IOException {
+        this.file = file;
+        this.tier = tier;
+        this.recordCount = recordCount;
+        this.sparseIndex = sparseIndex;
+        raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+    }
+
+    /**
+     * Writes count puzzles to a new run, in the order given by order, which must sort them by fingerprint.
+     */
+    static SortedPuzzleRun write(File file, int tier, long[] fingerprints, byte[] packed, int[] order, int count)
+            throws IOException {
+        long[] sparseIndex = new long[(count + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+        try (DataOutputStream out = openOutput(file)) {
+            for (int i = 0; i < count; i++) {
+                int entry = order[i];
+                if (i % INDEX_INTERVAL == 0) {
+                    sparseIndex[i / INDEX_INTERVAL] = fingerprints[entry];
+                }
+                out.writeLong(fingerprints[entry]);
+                out.write(packed, entry * PackedGrid.PACKED_SIZE, PackedGrid.PACKED_SIZE);
+            }
+        }
+        return new SortedPuzzleRun(file, tier, count, sparseIndex);
+    }
+
+    /**
+     * Merges the runs into a new run at the given tier. The merged runs are left open; the caller deletes them.
+     */
+    static SortedPuzzleRun merge(List<SortedPuzzleRun> runs, File file, int tier) throws IOException {
+        long total = 0;
+        for (SortedPuzzleRun run : runs) {
+            total += run.recordCount;
+        }
+        if (total / INDEX_INTERVAL >= Integer.MAX_VALUE) {
+            throw new IOException("Run of " + total + " puzzles is too large");
+        }
+        long[] sparseIndex = new long[(int) ((total + INDEX_INTERVAL - 1) / INDEX_INTERVAL)];
+
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(runs.size());
+        try (DataOutputStream out = openOutput(file)) {
+            for (SortedPuzzleRun run : runs) {
+                Cursor cursor = new Cursor(run.file);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            long written = 0;
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                if (written % INDEX_INTERVAL == 0) {
+                    sparseIndex[(int) (written / INDEX_INTERVAL)] = cursor.fingerprint;
+                }
+                out.writeLong(cursor.fingerprint);
+                out.write(cursor.packed);
+                written++;
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        return new SortedPuzzleRun(file, tier, total, sparseIndex);
+    }
+
+    int getTier() {
+        return tier;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    boolean contains(long fingerprint, byte[] packed, int offset) throws IOException {
+        // Records with this fingerprint can start in the block before the first indexed one that is not smaller
+        int blockIndex = Math.max(0, lowerBound(fingerprint) - 1);
+        for (; blockIndex < sparseIndex.length && sparseIndex[blockIndex] <= fingerprint; blockIndex++) {
+            long firstRecord = (long) blockIndex * INDEX_INTERVAL;
+            int records = (int) Math.min(INDEX_INTERVAL, recordCount - firstRecord);
+            readBlock(firstRecord, records);
+            for (int i = 0; i < records; i++) {
+                int position = i * RECORD_SIZE;
+                long recordFingerprint = block.getLong(position);
+                if (recordFingerprint > fingerprint) {
+                    return false;
+                }
+                if (recordFingerprint == fingerprint && matches(position + 8, packed, offset)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Could not delete " + file);
+        }
+    }
+
+    private int lowerBound(long fingerprint) {
+        int low = 0;
+        int high = sparseIndex.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sparseIndex[mid] < fingerprint) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void readBlock(long firstRecord, int records) throws IOException {
+        block.clear();
+        block.limit(records * RECORD_SIZE);
+        long position = firstRecord * RECORD_SIZE;
+        while (block.hasRemaining()) {
+            int read = channel.read(block, position + block.position());
+            if (read < 0) {
+                throw new EOFException("Run " + file + " is truncated");
+            }
+        }
+    }
+
+    private boolean matches(int position, byte[] packed, int offset) {
+        for (int i = 0; i < PackedGrid.PACKED_SIZE; i++) {
+            if (block.get(position + i) != packed[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER_SIZE));
+    }
+
+    private static final class Cursor implements Comparable<Cursor>, Closeable {
+        private final DataInputStream in;
+        private final byte[] packed = new byte[PackedGrid.PACKED_SIZE];
+        private long fingerprint;
+
+        Cursor(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), STREAM_BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                fingerprint = in.readLong();
+            } catch (EOFException e) {
+                close();
+                return false;
+            }
+            in.readFully(packed);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(fingerprint, other.fingerprint);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
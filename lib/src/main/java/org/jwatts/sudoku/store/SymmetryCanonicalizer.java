@@ -0,0 +1,103 @@
+package org.jwatts.sudoku.store;
+
+/**
+ * Maps puzzles that are the same up to some of the sudoku symmetries onto one canonical form, so a deduplicator can
+ * treat them as one puzzle. The symmetries covered are transposition, permuting the three bands, permuting the three
+ * stacks, and relabeling the digits: 72 cell layouts, each with its digits renumbered in order of first appearance,
+ * of which the lexicographically smallest is the canonical form.
+ *
+ * Swapping rows within a band or columns within a stack is not covered; including it would multiply the layouts to
+ * check by 46656. Puzzles that only match through such swaps are therefore still counted as distinct.
+ *
+ * Not thread safe; use one instance per thread.
+ */
+public final class SymmetryCanonicalizer {
+    private static final int ROW_COL_LENGTH = 9;
+    private static final int CELL_COUNT = PackedGrid.CELL_COUNT;
+    private static final int[][] BLOCK_PERMUTATIONS = {
+            { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 }, { 1, 2, 0 }, { 2, 0, 1 }, { 2, 1, 0 },
+    };
+
+    // For each layout, the source square of each square of the transformed grid
+    private static final int[][] LAYOUTS = buildLayouts();
+
+    private final int[] values = new int[CELL_COUNT];
+    private final int[] best = new int[CELL_COUNT];
+    private final int[] candidate = new int[CELL_COUNT];
+    private final int[] labels = new int[ROW_COL_LENGTH + 1];
+
+    /**
+     * Reads 81 ASCII digits at srcOffset and writes the canonical form as 81 ASCII digits at destOffset; any
+     * character other than '1' to '9' is an empty square, as in {@link PackedGrid#pack}.
+     */
+    public void canonicalize(byte[] serialized, int srcOffset, byte[] dest, int destOffset) {
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int value = serialized[srcOffset + cell] - '0';
+            values[cell] = value > 0 && value <= ROW_COL_LENGTH ? value : 0;
+        }
+
+        boolean hasBest = false;
+        for (int[] layout : LAYOUTS) {
+            if (relabel(layout, hasBest)) {
+                System.arraycopy(candidate, 0, best, 0, CELL_COUNT);
+                hasBest = true;
+            }
+        }
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            dest[destOffset + cell] = (byte) ('0' + best[cell]);
+        }
+    }
+
+    /**
+     * Renumbers the digits of the layout into candidate, stopping early once it is known to be bigger than best.
+     *
+     * @return true if candidate is smaller than best, or there is no best yet
+     */
+    private boolean relabel(int[] layout, boolean hasBest) {
+        for (int value = 1; value <= ROW_COL_LENGTH; value++) {
+            labels[value] = 0;
+        }
+        int nextLabel = 1;
+        boolean isSmaller = !hasBest;
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int value = values[layout[cell]];
+            int label = 0;
+            if (value != 0) {
+                if (labels[value] == 0) {
+                    labels[value] = nextLabel++;
+                }
+                label = labels[value];
+            }
+            candidate[cell] = label;
+            if (!isSmaller) {
+                if (label > best[cell]) {
+                    return false;
+                }
+                isSmaller = label < best[cell];
+            }
+        }
+        return isSmaller;
+    }
+
+    private static int[][] buildLayouts() {
+        int[][] layouts = new int[2 * BLOCK_PERMUTATIONS.length * BLOCK_PERMUTATIONS.length][CELL_COUNT];
+        int layout = 0;
+        for (int transpose = 0; transpose < 2; transpose++) {
+            for (int[] bands : BLOCK_PERMUTATIONS) {
+                for (int[] stacks : BLOCK_PERMUTATIONS) {
+                    for (int row = 0; row < ROW_COL_LENGTH; row++) {
+                        for (int col = 0; col < ROW_COL_LENGTH; col++) {
+                            int sourceRow = bands[row / 3] * 3 + row % 3;
+                            int sourceCol = stacks[col / 3] * 3 + col % 3;
+                            layouts[layout][row * ROW_COL_LENGTH + col] = transpose == 0
+                                    ? sourceRow * ROW_COL_LENGTH + sourceCol
+                                    : sourceCol * ROW_COL_LENGTH + sourceRow;
+                        }
+                    }
+                    layout++;
+                }
+            }
+        }
+        return layouts;
+    }
+}
@@ -0,0 +1,87 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConflictIndexTest {
+    @Test
+    public void testUnitValueCounts() {
+        Grid grid = new Grid();
+        ConflictIndex underTest = grid.getConflictIndex();
+        grid.setSquareValueAt(4, 5, 7);
+
+        assertEquals(1, underTest.getRowValueCount(4, 7));
+        assertEquals(1, underTest.getColumnValueCount(5, 7));
+        assertEquals(1, underTest.getBlockValueCount(4, 7));
+        assertEquals(0, underTest.getBlockValueCount(5, 7));
+
+        grid.setSquareValueAt(4, 5, 0);
+        assertEquals(0, underTest.getRowValueCount(4, 7));
+        assertFalse(underTest.isContradictory());
+    }
+
+    @Test
+    public void testDuplicates() {
+        Grid grid = new Grid();
+        ConflictIndex underTest = grid.getConflictIndex();
+        grid.setSquareValueAt(0, 0, 3);
+        grid.setSquareValueAt(0, 8, 3);
+        assertTrue(underTest.hasDuplicates());
+
+        grid.setSquareValueAt(0, 8, 4);
+        assertFalse(underTest.hasDuplicates());
+    }
+
+    @Test
+    public void testDeadSquares() {
+        Grid grid = new Grid();
+        ConflictIndex underTest = grid.getConflictIndex();
+        // Square (0, 0) sees 1-8 in its row and 9 in its column
+        for (int col = 1; col < 9; col++) {
+            grid.setSquareValueAt(0, col, col);
+        }
+        assertEquals(0, underTest.getDeadSquareCount());
+        grid.setSquareValueAt(5, 0, 9);
+        assertEquals(1, underTest.getDeadSquareCount());
+        assertTrue(underTest.isContradictory());
+        assertTrue(grid.getSquares()[0][0].isDead());
+
+        grid.setSquareValueAt(5, 0, 0);
+        assertEquals(0, underTest.getDeadSquareCount());
+    }
+
+    @Test
+    public void testMissingValues() {
+        Grid grid = new Grid();
+        ConflictIndex underTest = grid.getConflictIndex();
+        // Every square of row 0 but (0, 8) sees a 5 in its column, and (0, 8) holds a 1
+        int[][] fives = { { 1, 0 }, { 2, 3 }, { 3, 1 }, { 4, 4 }, { 5, 6 }, { 6, 2 }, { 7, 5 }, { 8, 7 } };
+        for (int[] square : fives) {
+            grid.setSquareValueAt(square[0], square[1], 5);
+        }
+        assertFalse(underTest.isContradictory());
+        grid.setSquareValueAt(0, 8, 1);
+
+        // No place for the 5 in row 0, column 8, or the top right block, yet no square is dead
+        assertEquals(3, underTest.getMissingValueCount());
+        assertEquals(0, underTest.getDeadSquareCount());
+        assertTrue(underTest.isContradictory());
+        assertFalse(grid.solve());
+
+        grid.setSquareValueAt(0, 8, 0);
+        assertEquals(0, underTest.getMissingValueCount());
+        assertFalse(underTest.isContradictory());
+    }
+
+    @Test
+    public void testSolve_rejectsInvalidPuzzleUpFront() {
+        Grid grid = Grid.fromSerializedString(
+                "066007300018009050500000064920080000000763000000090075630000008090300520002400600");
+        int filledCount = grid.getFilledInSquareCount();
+        assertFalse(grid.solve());
+        assertEquals(filledCount, grid.getFilledInSquareCount());
+    }
+}
@@ -0,0 +1,118 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConstraintModelTest {
+    @Test
+    public void testSolve_diagonalSudoku() {
+        String puzzle = "000460027500008600000027080000001000900000200000300050040605000000000400010000000";
+        ConstraintModel model = ConstraintModel.builder().withDiagonals().build();
+        assertEquals(29, model.getUnitCount());
+
+        assertSolvesOnlyWithModel(model, puzzle,
+                "891463527572198643634527981457281369983756214126349758348675192769812435215934876");
+    }
+
+    @Test
+    public void testSolve_jigsawSudoku() {
+        String layout = "000111222000111222000144222333114555333444555336474555636478888666777778666778888";
+        int[] regionOfCell = new int[81];
+        for (int cell = 0; cell < regionOfCell.length; cell++) {
+            regionOfCell[cell] = layout.charAt(cell) - '0';
+        }
+        ConstraintModel model = ConstraintModel.builder().withJigsawRegions(regionOfCell).build();
+
+        assertSolvesOnlyWithModel(model,
+                "000003500570000040000020000000070000000000080000000015000000004083000060710340800",
+                "891463527572198643634527198958271436147635289326984715265819374483752961719346852");
+    }
+
+    @Test
+    public void testSolve_killerCages() {
+        String solution = "891463527572198643634527981457281369913746258268935714125879436746312895389654172";
+        ConstraintModel.Builder builder = ConstraintModel.builder();
+        // Horizontal dominoes over the first eight columns, vertical dominoes down the last one
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 8; col += 2) {
+                addCage(builder, solution, row * 9 + col, row * 9 + col + 1);
+            }
+        }
+        for (int row = 0; row < 8; row += 2) {
+            addCage(builder, solution, row * 9 + 8, (row + 1) * 9 + 8);
+        }
+        addCage(builder, solution, 80);
+        ConstraintModel model = builder.build();
+        assertEquals(41, model.getCageCount());
+
+        assertSolvesOnlyWithModel(model,
+                "000000020070008000000000080000000060000040000000000700020000000000000000000000000", solution);
+    }
+
+    @Test
+    public void testSolutionEnumerator_everySolutionMeetsCageSums() {
+        String solution = "891463527572198643634527981457281369913746258268935714125879436746312895389654172";
+        ConstraintModel.Builder builder = ConstraintModel.builder();
+        for (int cell : new int[] { 0, 9, 21, 27, 51, 54 }) {
+            addCage(builder, solution, cell, cell + 1, cell + 2);
+        }
+        ConstraintModel model = builder.build();
+
+        // Several solutions, some found with a cage completed in the last propagation pass
+        List<String> solutions = StreamSupport.stream(new SolutionEnumerator(model,
+                "091003000572000600030020900057081000003046000200005000000870406740002095380604002"), false)
+                .collect(Collectors.toList());
+        assertTrue(solutions.size() > 1);
+        for (String found : solutions) {
+            for (int cage = 0; cage < model.getCageCount(); cage++) {
+                int sum = 0;
+                for (int cell : model.cages[cage]) {
+                    sum += found.charAt(cell) - '0';
+                }
+                assertEquals(found, model.cageSums[cage], sum);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_rejectsUnreachableCageSum() {
+        ConstraintModel.builder().withCage(18, 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_rejectsOverlappingCages() {
+        ConstraintModel.builder().withCage(3, 0, 1).withCage(4, 1, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_rejectsUnevenJigsawRegions() {
+        int[] regionOfCell = new int[81];
+        ConstraintModel.builder().withJigsawRegions(regionOfCell);
+    }
+
+    private static void addCage(ConstraintModel.Builder builder, String solution, int... cells) {
+        int sum = 0;
+        for (int cell : cells) {
+            sum += solution.charAt(cell) - '0';
+        }
+        builder.withCage(sum, cells);
+    }
+
+    private static void assertSolvesOnlyWithModel(ConstraintModel model, String puzzle, String solution) {
+        SolverWorkspace classic = new SolverWorkspace();
+        assertTrue(classic.load(puzzle));
+        assertFalse(classic.solve());
+
+        SolverWorkspace underTest = new SolverWorkspace(model);
+        assertTrue(underTest.load(puzzle));
+        assertTrue(underTest.solve());
+        assertEquals(solution, underTest.toSerializedString());
+    }
+}
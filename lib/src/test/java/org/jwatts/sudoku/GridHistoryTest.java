@@ -0,0 +1,82 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GridHistoryTest {
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+
+    @Test
+    public void testGridState_withLeavesOriginalUnchanged() {
+        GridState original = GridState.EMPTY.with(4, 4, 7);
+        GridState edited = original.with(8, 8, 3);
+
+        assertEquals(7, original.getValue(4, 4));
+        assertEquals(0, original.getValue(8, 8));
+        assertEquals(1, original.getFilledCount());
+        assertEquals(3, edited.getValue(8, 8));
+        assertEquals(2, edited.getFilledCount());
+        assertEquals(1, edited.with(8, 8, 0).getFilledCount());
+        assertEquals(original, edited.with(8, 8, 0));
+        assertSame(edited, edited.with(8, 8, 3));
+    }
+
+    @Test
+    public void testUndoRedo_userEdits() {
+        Grid grid = new Grid();
+        GridHistory underTest = new GridHistory(grid);
+        assertFalse(underTest.canUndo());
+
+        grid.setSquareValueAt(0, 0, 5);
+        grid.setSquareValueAt(0, 0, 6);
+        grid.setSquareValueAt(1, 1, 2);
+        grid.setSquareValueAt(1, 1, 0);
+        assertEquals(5, underTest.getVersionCount());
+
+        assertTrue(underTest.undo());
+        assertEquals(2, grid.getSquareValueAt(1, 1));
+        assertTrue(underTest.undo());
+        assertTrue(underTest.undo());
+        assertEquals(5, grid.getSquareValueAt(0, 0));
+        assertEquals(0, grid.getSquareValueAt(1, 1));
+        assertTrue(grid.getSquares()[0][1].getPossibleValues().contains(6));
+        assertFalse(grid.getSquares()[0][1].getPossibleValues().contains(5));
+
+        assertTrue(underTest.redo());
+        assertEquals(6, grid.getSquareValueAt(0, 0));
+        assertEquals(5, underTest.getVersionCount());
+
+        // A new edit replaces the versions that could have been redone
+        grid.setSquareValueAt(2, 2, 9);
+        assertFalse(underTest.canRedo());
+        assertEquals(4, underTest.getVersionCount());
+    }
+
+    @Test
+    public void testHistory_replaysSolve() {
+        Grid grid = Grid.fromSerializedString(PUZZLE);
+        GridHistory underTest = new GridHistory(grid);
+        int givenCount = grid.getState().getFilledCount();
+        assertTrue(grid.solve());
+
+        // One version per value the solver placed
+        assertEquals(81 - givenCount + 1, underTest.getVersionCount());
+        for (int version = 1; version < underTest.getVersionCount(); version++) {
+            assertEquals(underTest.getVersion(version - 1).getFilledCount() + 1,
+                    underTest.getVersion(version).getFilledCount());
+        }
+
+        String solution = grid.toSerializedString();
+        underTest.goTo(0);
+        assertEquals(PUZZLE, grid.toSerializedString());
+        assertNotEquals(solution, grid.toSerializedString());
+        assertTrue(grid.solve());
+        assertEquals(solution, grid.toSerializedString());
+    }
+}
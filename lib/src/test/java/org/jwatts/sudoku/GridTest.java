@@ -3,6 +3,7 @@ package org.jwatts.sudoku;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class GridTest {
@@ -238,6 +239,132 @@ public class GridTest {
         }
     }
 
+    @Test
+    public void testSetSquareValueAt_zeroClearsSquareAndRestoresPossibleValues() {
+        Grid underTest = Grid.fromSerializedString(
+                "006007300018009050500000064920080000000763000000090075630000008090300520002400600");
+        Square square = underTest.getSquares()[0][1];
+        assertFalse(square.getPossibleValues().contains(6));
+
+        underTest.setSquareValueAt(0, 2, 0);
+        assertEquals(0, underTest.getSquareValueAt(0, 2));
+        assertTrue(square.getPossibleValues().contains(6));
+
+        underTest.setSquareValueAt(0, 2, 6);
+        assertFalse(square.getPossibleValues().contains(6));
+        assertTrue(underTest.solve());
+    }
+
+    @Test
+    public void testSetSquareValueAt_clearingDropsEliminationsAnywhereInGrid() {
+        Grid underTest = new Grid();
+        underTest.setSquareValueAt(0, 0, 5);
+        Square farSquare = underTest.getSquares()[8][8];
+        farSquare.removeFromPossibleValues(3);
+        assertFalse(farSquare.getPossibleValues().contains(3));
+
+        underTest.setSquareValueAt(0, 0, 0);
+        assertTrue(farSquare.getPossibleValues().contains(3));
+
+        // Eliminated again after the reset, so the next clear resets again
+        underTest.setSquareValueAt(0, 0, 5);
+        farSquare.removeFromPossibleValues(3);
+        underTest.setSquareValueAt(0, 0, 4);
+        assertTrue(farSquare.getPossibleValues().contains(3));
+    }
+
+    @Test
+    public void testSetSquareValueAt_detectsAndClearsConflicts() {
+        Grid underTest = new Grid();
+        underTest.setSquareValueAt(0, 0, 5);
+        assertFalse(underTest.hasConflicts());
+
+        underTest.setSquareValueAt(1, 1, 5);
+        assertTrue(underTest.hasConflicts());
+        assertTrue(underTest.getSquares()[0][0].isConflicting());
+
+        underTest.setSquareValueAt(1, 1, 4);
+        assertFalse(underTest.hasConflicts());
+    }
+
+    @Test
+    public void testSolve_afterEditingSolvedGrid() {
+        String puzzle = "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+        Grid underTest = Grid.fromSerializedString(puzzle);
+        assertTrue(underTest.solve());
+        String solution = underTest.toSerializedString();
+
+        underTest.setSquareValueAt(4, 4, 0);
+        underTest.setSquareValueAt(8, 8, 0);
+        assertEquals(79, underTest.getFilledInSquareCount());
+        assertTrue(underTest.solve());
+        assertEquals(solution, underTest.toSerializedString());
+    }
+
+    @Test
+    public void testNextDeduction_doesNotChangeGrid() {
+        String puzzle = "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+        Grid underTest = Grid.fromSerializedString(puzzle);
+        Deduction deduction = underTest.nextDeduction();
+        assertEquals(Deduction.Technique.NAKED_SINGLE, deduction.getTechnique());
+        assertEquals(puzzle, underTest.toSerializedString());
+    }
+
+    @Test
+    public void testNextDeduction_stepsToSolution() {
+        String puzzle = "076490000000002800020300000061000000500708310000600020003000000000000502942070000";
+        Grid solved = Grid.fromSerializedString(puzzle);
+        assertTrue(solved.solve());
+
+        Grid underTest = Grid.fromSerializedString(puzzle);
+        Deduction deduction;
+        while ((deduction = underTest.nextDeduction()) != null) {
+            Square square = underTest.getSquares()[deduction.getRowIndex()][deduction.getColIndex()];
+            if (deduction.isElimination()) {
+                square.removeFromPossibleValues(deduction.getValue());
+            } else {
+                assertEquals(deduction.toString(), solved.getSquareValueAt(square.getRowIndex(), square.getColIndex()),
+                        deduction.getValue());
+                square.setValue(deduction.getValue());
+            }
+        }
+        assertEquals(solved.toSerializedString(), underTest.toSerializedString());
+    }
+
+    @Test
+    public void testUnitValuePositions_trackEditsAndEliminations() {
+        Grid underTest = Grid.fromSerializedString(
+                "010000400080009000405168000500000000290000006007002009008010005700050020006090007");
+        assertUnitValuePositionsMatchSquares(underTest);
+
+        underTest.solve();
+        assertUnitValuePositionsMatchSquares(underTest);
+
+        underTest.setSquareValueAt(0, 1, 0);
+        underTest.setSquareValueAt(4, 4, 3);
+        assertUnitValuePositionsMatchSquares(underTest);
+    }
+
+    private static void assertUnitValuePositionsMatchSquares(Grid grid) {
+        int n = grid.getRowColLength();
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                Square square = grid.getSquares()[row][col];
+                int block = grid.computeBlockNumber(row, col);
+                int blockPosition = (row % 3) * 3 + col % 3;
+                for (int value = 1; value <= n; value++) {
+                    boolean isPossible = !square.hasValue() && square.getPossibleValues().contains(value);
+                    String message = String.format("value %d at row %d, col %d", value, row, col);
+                    assertEquals(message, isPossible, (grid.getUnitValuePositions(row, value) & (1 << col)) != 0);
+                    assertEquals(message, isPossible,
+                            (grid.getUnitValuePositions(n + col, value) & (1 << row)) != 0);
+                    assertEquals(message, isPossible,
+                            (grid.getUnitValuePositions(2 * n + block, value) & (1 << blockPosition)) != 0);
+                }
+            }
+        }
+    }
+
     private void printPuzzle(Grid grid) {
         System.out.println("Final solved puzzle: \n" + grid.toString());
     }
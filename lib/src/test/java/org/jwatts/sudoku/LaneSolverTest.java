@@ -0,0 +1,78 @@
+package org.jwatts.sudoku;
+
+import org.jwatts.sudoku.store.PackedGrid;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class LaneSolverTest {
+    private static final String EASY_PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+    // Needs more than singles
+    private static final String MEDIUM_PUZZLE =
+            "010000400080009000405168000500000000290000006007002009008010005700050020006090007";
+    // Two 6s in the first row
+    private static final String CONFLICTING_PUZZLE =
+            "606007300018009050500000064920080000000763000000090075630000008090300520002400600";
+
+    @Test
+    public void testSolve_sortsLanesIntoSolvedStuckAndDead() {
+        String[] puzzles = new String[LaneSolver.LANE_COUNT];
+        for (int i = 0; i < puzzles.length; i++) {
+            puzzles[i] = i % 3 == 0 ? EASY_PUZZLE : i % 3 == 1 ? MEDIUM_PUZZLE : CONFLICTING_PUZZLE;
+        }
+        ByteBuffer packed = pack(puzzles);
+
+        LaneSolver underTest = new LaneSolver();
+        underTest.loadPacked(packed, 0, puzzles.length);
+        long solved = underTest.solve();
+
+        SolverWorkspace workspace = new SolverWorkspace();
+        workspace.load(EASY_PUZZLE);
+        workspace.solve();
+        String expected = workspace.toSerializedString();
+        ByteBuffer solution = ByteBuffer.allocate(PackedGrid.PACKED_SIZE);
+        for (int lane = 0; lane < puzzles.length; lane++) {
+            long bit = 1L << lane;
+            assertEquals("lane " + lane, lane % 3 == 0, (solved & bit) != 0);
+            assertEquals("lane " + lane, lane % 3 == 1, (underTest.getStuckLanes() & bit) != 0);
+            assertEquals("lane " + lane, lane % 3 == 2, (underTest.getDeadLanes() & bit) != 0);
+            if (lane % 3 == 0) {
+                underTest.writePacked(lane, solution, 0);
+                assertEquals(expected, unpack(solution));
+            }
+        }
+    }
+
+    @Test
+    public void testSolve_partialBatchLeavesUnusedLanesAlone() {
+        LaneSolver underTest = new LaneSolver();
+        underTest.loadPacked(pack(new String[] { MEDIUM_PUZZLE, EASY_PUZZLE }), 0, 2);
+        assertEquals(0b10L, underTest.solve());
+        assertEquals(0b01L, underTest.getStuckLanes());
+        assertEquals(0L, underTest.getDeadLanes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadPacked_tooManyPuzzles() {
+        new LaneSolver().loadPacked(ByteBuffer.allocate(0), 0, LaneSolver.LANE_COUNT + 1);
+    }
+
+    private static ByteBuffer pack(String[] puzzles) {
+        ByteBuffer packed = ByteBuffer.allocate(puzzles.length * PackedGrid.PACKED_SIZE);
+        byte[] record = new byte[PackedGrid.PACKED_SIZE];
+        for (String puzzle : puzzles) {
+            PackedGrid.pack(puzzle.getBytes(), 0, record, 0);
+            packed.put(record);
+        }
+        return packed;
+    }
+
+    private static String unpack(ByteBuffer packed) {
+        byte[] serialized = new byte[PackedGrid.CELL_COUNT];
+        PackedGrid.unpack(packed, 0, serialized, 0);
+        return new String(serialized);
+    }
+}
@@ -0,0 +1,42 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LookupTablesTest {
+    @Test
+    public void testMaskTablesMatchIntegerBitMethods() {
+        for (int mask = 0; mask < 1 << 12; mask++) {
+            assertEquals(Integer.bitCount(mask), LookupTables.bitCount(mask));
+            int expectedLowest = mask == 0 ? 0 : Integer.numberOfTrailingZeros(mask) + 1;
+            assertEquals(expectedLowest, LookupTables.lowestDigit(mask));
+        }
+        for (int value = 1; value <= 25; value++) {
+            assertEquals(1 << (value - 1), LookupTables.digitBit(value));
+        }
+    }
+
+    @Test
+    public void testCellTables() {
+        LookupTables underTest = LookupTables.forBlockSize(3);
+        assertSame(underTest, LookupTables.forBlockSize(3));
+
+        int cell = 5 * 9 + 7;
+        assertEquals(5, underTest.rowOf[cell]);
+        assertEquals(7, underTest.colOf[cell]);
+        assertEquals(5, underTest.blockOf[cell]);
+        assertEquals(2 * 3 + 1, underTest.blockPositionOf[cell]);
+        assertEquals(0b111000000, underTest.blockRowPositions[2]);
+        assertEquals(0b010010010, underTest.blockColPositions[1]);
+    }
+
+    @Test
+    public void testCellTables_blockSizeFour() {
+        LookupTables underTest = LookupTables.forBlockSize(4);
+        int cell = 9 * 16 + 14;
+        assertEquals(2 * 4 + 3, underTest.blockOf[cell]);
+        assertEquals(1 * 4 + 2, underTest.blockPositionOf[cell]);
+    }
+}
@@ -0,0 +1,115 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PartialSolutionTest {
+    // The medium February puzzle, which propagation alone cannot finish
+    private static final String MEDIUM_PUZZLE =
+            "010000400080009000405168000500000000290000006007002009008010005700050020006090007";
+
+    @Test
+    public void testSolve_unlimitedBudgetSolvesWhatTechniquesCannot() {
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        PartialSolution result = grid.solve(SolveBudget.UNLIMITED);
+
+        assertTrue(result.isSolved());
+        assertNull(result.getContinuation());
+        assertEquals(81, result.getFilledCount());
+        assertEquals(expectedSolution(), result.toSerializedString());
+        assertEquals(expectedSolution(), grid.toSerializedString());
+    }
+
+    @Test
+    public void testSolve_exhaustedBudgetLeavesForcedValuesAndCandidates() {
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        int givenCount = grid.getFilledInSquareCount();
+        PartialSolution result = grid.solve(SolveBudget.ofSteps(0));
+
+        assertEquals(PartialSolution.Status.OUT_OF_BUDGET, result.getStatus());
+        assertNotNull(result.getContinuation());
+        assertEquals(0, result.getStepCount());
+        assertTrue(result.getFilledCount() >= givenCount);
+        assertEquals(result.getFilledCount(), grid.getFilledInSquareCount());
+
+        String solution = expectedSolution();
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                int value = result.getValue(row, col);
+                int solutionValue = solution.charAt(row * 9 + col) - '0';
+                if (value != 0) {
+                    // Only forced values, never guesses
+                    assertEquals(solutionValue, value);
+                    assertEquals(0, result.getCandidates(row, col));
+                } else {
+                    assertTrue(result.getPossibleValues(row, col).contains(solutionValue));
+                    assertEquals(result.getPossibleValues(row, col), grid.getSquares()[row][col].getPossibleValues());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResume_onAnotherThreadFinishesWithoutRedoingWork() throws Exception {
+        long unbrokenStepCount = Grid.fromSerializedString(MEDIUM_PUZZLE).solve(SolveBudget.UNLIMITED).getStepCount();
+
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        PartialSolution result = grid.solve(SolveBudget.ofSteps(1));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            while (result.getStatus() == PartialSolution.Status.OUT_OF_BUDGET) {
+                SolveContinuation continuation = result.getContinuation();
+                result = executor.submit(() -> continuation.resume(SolveBudget.ofSteps(1))).get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(result.isSolved());
+        assertEquals(unbrokenStepCount, result.getStepCount());
+        assertEquals(expectedSolution(), result.toSerializedString());
+        result.applyTo(grid);
+        assertEquals(expectedSolution(), grid.toSerializedString());
+    }
+
+    @Test
+    public void testResume_afterFinishingFails() {
+        PartialSolution result = Grid.fromSerializedString(MEDIUM_PUZZLE).solve(SolveBudget.ofSteps(0));
+        SolveContinuation continuation = result.getContinuation();
+        assertTrue(continuation.resume(SolveBudget.UNLIMITED).isSolved());
+        try {
+            continuation.resume(SolveBudget.UNLIMITED);
+            fail("Expected the finished solve not to resume");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testSolve_conflictingGridHasNoSolution() {
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        grid.setSquareValueAt(0, 0, 1);
+        String before = grid.toSerializedString();
+        PartialSolution result = grid.solve(SolveBudget.ofMillis(2));
+
+        assertEquals(PartialSolution.Status.NO_SOLUTION, result.getStatus());
+        assertNull(result.getContinuation());
+        assertFalse(result.isSolved());
+        assertEquals(before, grid.toSerializedString());
+    }
+
+    private static String expectedSolution() {
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        grid.setSolverBackend(SolverBackends.byName(DancingLinksSolverBackend.NAME));
+        assertTrue(grid.solve());
+        return grid.toSerializedString();
+    }
+}
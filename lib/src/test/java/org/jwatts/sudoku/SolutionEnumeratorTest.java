@@ -0,0 +1,110 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SolutionEnumeratorTest {
+    private static final String MEDIUM_PUZZLE =
+            "010000400080009000405168000500000000290000006007002009008010005700050020006090007";
+    private static final String EMPTY_PUZZLE = new String(new char[81]).replace('\0', '0');
+
+    // The medium puzzle with the givens of its first row removed
+    private static final String UNDER_CONSTRAINED_PUZZLE =
+            "000000000080009000405168000500000000290000006007002009008010005700050020006090007";
+
+    @Test
+    public void testSolutions_uniquePuzzleHasOneSolution() {
+        List<String> solutions = SolutionEnumerator.solutions(Grid.fromSerializedString(MEDIUM_PUZZLE))
+                .collect(Collectors.toList());
+        assertEquals(1, solutions.size());
+
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        grid.setSolverBackend(SolverBackends.byName(DancingLinksSolverBackend.NAME));
+        assertTrue(grid.solve());
+        assertEquals(grid.toSerializedString(), solutions.get(0));
+    }
+
+    @Test
+    public void testSolutions_solvedPuzzleIsItsOnlySolution() {
+        Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+        grid.setSolverBackend(SolverBackends.byName(DancingLinksSolverBackend.NAME));
+        assertTrue(grid.solve());
+        String solved = grid.toSerializedString();
+
+        Iterator<String> iterator = SolutionEnumerator.iterator(solved);
+        assertEquals(solved, iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testSolutions_contradictoryPuzzleHasNone() {
+        String conflicting = "11" + MEDIUM_PUZZLE.substring(2);
+        assertEquals(0, SolutionEnumerator.solutions(conflicting).count());
+    }
+
+    @Test
+    public void testSolutions_allDistinctAndValid() {
+        List<String> solutions = SolutionEnumerator.solutions(UNDER_CONSTRAINED_PUZZLE).collect(Collectors.toList());
+        assertTrue(solutions.size() > 1);
+        assertEquals(solutions.size(), new HashSet<>(solutions).size());
+        for (String solution : solutions) {
+            assertValidSolutionOf(UNDER_CONSTRAINED_PUZZLE, solution);
+        }
+    }
+
+    @Test
+    public void testSolutions_parallelFindsSameSolutions() {
+        Set<String> sequential = SolutionEnumerator.solutions(UNDER_CONSTRAINED_PUZZLE).collect(Collectors.toSet());
+        Set<String> parallel = SolutionEnumerator.solutions(UNDER_CONSTRAINED_PUZZLE).parallel()
+                .collect(Collectors.toSet());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testSolutions_emptyGridIsEnumeratedLazily() {
+        List<String> solutions = SolutionEnumerator.solutions(EMPTY_PUZZLE).parallel().limit(500)
+                .collect(Collectors.toList());
+        assertEquals(500, solutions.size());
+        assertEquals(500, new HashSet<>(solutions).size());
+        for (String solution : solutions) {
+            assertValidSolutionOf(EMPTY_PUZZLE, solution);
+        }
+    }
+
+    @Test
+    public void testTrySplit_dividesSearchWithoutLosingSolutions() {
+        Set<String> expected = SolutionEnumerator.solutions(UNDER_CONSTRAINED_PUZZLE).collect(Collectors.toSet());
+
+        SolutionEnumerator underTest = new SolutionEnumerator(UNDER_CONSTRAINED_PUZZLE);
+        Set<String> found = new HashSet<>();
+        // Take one solution, so the split comes from partway into the search
+        assertTrue(underTest.tryAdvance(found::add));
+        Spliterator<String> split = underTest.trySplit();
+        assertNotNull(split);
+        underTest.forEachRemaining(found::add);
+        split.forEachRemaining(solution -> assertTrue(found.add(solution)));
+        assertEquals(expected, found);
+    }
+
+    private static void assertValidSolutionOf(String puzzle, String solution) {
+        for (int cell = 0; cell < 81; cell++) {
+            if (puzzle.charAt(cell) != '0') {
+                assertEquals(puzzle.charAt(cell), solution.charAt(cell));
+            }
+        }
+        Grid grid = Grid.fromSerializedString(solution);
+        assertEquals(81, grid.getFilledInSquareCount());
+        assertFalse(grid.hasConflicts());
+    }
+}
@@ -0,0 +1,117 @@
+package org.jwatts.sudoku;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolverBackendTest {
+    // The medium February puzzle, which the logical solver cannot finish
+    private static final String MEDIUM_PUZZLE =
+            "010000400080009000405168000500000000290000006007002009008010005700050020006090007";
+    private static final String EASY_PUZZLE =
+            "000000100000240950063007000000000507080050040620004000040710060000000000908000002";
+
+    @After
+    public void tearDown() {
+        System.clearProperty(SolverBackends.SOLVER_BACKEND_PROPERTY);
+        SolverBackends.setDefault(null);
+    }
+
+    @Test
+    public void testSolve_backtrackingBackendsFinishMediumPuzzle() {
+        for (String name : Arrays.asList(DancingLinksSolverBackend.NAME, SatSolverBackend.NAME)) {
+            Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+            grid.setSolverBackend(SolverBackends.byName(name));
+            assertTrue(name, grid.solve());
+            assertEquals(name, 81, grid.getFilledInSquareCount());
+            assertFalse(name, grid.hasConflicts());
+            assertGivensKept(MEDIUM_PUZZLE, grid.toSerializedString());
+        }
+    }
+
+    @Test
+    public void testSolve_allBackendsAgreeOnEasyPuzzle() {
+        String expected = null;
+        for (SolverBackend backend : SolverBackends.all()) {
+            Grid grid = Grid.fromSerializedString(EASY_PUZZLE);
+            grid.setSolverBackend(backend);
+            assertTrue(backend.getName(), grid.solve());
+            if (expected == null) {
+                expected = grid.toSerializedString();
+            }
+            assertEquals(backend.getName(), expected, grid.toSerializedString());
+        }
+    }
+
+    @Test
+    public void testSolve_conflictingGivensAreNotSolved() {
+        for (SolverBackend backend : SolverBackends.all()) {
+            Grid grid = Grid.fromSerializedString(MEDIUM_PUZZLE);
+            grid.setSquareValueAt(0, 0, 1);
+            grid.setSolverBackend(backend);
+            assertFalse(backend.getName(), grid.solve());
+        }
+    }
+
+    @Test
+    public void testSatSolver_unsatisfiableClauses() {
+        assertEquals(null, new DpllSolver(2, Arrays.asList(new int[] { 1, 2 }, new int[] { -1 }, new int[] { -2 }))
+                .solve());
+        boolean[] assignment = new DpllSolver(3,
+                Arrays.asList(new int[] { 1, 2, 3 }, new int[] { -1, -2 }, new int[] { -1, -3 }, new int[] { -2, -3 },
+                        new int[] { -3 }, new int[] { -2 })).solve();
+        assertNotNull(assignment);
+        assertTrue(assignment[1]);
+    }
+
+    @Test
+    public void testWriteDimacs() throws IOException {
+        CnfEncoding encoding = new CnfEncoding(Grid.fromSerializedString(EASY_PUZZLE));
+        StringWriter writer = new StringWriter();
+        encoding.writeDimacs(writer);
+
+        String[] lines = writer.toString().split("\n");
+        assertEquals("p cnf 729 " + encoding.getClauses().size(), lines[0]);
+        assertEquals(encoding.getClauses().size() + 1, lines.length);
+        // First given: 1 at row 0, col 6
+        assertTrue(Arrays.asList(lines).contains(encoding.variable(0, 6, 1) + " 0"));
+    }
+
+    @Test
+    public void testDefaultBackend_fromSystemProperty() {
+        SolverBackends.setDefault(null);
+        System.setProperty(SolverBackends.SOLVER_BACKEND_PROPERTY, DancingLinksSolverBackend.NAME);
+        assertEquals(DancingLinksSolverBackend.NAME, new Grid().getSolverBackend().getName());
+
+        SolverBackends.setDefault(SolverBackends.byName(SatSolverBackend.NAME));
+        assertSame(SolverBackends.byName(SatSolverBackend.NAME), new Grid().getSolverBackend());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testByName_unknownBackend() {
+        SolverBackends.byName("quantum");
+    }
+
+    @Test
+    public void testBenchmark_picksBackendThatSolvesMost() {
+        SolverBackend fastest = BackendBenchmark.fastest(Arrays.asList(MEDIUM_PUZZLE));
+        assertFalse(LogicalSolverBackend.NAME.equals(fastest.getName()));
+    }
+
+    private static void assertGivensKept(String puzzle, String solution) {
+        for (int i = 0; i < puzzle.length(); i++) {
+            if (puzzle.charAt(i) != '0') {
+                assertEquals(puzzle.charAt(i), solution.charAt(i));
+            }
+        }
+    }
+}
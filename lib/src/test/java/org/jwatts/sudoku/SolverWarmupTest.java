@@ -0,0 +1,38 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolverWarmupTest {
+    @Test
+    public void testWarmUp_solvesAtLeastOnceWithNoBudget() {
+        for (SolverBackend backend : SolverBackends.all()) {
+            assertTrue(backend.getName(), SolverWarmup.warmUp(backend, 0) >= 1);
+        }
+    }
+
+    @Test
+    public void testWarmUp_leavesDefaultBackendAlone() {
+        SolverBackend defaultBackend = SolverBackends.getDefault();
+        SolverWarmup.warmUp(SolverBackends.byName(DancingLinksSolverBackend.NAME), 0);
+        assertSame(defaultBackend, SolverBackends.getDefault());
+    }
+
+    @Test
+    public void testTrace_offByDefault() {
+        assertNull(System.getProperty(Trace.TRACE_PROPERTY));
+        assertFalse(Trace.ENABLED);
+    }
+
+    @Test
+    public void testGrid_resolvesDefaultBackendOnFirstUse() {
+        Grid grid = new Grid();
+        assertSame(SolverBackends.getDefault(), grid.getSolverBackend());
+        assertEquals(LogicalSolverBackend.NAME, grid.getSolverBackend().getName());
+    }
+}
@@ -0,0 +1,55 @@
+package org.jwatts.sudoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolverWorkspaceTest {
+    private static final String EASY_PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+    private static final String MEDIUM_PUZZLE =
+            "076490000000002800020300000061000000500708310000600020003000000000000502942070000";
+
+    @Test
+    public void testSolve_matchesGridSolution() {
+        for (String puzzle : new String[] { EASY_PUZZLE, MEDIUM_PUZZLE }) {
+            Grid grid = Grid.fromSerializedString(puzzle);
+            assertTrue(grid.solve());
+
+            SolverWorkspace underTest = new SolverWorkspace();
+            assertTrue(underTest.load(puzzle));
+            assertTrue(underTest.solve());
+            assertEquals(grid.toSerializedString(), underTest.toSerializedString());
+        }
+    }
+
+    @Test
+    public void testLoad_reusesWorkspace() {
+        SolverWorkspace underTest = new SolverWorkspace();
+        assertTrue(underTest.load(EASY_PUZZLE));
+        assertTrue(underTest.solve());
+
+        assertTrue(underTest.load(MEDIUM_PUZZLE.getBytes(), 0));
+        assertEquals(MEDIUM_PUZZLE, underTest.toSerializedString());
+        assertTrue(underTest.solve());
+    }
+
+    @Test
+    public void testLoad_rejectsConflictingGivens() {
+        SolverWorkspace underTest = new SolverWorkspace();
+        // Two 6s in the first row
+        assertFalse(underTest.load(
+                "606007300018009050500000064920080000000763000000090075630000008090300520002400600"));
+        assertFalse(underTest.load("0060073"));
+    }
+
+    @Test
+    public void testSolve_emptyGridGetsStuck() {
+        SolverWorkspace underTest = new SolverWorkspace();
+        assertFalse(underTest.solve());
+        assertEquals(0, underTest.getFilledCount());
+        assertFalse(underTest.hasContradiction());
+    }
+}
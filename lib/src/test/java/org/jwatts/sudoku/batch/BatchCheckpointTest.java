@@ -0,0 +1,54 @@
+package org.jwatts.sudoku.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BatchCheckpointTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRead_missingFileHasNoCheckpoint() throws Exception {
+        assertNull(BatchCheckpoint.read(new File(temporaryFolder.getRoot(), "missing")));
+    }
+
+    @Test
+    public void testWrite_replacesPreviousCheckpoint() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "job.checkpoint");
+        new BatchCheckpoint(1000, 100, 80, 3, 2).write(file);
+        new BatchCheckpoint(1000, 500, 400, 15, 12).write(file);
+
+        BatchCheckpoint checkpoint = BatchCheckpoint.read(file);
+        assertEquals(1000, checkpoint.getInputLength());
+        assertEquals(500, checkpoint.getInputOffset());
+        assertEquals(400, checkpoint.getOutputOffset());
+        assertEquals(15, checkpoint.getPuzzleCount());
+        assertEquals(12, checkpoint.getSolvedCount());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testRead_rejectsCorruptCheckpoint() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "job.checkpoint");
+        new BatchCheckpoint(1000, 100, 80, 3, 2).write(file);
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.seek(20);
+            access.write(0x7f);
+        }
+        try {
+            BatchCheckpoint.read(file);
+            fail("Expected a corrupt checkpoint to be rejected");
+        } catch (IOException expected) {
+        }
+    }
+}
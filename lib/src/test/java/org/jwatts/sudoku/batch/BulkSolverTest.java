@@ -0,0 +1,92 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.Grid;
+import org.jwatts.sudoku.store.PackedGrid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkSolverTest {
+    private static final String[] PUZZLES = {
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600",
+            "076490000000002800020300000061000000500708310000600020003000000000000502942070000",
+            // Invalid: two 6s in the first row
+            "606007300018009050500000064920080000000763000000090075630000008090300520002400600",
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSolve_writesSolutionsAtMatchingPositions() throws Exception {
+        assertSolvesAtMatchingPositions(BulkSolver.Mode.SCALAR);
+    }
+
+    @Test
+    public void testSolve_bitParallelMatchesScalar() throws Exception {
+        assertSolvesAtMatchingPositions(BulkSolver.Mode.BIT_PARALLEL);
+    }
+
+    private static void assertSolvesAtMatchingPositions(BulkSolver.Mode mode) throws Exception {
+        int count = 3 * BulkSolver.CHUNK_SIZE + 7;
+        ByteBuffer puzzles = ByteBuffer.allocateDirect(count * PackedGrid.PACKED_SIZE);
+        ByteBuffer solutions = ByteBuffer.allocateDirect(count * PackedGrid.PACKED_SIZE);
+        byte[] packed = new byte[PackedGrid.PACKED_SIZE];
+        for (int i = 0; i < count; i++) {
+            PackedGrid.pack(PUZZLES[i % PUZZLES.length].getBytes(), 0, packed, 0);
+            puzzles.put(packed);
+        }
+
+        try (BulkSolver underTest = new BulkSolver(2, mode)) {
+            assertEquals(count - count / 3, underTest.solve(puzzles, solutions, count));
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(expectedSolution(PUZZLES[i % PUZZLES.length]), unpack(solutions, i));
+        }
+    }
+
+    @Test
+    public void testSolveFile() throws Exception {
+        File puzzleFile = temporaryFolder.newFile("puzzles.bin");
+        File solutionFile = new File(temporaryFolder.getRoot(), "solutions.bin");
+        byte[] packed = new byte[PackedGrid.PACKED_SIZE];
+        try (FileOutputStream out = new FileOutputStream(puzzleFile)) {
+            for (String puzzle : PUZZLES) {
+                PackedGrid.pack(puzzle.getBytes(), 0, packed, 0);
+                out.write(packed);
+            }
+        }
+
+        try (BulkSolver underTest = new BulkSolver(1)) {
+            assertEquals(2, underTest.solveFile(puzzleFile, solutionFile));
+        }
+
+        ByteBuffer solutions = ByteBuffer.wrap(Files.readAllBytes(solutionFile.toPath()));
+        for (int i = 0; i < PUZZLES.length; i++) {
+            assertEquals(expectedSolution(PUZZLES[i]), unpack(solutions, i));
+        }
+    }
+
+    private static String expectedSolution(String puzzle) {
+        if (puzzle.equals(PUZZLES[2])) {
+            return new String(new char[81]).replace('\0', '0');
+        }
+        Grid grid = Grid.fromSerializedString(puzzle);
+        grid.solve();
+        return grid.toSerializedString();
+    }
+
+    private static String unpack(ByteBuffer packed, int index) {
+        byte[] serialized = new byte[PackedGrid.CELL_COUNT];
+        PackedGrid.unpack(packed, index * PackedGrid.PACKED_SIZE, serialized, 0);
+        return new String(serialized);
+    }
+}
@@ -0,0 +1,80 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.SolveBudget;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DifficultySchedulerTest {
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+    private static final String SOLUTION =
+            "246157389318649257579832164927581436485763912163294875631925748894376521752418693";
+    private static final String NEARLY_SOLVED =
+            "046157389318649257579832164927581436485763912163294875631925748894376521752418690";
+    // Few givens, so it needs to branch after propagating
+    private static final String SPARSE =
+            "000000000080009000405168000500000000290000006007002009008010005700050020006090007";
+
+    @Test
+    public void testEstimate_ranksPuzzlesThatNeedSearchAboveOnesThatPropagate() {
+        SolveCostEstimator underTest = new SolveCostEstimator();
+        double nearlySolved = underTest.estimate(NEARLY_SOLVED);
+        double puzzle = underTest.estimate(PUZZLE);
+        double sparse = underTest.estimate(SPARSE);
+        assertTrue(nearlySolved + " < " + sparse, nearlySolved < sparse);
+        assertTrue(puzzle + " < " + sparse, puzzle < sparse);
+        assertTrue(underTest.estimate("too short") < Math.min(nearlySolved, puzzle));
+    }
+
+    @Test
+    public void testSolve_keepsSolutionsInInputOrderForBothOrders() throws Exception {
+        List<String> puzzles = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            puzzles.add(i % 10 == 0 ? SPARSE : i % 2 == 0 ? PUZZLE : NEARLY_SOLVED);
+        }
+        puzzles.add("invalid");
+        puzzles.add("11" + PUZZLE.substring(2));
+
+        try (DifficultyScheduler underTest = new DifficultyScheduler(3)) {
+            for (DifficultyScheduler.Order order : DifficultyScheduler.Order.values()) {
+                underTest.setOrder(order);
+                String[] solutions = new String[puzzles.size()];
+                DifficultyScheduler.Result result = underTest.solve(puzzles, solutions);
+
+                assertEquals(puzzles.size(), result.getPuzzleCount());
+                assertEquals(200, result.getSolvedCount());
+                for (int i = 0; i < 200; i++) {
+                    if (i % 10 == 0) {
+                        assertTrue(solutions[i].indexOf('0') < 0);
+                    } else {
+                        assertEquals(SOLUTION, solutions[i]);
+                    }
+                }
+                assertNull(solutions[200]);
+                assertNull(solutions[201]);
+                assertTrue(result.getLatencyNanos(99) <= result.getMakespanNanos());
+                assertTrue(result.getSolveNanos(50) <= result.getSolveNanos(99));
+            }
+        }
+    }
+
+    @Test
+    public void testSolve_budgetLeavesHardPuzzlesUnsolved() throws Exception {
+        List<String> puzzles = Arrays.asList(SPARSE, NEARLY_SOLVED);
+        String[] solutions = new String[2];
+        try (DifficultyScheduler underTest = new DifficultyScheduler(1)) {
+            underTest.setBudget(SolveBudget.ofSteps(1));
+            assertEquals(1, underTest.solve(puzzles, solutions).getSolvedCount());
+        }
+        assertNull(solutions[0]);
+        assertArrayEquals(SOLUTION.toCharArray(), solutions[1].toCharArray());
+    }
+}
@@ -0,0 +1,268 @@
+package org.jwatts.sudoku.batch;
+
+import org.jwatts.sudoku.Grid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardCoordinatorTest {
+    private static final String[] LINES = {
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600",
+            "076490000000002800020300000061000000500708310000600020003000000000000502942070000",
+            // Invalid: two 6s in the first row
+            "606007300018009050500000064920080000000763000000090075630000008090300520002400600",
+            // Invalid: too short
+            "0060073000",
+            // The medium February puzzle, which the logical solver cannot finish
+            "010000400080009000405168000500000000290000006007002009008010005700050020006090007",
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRun_mergesShardsInInputOrder() throws Exception {
+        File input = writePuzzles(200);
+        File output = new File(temporaryFolder.getRoot(), "solutions.txt");
+
+        ShardCoordinator underTest = new ShardCoordinator(3);
+        // Shards much smaller than a puzzle line, so most boundaries split a line
+        underTest.setShardSize(1000);
+        AtomicInteger progressCount = new AtomicInteger();
+        underTest.setProgressListener((completed, total, puzzles, solved) -> progressCount.incrementAndGet());
+        ShardCoordinator.Result result = underTest.run(input, output);
+
+        assertEquals(expectedOutput(200), Files.readAllLines(output.toPath()));
+        assertEquals(200, result.getPuzzleCount());
+        assertEquals(80, result.getSolvedCount());
+        assertEquals(0, result.getRetryCount());
+        assertEquals(result.getShardCount(), progressCount.get());
+        assertEquals(1, temporaryFolder.getRoot().list().length - 1);
+    }
+
+    @Test
+    public void testRun_retriesShardsOfCrashedWorkers() throws Exception {
+        File input = writePuzzles(100);
+        File output = new File(temporaryFolder.getRoot(), "solutions.txt");
+        File crashMarker = new File(temporaryFolder.getRoot(), "crashed");
+
+        ShardCoordinator underTest = new ShardCoordinator(2, () -> launch(CrashingShardWorker.class,
+                crashMarker.getAbsolutePath()));
+        underTest.setShardSize(2000);
+        ShardCoordinator.Result result = underTest.run(input, output);
+
+        assertTrue(crashMarker.exists());
+        assertEquals(1, result.getRetryCount());
+        assertEquals(expectedOutput(100), Files.readAllLines(output.toPath()));
+    }
+
+    @Test
+    public void testRun_givesUpAfterMaxAttempts() throws Exception {
+        File input = writePuzzles(10);
+        ShardCoordinator underTest = new ShardCoordinator(1, () -> launch(ExitingWorker.class));
+        underTest.setMaxAttempts(2);
+        try {
+            underTest.run(input, new File(temporaryFolder.getRoot(), "solutions.txt"));
+            fail("Expected the run to fail");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("failed 2 times"));
+        }
+    }
+
+    @Test
+    public void testRun_killsAndRetriesWorkersThatTimeOut() throws Exception {
+        File input = writePuzzles(10);
+        ShardCoordinator underTest = new ShardCoordinator(1, () -> launch(HangingWorker.class));
+        underTest.setShardTimeout(500);
+        underTest.setMaxAttempts(2);
+        try {
+            underTest.run(input, new File(temporaryFolder.getRoot(), "solutions.txt"));
+            fail("Expected the run to fail");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("failed 2 times: timed out"));
+        }
+    }
+
+    @Test
+    public void testRun_failsWhenProgressListenerThrows() throws Exception {
+        File input = writePuzzles(10);
+        ShardCoordinator underTest = new ShardCoordinator(1);
+        IllegalStateException listenerFailure = new IllegalStateException();
+        underTest.setProgressListener((completed, total, puzzles, solved) -> {
+            throw listenerFailure;
+        });
+        try {
+            underTest.run(input, new File(temporaryFolder.getRoot(), "solutions.txt"));
+            fail("Expected the run to fail");
+        } catch (IOException expected) {
+            assertSame(listenerFailure, expected.getCause());
+        }
+    }
+
+    @Test
+    public void testRun_resumesFromCheckpointWithExactlyOnceOutput() throws Exception {
+        File input = writePuzzles(100);
+        File output = new File(temporaryFolder.getRoot(), "solutions.txt");
+        File checkpointFile = new File(temporaryFolder.getRoot(), "solutions.checkpoint");
+
+        // The only worker dies after two shards, and with no retries the run fails
+        ShardCoordinator crashing = new ShardCoordinator(1, () -> launch(DyingShardWorker.class, "2"));
+        crashing.setShardSize(2000);
+        crashing.setMaxAttempts(1);
+        crashing.setCheckpointFile(checkpointFile);
+        crashing.setCheckpointInterval(0);
+        try {
+            crashing.run(input, output);
+            fail("Expected the run to fail");
+        } catch (IOException expected) {
+        }
+        BatchCheckpoint checkpoint = BatchCheckpoint.read(checkpointFile);
+        assertEquals(4000, checkpoint.getInputOffset());
+        assertEquals(checkpoint.getOutputOffset(), output.length());
+
+        // As if the crash came partway through merging the next shard
+        Files.write(output.toPath(), "0123".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+        ShardCoordinator underTest = new ShardCoordinator(2);
+        underTest.setShardSize(2000);
+        underTest.setCheckpointFile(checkpointFile);
+        ShardCoordinator.Result result = underTest.run(input, output);
+
+        assertEquals(expectedOutput(100), Files.readAllLines(output.toPath()));
+        assertEquals(100, result.getPuzzleCount());
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void testSolveShard_everyLineOwnedByExactlyOneShard() throws Exception {
+        File input = writePuzzles(7);
+        long length = input.length();
+        String expected = String.join("\n", expectedOutput(7)) + "\n";
+        for (long split = 0; split <= length; split++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long[] first = ShardWorker.solveShard(input, 0, split, out);
+            long[] second = ShardWorker.solveShard(input, split, length, out);
+            assertEquals("split at " + split, 7, first[0] + second[0]);
+            assertEquals("split at " + split, expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Crashes on its first shard if the marker file given as its argument does not exist yet.
+     */
+    public static final class CrashingShardWorker {
+        public static void main(String[] args) throws IOException {
+            if (new File(args[0]).createNewFile()) {
+                System.in.read();
+                System.exit(1);
+            }
+            ShardWorker.main(new String[0]);
+        }
+    }
+
+    /**
+     * Dies when asked for another shard after solving as many as its argument says.
+     */
+    public static final class DyingShardWorker {
+        public static void main(String[] args) throws IOException {
+            int shardCount = Integer.parseInt(args[0]);
+            InputStream stdin = System.in;
+            System.setIn(new InputStream() {
+                private int commandCount;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) == -1 ? -1 : b[0];
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (commandCount == shardCount) {
+                        System.exit(1);
+                    }
+                    int read = stdin.read(b, off, len);
+                    for (int i = off; i < off + read; i++) {
+                        if (b[i] == '\n') {
+                            commandCount++;
+                        }
+                    }
+                    return read;
+                }
+            });
+            ShardWorker.main(new String[0]);
+        }
+    }
+
+    /**
+     * Takes commands but never replies.
+     */
+    public static final class HangingWorker {
+        public static void main(String[] args) throws IOException, InterruptedException {
+            while (System.in.read() != -1) {
+                // Ignore the command
+            }
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+
+    public static final class ExitingWorker {
+        public static void main(String[] args) {
+            System.exit(1);
+        }
+    }
+
+    private static Process launch(Class<?> mainClass, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass.getName());
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private File writePuzzles(int count) throws IOException {
+        File input = temporaryFolder.newFile("puzzles.txt");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(LINES[i % LINES.length]).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        Files.write(input.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return input;
+    }
+
+    private static List<String> expectedOutput(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String puzzle = LINES[i % LINES.length];
+            Grid grid = puzzle.length() == 81 ? Grid.fromSerializedString(puzzle) : null;
+            if (grid == null || grid.hasConflicts()) {
+                lines.add(ShardWorker.ERROR_LINE);
+            } else {
+                grid.solve();
+                lines.add(grid.toSerializedString());
+            }
+        }
+        return lines;
+    }
+}
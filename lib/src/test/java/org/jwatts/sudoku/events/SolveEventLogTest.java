@@ -0,0 +1,65 @@
+package org.jwatts.sudoku.events;
+
+import org.jwatts.sudoku.Grid;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolveEventLogTest {
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+
+    @Test
+    public void testRecordsSolveAndReplaysToSolution() {
+        Grid grid = Grid.fromSerializedString(PUZZLE);
+        SolveEventLog underTest = new SolveEventLog(9);
+        grid.addValueSetObserver(underTest);
+        assertTrue(grid.solve());
+        grid.removeValueSetObserver(underTest);
+        underTest.finish();
+
+        int[] values = new int[81];
+        for (int cell = 0; cell < 81; cell++) {
+            values[cell] = PUZZLE.charAt(cell) - '0';
+        }
+        int[] dirtyCells = new int[81];
+        // Replay in frames of seven events
+        int replayed = 0;
+        while (replayed < underTest.size()) {
+            int to = Math.min(underTest.size(), replayed + 7);
+            int dirtyCount = underTest.coalesce(replayed, to, values, dirtyCells);
+            assertTrue(dirtyCount > 0 && dirtyCount <= 7);
+            replayed = to;
+        }
+
+        StringBuilder replayedGrid = new StringBuilder();
+        for (int value : values) {
+            replayedGrid.append(value);
+        }
+        assertEquals(grid.toSerializedString(), replayedGrid.toString());
+        assertTrue(underTest.isFinished());
+    }
+
+    @Test
+    public void testCoalesce_keepsLatestValuePerSquare() {
+        SolveEventLog underTest = new SolveEventLog(9);
+        for (int i = 0; i < 200; i++) {
+            underTest.append(80, i % 9 + 1);
+            underTest.append(3, 4);
+        }
+        underTest.append(70, 2);
+
+        int[] values = new int[81];
+        int[] dirtyCells = new int[81];
+        assertEquals(3, underTest.coalesce(0, underTest.size(), values, dirtyCells));
+        assertArrayEquals(new int[] { 3, 70, 80 }, new int[] { dirtyCells[0], dirtyCells[1], dirtyCells[2] });
+        assertEquals(199 % 9 + 1, values[80]);
+        assertEquals(2, underTest.getValue(underTest.size() - 1));
+        assertEquals(70, underTest.getCell(underTest.size() - 1));
+
+        // Dirty state does not leak into the next frame
+        assertEquals(0, underTest.coalesce(underTest.size(), underTest.size(), values, dirtyCells));
+    }
+}
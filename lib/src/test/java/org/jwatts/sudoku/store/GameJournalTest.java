@@ -0,0 +1,196 @@
+package org.jwatts.sudoku.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReopen_restoresValuesNotesAndEditCount() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        try (GameJournal journal = store.open("game1")) {
+            assertTrue(journal.isEmpty());
+            journal.setValue(0, 5);
+            journal.setValue(80, 9);
+            journal.setValue(0, 0);
+            journal.setNotes(40, 0b100010001);
+            // No-op edits are not recorded
+            journal.setValue(80, 9);
+        }
+
+        try (GameJournal journal = store.open("game1")) {
+            assertEquals(0, journal.getValue(0));
+            assertEquals(9, journal.getValue(80));
+            assertEquals(0b100010001, journal.getNotes(40));
+            assertEquals(4, journal.getEditCount());
+        }
+    }
+
+    @Test
+    public void testManyGames() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        for (String gameId : new String[] { "b", "a" }) {
+            try (GameJournal journal = store.open(gameId)) {
+                journal.setValue(gameId.charAt(0) - 'a', 1);
+            }
+        }
+        assertEquals(Arrays.asList("a", "b"), store.getGameIds());
+        try (GameJournal journal = store.open("b")) {
+            assertEquals(0, journal.getValue(0));
+            assertEquals(1, journal.getValue(1));
+        }
+
+        assertTrue(store.delete("a"));
+        assertFalse(store.contains("a"));
+        assertEquals(Arrays.asList("b"), store.getGameIds());
+    }
+
+    @Test
+    public void testCompaction_keepsJournalShort() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        File file = store.journalFile("game");
+        try (GameJournal journal = new GameJournal(file, 10)) {
+            long emptySize = file.length();
+            for (int i = 0; i < 95; i++) {
+                // The second pass over the squares changes every value it sets
+                journal.setValue(i % GameJournal.CELL_COUNT, (i + i / GameJournal.CELL_COUNT) % 9 + 1);
+            }
+            // Five edits since the last snapshot
+            assertEquals(emptySize + 5 * 9, file.length());
+        }
+
+        try (GameJournal journal = new GameJournal(file, 10)) {
+            assertEquals(95, journal.getEditCount());
+            assertEquals(6, journal.getValue(13));
+            assertEquals(80 % 9 + 1, journal.getValue(80));
+        }
+    }
+
+    @Test
+    public void testTornWrite_truncatedToLastWholeRecord() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        File file = store.journalFile("game");
+        try (GameJournal journal = store.open("game")) {
+            journal.setValue(1, 2);
+            journal.setValue(2, 3);
+        }
+        long goodLength = file.length();
+
+        // Half of a third edit record, as if the process died mid-write
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.seek(goodLength);
+            access.write(new byte[] { 2, 3, 3 });
+        }
+        try (GameJournal journal = store.open("game")) {
+            assertEquals(3, journal.getValue(2));
+            assertEquals(2, journal.getEditCount());
+        }
+        assertEquals(goodLength, file.length());
+
+        // Corrupt the last record: it is dropped, earlier edits survive
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.seek(goodLength - 6);
+            access.write(7);
+        }
+        try (GameJournal journal = store.open("game")) {
+            assertEquals(2, journal.getValue(1));
+            assertEquals(0, journal.getValue(2));
+            journal.setValue(3, 4);
+        }
+        try (GameJournal journal = store.open("game")) {
+            assertEquals(4, journal.getValue(3));
+        }
+    }
+
+    @Test
+    public void testLeftoverCompactionFileIsIgnored() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        File file = store.journalFile("game");
+        try (GameJournal journal = store.open("game")) {
+            journal.setValue(10, 6);
+        }
+        File compactionFile = new File(file.getPath() + ".tmp");
+        assertTrue(compactionFile.createNewFile());
+
+        try (GameJournal journal = store.open("game")) {
+            assertEquals(6, journal.getValue(10));
+        }
+        assertFalse(compactionFile.exists());
+    }
+
+    @Test
+    public void testCompactionFileWithoutJournalIsRecovered() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        File file = store.journalFile("game");
+        try (GameJournal journal = store.open("game")) {
+            journal.setValue(10, 6);
+            journal.setNotes(11, 0b11);
+            journal.compact();
+        }
+        // As if the process died after deleting the old journal, before renaming the new one over it
+        File compactionFile = new File(file.getPath() + ".tmp");
+        assertTrue(file.renameTo(compactionFile));
+
+        try (GameJournal journal = store.open("game")) {
+            assertEquals(6, journal.getValue(10));
+            assertEquals(0b11, journal.getNotes(11));
+        }
+        assertTrue(file.exists());
+        assertFalse(compactionFile.exists());
+    }
+
+    @Test
+    public void testTornCompactionFileWithoutJournalIsDiscarded() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        File file = store.journalFile("game");
+        try (GameJournal journal = store.open("game")) {
+            journal.setValue(10, 6);
+            journal.compact();
+        }
+        File compactionFile = new File(file.getPath() + ".tmp");
+        assertTrue(file.renameTo(compactionFile));
+        try (RandomAccessFile access = new RandomAccessFile(compactionFile, "rw")) {
+            access.setLength(access.length() - 1);
+        }
+
+        try (GameJournal journal = store.open("game")) {
+            assertTrue(journal.isEmpty());
+        }
+        assertFalse(compactionFile.exists());
+    }
+
+    @Test
+    public void testDelete_removesLeftoverCompactionFile() throws Exception {
+        GameJournalStore store = GameJournalStore.open(temporaryFolder.getRoot());
+        File file = store.journalFile("game");
+        try (GameJournal journal = store.open("game")) {
+            journal.setValue(10, 6);
+            journal.compact();
+        }
+        File compactionFile = new File(file.getPath() + ".tmp");
+        Files.copy(file.toPath(), compactionFile.toPath());
+
+        assertTrue(store.delete("game"));
+        assertFalse(compactionFile.exists());
+        try (GameJournal journal = store.open("game")) {
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpen_rejectsPathInGameId() throws Exception {
+        GameJournalStore.open(temporaryFolder.getRoot()).open("../game");
+    }
+}
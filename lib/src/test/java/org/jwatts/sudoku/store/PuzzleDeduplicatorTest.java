@@ -0,0 +1,138 @@
+package org.jwatts.sudoku.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleDeduplicatorTest {
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testAdd_matchesExactSetAcrossSpillsAndMerges() throws Exception {
+        List<String> puzzles = randomPuzzles(new Random(42), 400);
+        Random random = new Random(7);
+        Set<String> seen = new HashSet<>();
+        File spillDirectory = temporaryFolder.newFolder();
+        try (PuzzleDeduplicator underTest = PuzzleDeduplicator.builder(spillDirectory)
+                .expectedPuzzles(400)
+                .falsePositiveRate(0.05)
+                .bufferSize(16)
+                .build()) {
+            for (int i = 0; i < 5000; i++) {
+                String puzzle = puzzles.get(random.nextInt(puzzles.size()));
+                assertEquals(seen.add(puzzle), underTest.add(puzzle));
+            }
+
+            PuzzleDeduplicator.Stats stats = underTest.getStats();
+            assertEquals(5000, stats.getRecordCount());
+            assertEquals(seen.size(), stats.getUniqueCount());
+            assertEquals(5000 - seen.size(), stats.getDuplicateCount());
+            assertEquals(seen.size(), stats.getFilterNegativeCount() + stats.getFalsePositiveCount());
+            assertTrue(stats.getSpilledCount() > 16 * PuzzleDeduplicator.MERGE_FACTOR);
+            assertTrue(stats.getRunCount() < stats.getSpilledCount() / 16);
+        }
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    @Test
+    public void testAdd_staysExactWhenFilterIsOverfull() throws Exception {
+        List<String> puzzles = randomPuzzles(new Random(3), 2000);
+        try (PuzzleDeduplicator underTest = PuzzleDeduplicator.builder(temporaryFolder.newFolder())
+                .expectedPuzzles(10)
+                .bufferSize(100)
+                .build()) {
+            for (String puzzle : puzzles) {
+                assertTrue(underTest.add(puzzle));
+            }
+            for (String puzzle : puzzles) {
+                assertFalse(underTest.add(puzzle));
+            }
+            assertTrue(underTest.getStats().getFalsePositiveCount() > 1000);
+            assertEquals(2000, underTest.getStats().getDuplicateCount());
+        }
+    }
+
+    @Test
+    public void testAdd_canonicalizeMatchesSymmetricCopies() throws Exception {
+        String copy = relabel(transpose(swapFirstTwoBands(PUZZLE)));
+        try (PuzzleDeduplicator plain = PuzzleDeduplicator.builder(temporaryFolder.newFolder()).build();
+                PuzzleDeduplicator canonicalizing = PuzzleDeduplicator.builder(temporaryFolder.newFolder())
+                        .canonicalize(true)
+                        .build()) {
+            assertTrue(plain.add(PUZZLE));
+            assertTrue(plain.add(copy));
+            assertTrue(canonicalizing.add(PUZZLE));
+            assertFalse(canonicalizing.add(copy));
+        }
+    }
+
+    @Test
+    public void testFilter_falsePositiveRateIsNearConfigured() {
+        BloomFilter underTest = new BloomFilter(10000, 0.01);
+        Random random = new Random(11);
+        long[] added = new long[10000];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = random.nextLong();
+            underTest.put(added[i]);
+        }
+        for (long fingerprint : added) {
+            assertTrue(underTest.mightContain(fingerprint));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (underTest.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+        assertEquals(0.01, underTest.expectedFalsePositiveRate(10000), 0.005);
+    }
+
+    private static List<String> randomPuzzles(Random random, int count) {
+        Set<String> puzzles = new HashSet<>();
+        while (puzzles.size() < count) {
+            char[] cells = new char[81];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = random.nextInt(3) == 0 ? (char) ('1' + random.nextInt(9)) : '0';
+            }
+            puzzles.add(new String(cells));
+        }
+        return new ArrayList<>(puzzles);
+    }
+
+    private static String swapFirstTwoBands(String puzzle) {
+        return puzzle.substring(27, 54) + puzzle.substring(0, 27) + puzzle.substring(54);
+    }
+
+    private static String transpose(String puzzle) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 81; i++) {
+            builder.append(puzzle.charAt((i % 9) * 9 + i / 9));
+        }
+        return builder.toString();
+    }
+
+    private static String relabel(String puzzle) {
+        // 1 -> 9, 2 -> 8, ...
+        StringBuilder builder = new StringBuilder();
+        for (char c : puzzle.toCharArray()) {
+            builder.append(c == '0' ? c : (char) ('9' - (c - '1')));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package org.jwatts.sudoku.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleStoreTest {
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+    private static final String SOLUTION =
+            "246157389318649257579832164927581436485763912163294875631925748894376521752418693";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testInsert_deduplicatesAndStoresSolution() throws Exception {
+        try (PuzzleStore underTest = PuzzleStore.open(temporaryFolder.getRoot())) {
+            byte[] puzzle = PUZZLE.getBytes();
+            assertEquals(-1, underTest.find(puzzle, 0));
+            assertEquals(0, underTest.insert(puzzle, 0, null, 0));
+            assertEquals(0, underTest.insert(puzzle, 0, SOLUTION.getBytes(), 0));
+            assertEquals(1, underTest.size());
+
+            byte[] dest = new byte[81];
+            assertFalse(underTest.readSolution(0, dest, 0));
+            underTest.setSolution(0, SOLUTION.getBytes(), 0);
+            assertTrue(underTest.readSolution(0, dest, 0));
+            assertEquals(SOLUTION, new String(dest));
+            underTest.readPuzzle(0, dest, 0);
+            assertEquals(PUZZLE, new String(dest));
+        }
+    }
+
+    @Test
+    public void testReopen_growsAcrossSegmentsAndKeepsRecords() throws Exception {
+        File directory = temporaryFolder.getRoot();
+        int puzzleCount = 100000;
+        try (PuzzleStore underTest = new PuzzleStore(directory, 16, 1000)) {
+            for (int i = 0; i < puzzleCount; i++) {
+                assertEquals(i, underTest.insert(puzzle(i), 0, null, 0));
+            }
+        }
+
+        try (PuzzleStore reopened = PuzzleStore.open(directory)) {
+            assertEquals(puzzleCount, reopened.size());
+            byte[] dest = new byte[81];
+            for (int i = 0; i < puzzleCount; i += 997) {
+                assertEquals(i, reopened.find(puzzle(i), 0));
+                reopened.readPuzzle(i, dest, 0);
+                assertArrayEquals(puzzle(i), dest);
+            }
+            assertEquals(-1, reopened.find(puzzle(puzzleCount), 0));
+        }
+    }
+
+    @Test
+    public void testInsert_keepsRecordsInsertedWhileIndexGrows() throws Exception {
+        // The index starts with 1 << 16 slots and grows when the record that would fill it past 3/4 is inserted
+        int puzzleCount = 50000;
+        try (PuzzleStore underTest = PuzzleStore.open(temporaryFolder.getRoot(), 16)) {
+            for (int i = 0; i < puzzleCount; i++) {
+                assertEquals(i, underTest.insert(puzzle(i), 0, null, 0));
+            }
+            byte[] dest = new byte[81];
+            for (int i = 0; i < puzzleCount; i++) {
+                underTest.readPuzzle(i, dest, 0);
+                assertArrayEquals("Record " + i, puzzle(i), dest);
+                assertEquals(i, underTest.find(puzzle(i), 0));
+            }
+        }
+    }
+
+    @Test
+    public void testReopen_rebuildsMissingIndex() throws Exception {
+        File directory = temporaryFolder.getRoot();
+        try (PuzzleStore underTest = PuzzleStore.open(directory)) {
+            for (int i = 0; i < 100; i++) {
+                underTest.insert(puzzle(i), 0, null, 0);
+            }
+        }
+        assertTrue(new File(directory, PuzzleStore.INDEX_FILE_NAME).delete());
+
+        try (PuzzleStore reopened = PuzzleStore.open(directory)) {
+            assertEquals(100, reopened.size());
+            assertEquals(42, reopened.find(puzzle(42), 0));
+            assertEquals(42, reopened.insert(puzzle(42), 0, null, 0));
+        }
+    }
+
+    /**
+     * Distinct puzzles made by writing i in base 9, as digits 1-9, over the first six squares of {@link #PUZZLE}.
+     */
+    private static byte[] puzzle(int i) {
+        byte[] puzzle = PUZZLE.getBytes();
+        for (int cell = 0; cell < 6; cell++, i /= 9) {
+            puzzle[cell] = (byte) ('1' + (i % 9));
+        }
+        return puzzle;
+    }
+}
@@ -0,0 +1,149 @@
+package org.jwatts.sudoku.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load generator for {@link SolverServer}. Opens a number of keep-alive connections and, on each one, writes a
+ * window of requests back to back before reading their responses, so the server sees pipelined requests.
+ *
+ * Usage: LoadGenerator [host] [port] [connections] [pipelineDepth] [puzzlesPerRequest] [durationSeconds]
+ */
+public class LoadGenerator {
+    private static final String[] PUZZLES = {
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600",
+            "076490000000002800020300000061000000500708310000600020003000000000000502942070000",
+            "000000100000240950063007000000000507080050040620004000040710060000000000908000002",
+    };
+
+    private final String host;
+    private final int port;
+    private final int pipelineDepth;
+    private final byte[] request;
+    private final int puzzlesPerRequest;
+    private final AtomicLong solvedCount = new AtomicLong();
+
+    LoadGenerator(String host, int port, int pipelineDepth, int puzzlesPerRequest) {
+        this.host = host;
+        this.port = port;
+        this.pipelineDepth = pipelineDepth;
+        this.puzzlesPerRequest = puzzlesPerRequest;
+        this.request = buildRequest(host, puzzlesPerRequest);
+    }
+
+    private static byte[] buildRequest(String host, int puzzlesPerRequest) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < puzzlesPerRequest; i++) {
+            body.append(PUZZLES[i % PUZZLES.length]).append('\n');
+        }
+        String request = "POST /solve HTTP/1.1\r\n"
+                + "Host: " + host + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + "\r\n"
+                + body;
+        return request.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Drives one connection until the deadline passes.
+     */
+    void runConnection(long deadlineNanos) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), request.length * pipelineDepth);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            while (System.nanoTime() < deadlineNanos) {
+                for (int i = 0; i < pipelineDepth; i++) {
+                    out.write(request);
+                }
+                out.flush();
+                for (int i = 0; i < pipelineDepth; i++) {
+                    readResponse(in);
+                    solvedCount.addAndGet(puzzlesPerRequest);
+                }
+            }
+        }
+    }
+
+    private static void readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (!statusLine.startsWith("HTTP/1.1 200")) {
+            throw new IOException("Unexpected response: " + statusLine);
+        }
+
+        int contentLength = -1;
+        String header;
+        while (!(header = readLine(in)).isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(header.substring(colon + 1).trim());
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("Response without Content-Length");
+        }
+
+        for (int i = 0; i < contentLength; i++) {
+            if (in.read() < 0) {
+                throw new IOException("Connection closed mid-response");
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed mid-response");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int pipelineDepth = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int puzzlesPerRequest = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int durationSeconds = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+
+        LoadGenerator generator = new LoadGenerator(host, port, pipelineDepth, puzzlesPerRequest);
+        long start = System.nanoTime();
+        long deadline = start + durationSeconds * 1000000000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    generator.runConnection(deadline);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        long solved = generator.solvedCount.get();
+        System.out.printf("%d puzzles in %.2f s: %.0f solves/s (%d connections, pipeline depth %d, %d per request)%n",
+                solved, elapsedSeconds, solved / elapsedSeconds, connections, pipelineDepth, puzzlesPerRequest);
+    }
+}
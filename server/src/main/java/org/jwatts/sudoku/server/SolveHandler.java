@@ -0,0 +1,90 @@
+package org.jwatts.sudoku.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.jwatts.sudoku.SolverWorkspace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Solves every puzzle in the request body, one per line, and answers with one line per puzzle in the same order: the
+ * 81 digit grid after solving (still containing '0's if the solver got stuck), or {@link #ERROR_LINE} if the line was
+ * not a valid puzzle.
+ */
+class SolveHandler implements HttpHandler {
+    static final String ERROR_LINE = "error";
+
+    private static final int PUZZLE_LENGTH = 81;
+    private static final byte[] ERROR_BYTES = (ERROR_LINE + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final WorkspacePool workspacePool;
+
+    SolveHandler(WorkspacePool workspacePool) {
+        this.workspacePool = workspacePool;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = readFully(exchange.getRequestBody());
+            ByteArrayOutputStream response = new ByteArrayOutputStream(body.length + 16);
+            byte[] solution = new byte[PUZZLE_LENGTH + 1];
+            solution[PUZZLE_LENGTH] = '\n';
+
+            SolverWorkspace workspace = workspacePool.borrow();
+            try {
+                int lineStart = 0;
+                while (lineStart < body.length) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < body.length && body[lineEnd] != '\n') {
+                        lineEnd++;
+                    }
+                    int nextLineStart = lineEnd + 1;
+                    if (lineEnd > lineStart && body[lineEnd - 1] == '\r') {
+                        lineEnd--;
+                    }
+
+                    if (lineEnd - lineStart == PUZZLE_LENGTH && workspace.load(body, lineStart)) {
+                        workspace.solve();
+                        workspace.writeTo(solution, 0);
+                        response.write(solution, 0, solution.length);
+                    } else if (lineEnd > lineStart) {
+                        response.write(ERROR_BYTES, 0, ERROR_BYTES.length);
+                    }
+                    lineStart = nextLineStart;
+                }
+            } finally {
+                workspacePool.release(workspace);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, response.size());
+            OutputStream responseBody = exchange.getResponseBody();
+            response.writeTo(responseBody);
+            responseBody.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(PUZZLE_LENGTH + 1);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
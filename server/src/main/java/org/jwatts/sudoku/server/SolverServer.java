@@ -0,0 +1,68 @@
+package org.jwatts.sudoku.server;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded solving service on top of the JDK's built-in HTTP server. Puzzles are POSTed to /solve, one per line in the
+ * format of {@link org.jwatts.sudoku.Grid#toSerializedString()}; see {@link SolveHandler} for the response format.
+ * Connections are kept alive, so clients can pipeline many requests on one connection.
+ */
+public class SolverServer {
+    private static final Logger sLogger = LoggerFactory.getLogger(SolverServer.class);
+    private static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 1024;
+
+    private final HttpServer httpServer;
+    private final ExecutorService requestExecutor;
+
+    public SolverServer(InetSocketAddress address) throws IOException {
+        httpServer = HttpServer.create(address, BACKLOG);
+        requestExecutor = createRequestExecutor();
+        WorkspacePool workspacePool = new WorkspacePool(Runtime.getRuntime().availableProcessors());
+        httpServer.createContext("/solve", new SolveHandler(workspacePool));
+        httpServer.setExecutor(requestExecutor);
+    }
+
+    public void start() {
+        httpServer.start();
+        sLogger.info("Listening on {}", httpServer.getAddress());
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        requestExecutor.shutdown();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Each request runs on its own virtual thread when the JVM supports them (Java 21+). The library still targets
+     * Java 8, so they are looked up reflectively, falling back to a cached thread pool on older JVMs.
+     */
+    static ExecutorService createRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            sLogger.info("Virtual threads not available, using a cached thread pool for requests");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SolverServer server = new SolverServer(new InetSocketAddress(port));
+        server.start();
+    }
+}
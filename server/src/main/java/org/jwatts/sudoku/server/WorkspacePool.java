@@ -0,0 +1,32 @@
+package org.jwatts.sudoku.server;
+
+import org.jwatts.sudoku.SolverWorkspace;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of {@link SolverWorkspace}s. Requests may run on many more (virtual) threads than there are cores, but
+ * only about one solve per core makes progress at a time, so keeping roughly one workspace per carrier thread is
+ * enough to make solving allocation free without tying a workspace to every request thread.
+ */
+class WorkspacePool {
+    private final ArrayBlockingQueue<SolverWorkspace> idle;
+
+    WorkspacePool(int capacity) {
+        idle = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            idle.offer(new SolverWorkspace());
+        }
+    }
+
+    SolverWorkspace borrow() {
+        SolverWorkspace workspace = idle.poll();
+        // Only happens when more solves are running than the pool was sized for; the extra workspace is dropped when
+        // it comes back to a full pool
+        return workspace != null ? workspace : new SolverWorkspace();
+    }
+
+    void release(SolverWorkspace workspace) {
+        idle.offer(workspace);
+    }
+}
@@ -0,0 +1,84 @@
+package org.jwatts.sudoku.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolverServerTest {
+    private static final String PUZZLE =
+            "006007300018009050500000064920080000000763000000090075630000008090300520002400600";
+    private static final String SOLUTION =
+            "246157389318649257579832164927581436485763912163294875631925748894376521752418693";
+
+    private SolverServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new SolverServer(new InetSocketAddress("localhost", 0));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testPipelinedRequestsOnOneConnection() throws Exception {
+        String first = request(PUZZLE + "\n");
+        String second = request(PUZZLE + "\nnot a puzzle\n");
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write((first + second).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            assertEquals(SOLUTION + "\n", readResponseBody(in));
+            assertEquals(SOLUTION + "\n" + SolveHandler.ERROR_LINE + "\n", readResponseBody(in));
+        }
+    }
+
+    private static String request(String body) {
+        return "POST /solve HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+    }
+
+    private static String readResponseBody(InputStream in) throws IOException {
+        assertTrue(readLine(in).startsWith("HTTP/1.1 200"));
+        int contentLength = -1;
+        String header;
+        while (!(header = readLine(in)).isEmpty()) {
+            if (header.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+            }
+        }
+
+        byte[] body = new byte[contentLength];
+        int read = 0;
+        while (read < contentLength) {
+            read += in.read(body, read, contentLength - read);
+        }
+        return new String(body, StandardCharsets.US_ASCII);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}